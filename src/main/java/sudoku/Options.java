@@ -18,6 +18,7 @@
  */
 package sudoku;
 
+import sudoku.generator.BackgroundGeneratorThread;
 import sudoku.generator.GeneratorPattern;
 
 import java.awt.*;
@@ -183,39 +184,49 @@ public final class Options {
     public static final boolean ONLY_ONE_CHAIN_PER_STEP = true;
     public static final boolean ALLOW_ALS_IN_TABLING_CHAINS = false;
     public static final boolean ALL_STEPS_ALLOW_ALS_IN_TABLING_CHAINS = true;
+    public static final boolean TABLING_PARALLEL = true; // fill and expand tables on all available processors
     private int maxTableEntryLength = MAX_TABLE_ENTRY_LENGTH;
     private int anzTableLookAhead = ANZ_TABLE_LOOK_AHEAD;
     private boolean onlyOneChainPerStep = ONLY_ONE_CHAIN_PER_STEP;
     private boolean allowAlsInTablingChains = ALLOW_ALS_IN_TABLING_CHAINS;
     private boolean allStepsAllowAlsInTablingChains = ALL_STEPS_ALLOW_ALS_IN_TABLING_CHAINS;
+    private boolean tablingParallel = TABLING_PARALLEL;
     // AlsSolver
     public static final boolean ONLY_ONE_ALS_PER_STEP = true; // only one step in every ALS elimination
     public static final boolean ALLOW_ALS_OVERLAP = false;    // allow ALS steps with overlap (runtime!)
     public static final boolean ALL_STEPS_ONLY_ONE_ALS_PER_STEP = true; // only one step in every ALS elimination
     public static final boolean ALL_STEPS_ALLOW_ALS_OVERLAP = true;    // allow ALS steps with overlap (runtime!)
+    public static final boolean ALS_RC_PARALLEL = true;   // compute the RCs between ALS on all available processors
+    public static final boolean ALS_INCREMENTAL = true;   // reuse ALS and RCs, that were not changed by the last steps
     private boolean onlyOneAlsPerStep = ONLY_ONE_ALS_PER_STEP;
     private boolean allowAlsOverlap = ALLOW_ALS_OVERLAP;
     private boolean allStepsOnlyOneAlsPerStep = ALL_STEPS_ONLY_ONE_ALS_PER_STEP;
     private boolean allStepsAllowAlsOverlap = ALL_STEPS_ALLOW_ALS_OVERLAP;
+    private boolean alsRcParallel = ALS_RC_PARALLEL;
+    private boolean alsIncremental = ALS_INCREMENTAL;
     // FishSolver
     public static final int MAX_FINS = 5;                 // Maximale Anzahl Fins
     public static final int MAX_ENDO_FINS = 2;            // Maximale Anzahl Endo-Fins
     public static final boolean CHECK_TEMPLATES = true;   // Template-Check um Kandidaten von der Suche auszuschließen
+    public static final boolean TEMPLATES_PARALLEL = false; // filter the templates of all candidates on all available processors
     public static final int KRAKEN_MAX_FISH_TYPE = 1;     // 0: nur basic, 1: basic+franken, 2: basic+franken+mutant
     public static final int KRAKEN_MAX_FISH_SIZE = 4;     // number of units in base/cover sets
     public static final int MAX_KRAKEN_FINS = 2;          // Maximale Anzahl Fins für Kraken-Suche
     public static final int MAX_KRAKEN_ENDO_FINS = 0;     // Maximale Anzahl Endo-Fins für Kraken-Suche
     public static final boolean ONLY_ONE_FISH_PER_STEP = true; // only the smallest fish for every elimination
     public static final int FISH_DISPLAY_MODE = 0;        // 0: normal; 1: statistics numbers; 2: statistics cells
+    public static final boolean FISH_PARALLEL = true;     // search all fishes: one task per candidate on all available processors
     private int maxFins = MAX_FINS;
     private int maxEndoFins = MAX_ENDO_FINS;
     private boolean checkTemplates = CHECK_TEMPLATES;
+    private boolean templatesParallel = TEMPLATES_PARALLEL;
     private int krakenMaxFishType = KRAKEN_MAX_FISH_TYPE;
     private int krakenMaxFishSize = KRAKEN_MAX_FISH_SIZE;
     private int maxKrakenFins = MAX_KRAKEN_FINS;
     private int maxKrakenEndoFins = MAX_KRAKEN_ENDO_FINS;
     private boolean onlyOneFishPerStep = ONLY_ONE_FISH_PER_STEP;
     private int fishDisplayMode = FISH_DISPLAY_MODE;
+    private boolean fishParallel = FISH_PARALLEL;
     // Search all steps
     public static final boolean ALL_STEPS_SEARCH_FISH = true; // search for Fish in "All Steps" panel
     public static final int ALL_STEPS_MAX_FISH_TYPE = 1;     // 0: nur basic, 1: basic+franken, 2: basic+franken+mutant
@@ -496,8 +507,8 @@ public final class Options {
     private int generatorPatternIndex = GENERATOR_PATTERN_INDEX;
     // Check for available fonts
     private static String[] availableFontNames = null;
-    //Singleton
-    public static Options instance = null;
+    //Singleton (volatile: the solvers may be used from several threads)
+    public static volatile Options instance = null;
 
     /**
      * Creates a new instance of Options
@@ -643,12 +654,18 @@ public final class Options {
     }
 
     public static Options getInstance() {
-        if (instance == null) {
-            // TODO: 2019-07-06
-            instance = new Options();
+        Options options = instance;
+        if (options == null) {
+            synchronized (Options.class) {
+                options = instance;
+                if (options == null) {
+                    // TODO: 2019-07-06
+                    options = instance = new Options();
 //            readOptions();
+                }
+            }
         }
-        return instance;
+        return options;
     }
 
     public DifficultyLevel[] copyDifficultyLevels(DifficultyLevel[] src) {
@@ -757,8 +774,7 @@ public final class Options {
             // corresponding config panel
         }
         if (somethingChanged) {
-            // TODO: 2019-07-06
-//            BackgroundGeneratorThread.getInstance().resetAll();
+            BackgroundGeneratorThread.getInstance().resetAll();
         }
     }
 
@@ -906,8 +922,7 @@ public final class Options {
             maxScore = instance.difficultyLevels[i].getMaxScore();
         }
         if (changed) {
-            // TODO: 2019-07-06
-//            BackgroundGeneratorThread.getInstance().resetAll();
+            BackgroundGeneratorThread.getInstance().resetAll();
         }
     }
 
@@ -2107,6 +2122,34 @@ public final class Options {
         this.onlyOneFishPerStep = onlyOneFishPerStep;
     }
 
+    /**
+     * @return the fishParallel
+     */
+    public boolean isFishParallel() {
+        return fishParallel;
+    }
+
+    /**
+     * @param fishParallel the fishParallel to set
+     */
+    public void setFishParallel(boolean fishParallel) {
+        this.fishParallel = fishParallel;
+    }
+
+    /**
+     * @return the templatesParallel
+     */
+    public boolean isTemplatesParallel() {
+        return templatesParallel;
+    }
+
+    /**
+     * @param templatesParallel the templatesParallel to set
+     */
+    public void setTemplatesParallel(boolean templatesParallel) {
+        this.templatesParallel = templatesParallel;
+    }
+
     public boolean isOnlyOneAlsPerStep() {
         return onlyOneAlsPerStep;
     }
@@ -2139,6 +2182,34 @@ public final class Options {
         this.allStepsAllowAlsOverlap = allStepsAllowAlsOverlap;
     }
 
+    /**
+     * @return the alsRcParallel
+     */
+    public boolean isAlsRcParallel() {
+        return alsRcParallel;
+    }
+
+    /**
+     * @param alsRcParallel the alsRcParallel to set
+     */
+    public void setAlsRcParallel(boolean alsRcParallel) {
+        this.alsRcParallel = alsRcParallel;
+    }
+
+    /**
+     * @return the alsIncremental
+     */
+    public boolean isAlsIncremental() {
+        return alsIncremental;
+    }
+
+    /**
+     * @param alsIncremental the alsIncremental to set
+     */
+    public void setAlsIncremental(boolean alsIncremental) {
+        this.alsIncremental = alsIncremental;
+    }
+
     public String getAllStepsFishCandidates() {
         return allStepsFishCandidates;
     }
@@ -2179,6 +2250,20 @@ public final class Options {
         this.allStepsAllowAlsInTablingChains = allStepsAllowAlsInTablingChains;
     }
 
+    /**
+     * @return the tablingParallel
+     */
+    public boolean isTablingParallel() {
+        return tablingParallel;
+    }
+
+    /**
+     * @param tablingParallel the tablingParallel to set
+     */
+    public void setTablingParallel(boolean tablingParallel) {
+        this.tablingParallel = tablingParallel;
+    }
+
     /**
      * @return the historySize
      */
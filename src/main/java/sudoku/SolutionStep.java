@@ -525,14 +525,8 @@ public class SolutionStep implements Comparable<SolutionStep>, Cloneable {
     }
 
     public final void setType(SolutionType type) {
-        boolean found = false;
-        for (SolutionType t : SolutionType.values()) {
-            if (t == type) {
-                found = true;
-                break;
-            }
-        }
-        if (!found) {
+        // every other value is a valid type (SolutionType.values() would copy the array on every call)
+        if (type == null) {
             throw new RuntimeException("Invalid type in setType()" + " (" + type + ")");
         }
         this.type = type;
@@ -184,7 +184,7 @@ public class Sudoku implements Cloneable {
     /**
      * The indices of the constraints for every cell (LINE, COL, BLOCK)
      */
-    public static int[][] CONSTRAINTS = new int[LENGTH][3];
+    public static final int[][] CONSTRAINTS = new int[LENGTH][3];
     /**
      * The candidate represented by the least significant bit that is set in a candidate mask.
      * If only one bit is set, the array contains the value of that bit (candidate).
@@ -194,65 +194,74 @@ public class Sudoku implements Cloneable {
     // Templates
     //
     /**
-     * One template for every possible combination of 9 equal digits in the grid.
+     * Number of possible combinations of 9 equal digits in the grid.
      */
-    public static SudokuSetBase[] templates = new SudokuSetBase[46656];
+    public static final int TEMPLATE_COUNT = 46656;
+    /**
+     * One template for every possible combination of 9 equal digits in the grid:
+     * the low order longs (cells 0 - 63), see {@link #TEMPLATES_M2}.
+     */
+    public static final long[] TEMPLATES_M1 = new long[TEMPLATE_COUNT];
+    /**
+     * The high order longs of all templates (cells 64 - 80), see {@link #TEMPLATES_M1}.
+     */
+    public static final long[] TEMPLATES_M2 = new long[TEMPLATE_COUNT];
     /**
      * One bitmap with all buddies of each cell
      */
-    public static SudokuSet[] buddies = new SudokuSet[LENGTH];
+    public static final SudokuSet[] buddies = new SudokuSet[LENGTH];
     /**
      * The low order long from {@link #buddies}
      */
-    public static long[] buddiesM1 = new long[LENGTH];
+    public static final long[] buddiesM1 = new long[LENGTH];
     /**
      * The high order long from {@link #buddies}
      */
-    public static long[] buddiesM2 = new long[LENGTH];
+    public static final long[] buddiesM2 = new long[LENGTH];
     /**
      * For every group of 8 cells (denoted by a byte in a SudokuSetBase) all possible buddies
      */
-    public static SudokuSetBase[][] groupedBuddies = new SudokuSetBase[11][256];
+    public static final SudokuSetBase[][] groupedBuddies = new SudokuSetBase[11][256];
     /**
      * The low order long from {@link #groupedBuddies}
      */
-    public static long[][] groupedBuddiesM1 = new long[11][256];
+    public static final long[][] groupedBuddiesM1 = new long[11][256];
     /**
      * The high order long from {@link #groupedBuddies}
      */
-    public static long[][] groupedBuddiesM2 = new long[11][256];
+    public static final long[][] groupedBuddiesM2 = new long[11][256];
     /**
      * One bitmap with all cells of each line
      */
-    public static SudokuSet[] LINE_TEMPLATES = new SudokuSet[LINES.length];
+    public static final SudokuSet[] LINE_TEMPLATES = new SudokuSet[LINES.length];
     /**
      * One bitmap with all cells of each column
      */
-    public static SudokuSet[] COL_TEMPLATES = new SudokuSet[COLS.length];
+    public static final SudokuSet[] COL_TEMPLATES = new SudokuSet[COLS.length];
     /**
      * One bitmap with all cells of each block
      */
-    public static SudokuSet[] BLOCK_TEMPLATES = new SudokuSet[BLOCKS.length];
+    public static final SudokuSet[] BLOCK_TEMPLATES = new SudokuSet[BLOCKS.length];
     /**
      * One bitmap with all cells of each line and each block
      */
-    public static SudokuSet[] LINE_BLOCK_TEMPLATES = new SudokuSet[LINE_BLOCK_UNITS.length];
+    public static final SudokuSet[] LINE_BLOCK_TEMPLATES = new SudokuSet[LINE_BLOCK_UNITS.length];
     /**
      * One bitmap with all cells of each column and each block
      */
-    public static SudokuSet[] COL_BLOCK_TEMPLATES = new SudokuSet[COL_BLOCK_UNITS.length];
+    public static final SudokuSet[] COL_BLOCK_TEMPLATES = new SudokuSet[COL_BLOCK_UNITS.length];
     /**
      * One bitmap with all cells of each constraint
      */
-    public static SudokuSet[] ALL_CONSTRAINTS_TEMPLATES = new SudokuSet[ALL_UNITS.length];
+    public static final SudokuSet[] ALL_CONSTRAINTS_TEMPLATES = new SudokuSet[ALL_UNITS.length];
     /**
      * The low order long from {@link #ALL_CONSTRAINTS_TEMPLATES}
      */
-    public static long[] ALL_CONSTRAINTS_TEMPLATES_M1 = new long[ALL_UNITS.length];
+    public static final long[] ALL_CONSTRAINTS_TEMPLATES_M1 = new long[ALL_UNITS.length];
     /**
      * The high order long from {@link #ALL_CONSTRAINTS_TEMPLATES}
      */
-    public static long[] ALL_CONSTRAINTS_TEMPLATES_M2 = new long[ALL_UNITS.length];
+    public static final long[] ALL_CONSTRAINTS_TEMPLATES_M2 = new long[ALL_UNITS.length];
 
     // The data of a Sudoku
     /**
@@ -319,6 +328,23 @@ public class Sudoku implements Cloneable {
      * A queue for newly detected Hidden Singles
      */
     private SudokuSinglesQueue hsQueue = new SudokuSinglesQueue();
+    /**
+     * One set per candidate with all cells, in which the candidate is still
+     * possible (index 0 is unused). Kept in sync with {@link #cells}.
+     */
+    private SudokuSet[] candidateSets = createSets();
+    /**
+     * One set per value with all cells, that are set to that value (index 0
+     * is unused). Kept in sync with {@link #values}.
+     */
+    private SudokuSet[] positionSets = createSets();
+    /**
+     * <code>false</code>, if {@link #cells} or {@link #values} have been changed
+     * without updating {@link #candidateSets} and {@link #positionSets} (BacktrackingSolver,
+     * {@link #setCells(short[])}, {@link #setValues(int[])}). The sets are rebuilt
+     * on the next access.
+     */
+    private boolean candidateSetsValid = true;
 
     static {
         // Buddies und Unit-Sets initialisieren
@@ -387,6 +413,28 @@ public class Sudoku implements Cloneable {
             while ((i & MASKS[++j]) == 0) ;
             CAND_FROM_MASK[i] = j;
         }
+
+        // SudokuSet creates its index array lazily: do it now, the sets are
+        // shared between all threads and must not be changed after initialization
+        initSetIndices(buddies);
+        initSetIndices(LINE_TEMPLATES);
+        initSetIndices(COL_TEMPLATES);
+        initSetIndices(BLOCK_TEMPLATES);
+        initSetIndices(LINE_BLOCK_TEMPLATES);
+        initSetIndices(COL_BLOCK_TEMPLATES);
+        initSetIndices(ALL_CONSTRAINTS_TEMPLATES);
+    }
+
+    /**
+     * Makes sure, that the index arrays of all sets in <code>sets</code>
+     * are calculated.
+     *
+     * @param sets
+     */
+    private static void initSetIndices(SudokuSet[] sets) {
+        for (int i = 0; i < sets.length; i++) {
+            sets[i].getValues();
+        }
     }
 
     /**
@@ -423,6 +471,12 @@ public class Sudoku implements Cloneable {
             }
             newSudoku.nsQueue = nsQueue.clone();
             newSudoku.hsQueue = hsQueue.clone();
+            newSudoku.candidateSets = createSets();
+            newSudoku.positionSets = createSets();
+            for (int i = 1; i < candidateSets.length; i++) {
+                newSudoku.candidateSets[i].set(candidateSets[i]);
+                newSudoku.positionSets[i].set(positionSets[i]);
+            }
             // no deep copy required for level, it is constant
         } catch (CloneNotSupportedException ex) {
             Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error while cloning", ex);
@@ -456,6 +510,11 @@ public class Sudoku implements Cloneable {
         statusGivens = src.statusGivens;
         nsQueue.set(src.nsQueue);
         hsQueue.set(src.hsQueue);
+        for (int i = 1; i < candidateSets.length; i++) {
+            candidateSets[i].set(src.candidateSets[i]);
+            positionSets[i].set(src.positionSets[i]);
+        }
+        candidateSetsValid = src.candidateSetsValid;
     }
 
     /**
@@ -473,6 +532,7 @@ public class Sudoku implements Cloneable {
         unsolvedCellsAnz = src.unsolvedCellsAnz;
         nsQueue.clear();
         hsQueue.clear();
+        candidateSetsValid = false;
     }
 
     /**
@@ -507,6 +567,11 @@ public class Sudoku implements Cloneable {
         // delete queues
         nsQueue.clear();
         hsQueue.clear();
+        for (int i = 1; i < candidateSets.length; i++) {
+            candidateSets[i].setAll();
+            positionSets[i].clear();
+        }
+        candidateSetsValid = true;
     }
 
     /**
@@ -1131,18 +1196,24 @@ public class Sudoku implements Cloneable {
                 free[i][j] = 0;
             }
         }
+        for (int i = 1; i < candidateSets.length; i++) {
+            candidateSets[i].clear();
+            positionSets[i].clear();
+        }
         // now check all cells
         int anz = 0;
         for (int index = 0; index < values.length; index++) {
             if (values[index] != 0) {
                 // just to be sure
                 cells[index] = 0;
+                positionSets[values[index]].add(index);
             } else {
                 // one more unsolved cell
                 anz++;
                 // check the candidates and rebuild the Naked Single queue
                 int[] cands = POSSIBLE_VALUES[cells[index]];
                 for (int i = 0; i < cands.length; i++) {
+                    candidateSets[cands[i]].add(index);
                     // add candidate to free
                     for (int j = 0; j < CONSTRAINTS[index].length; j++) {
                         free[CONSTRAINTS[index][j]][cands[i]]++;
@@ -1155,6 +1226,7 @@ public class Sudoku implements Cloneable {
             }
         }
         unsolvedCellsAnz = anz;
+        candidateSetsValid = true;
         // now rebuild the Hidden Single queue
         for (int i = 0; i < free.length; i++) {
             for (int j = 1; j <= 9; j++) {
@@ -1816,6 +1888,7 @@ public class Sudoku implements Cloneable {
         if (set) {
             if ((cells[index] & MASKS[value]) == 0) {
                 cells[index] |= MASKS[value];
+                candidateSets[value].add(index);
                 int newAnz = ANZ_VALUES[cells[index]];
                 if (newAnz == 1) {
                     addNakedSingle(index, value);
@@ -1834,6 +1907,7 @@ public class Sudoku implements Cloneable {
         } else {
             if ((cells[index] & MASKS[value]) != 0) {
                 cells[index] &= ~MASKS[value];
+                candidateSets[value].remove(index);
                 if (cells[index] == 0) {
                     // puzzle invalid
                     return false;
@@ -1975,6 +2049,10 @@ public class Sudoku implements Cloneable {
             if (user) {
                 userCells[index] = 0;
             }
+            if (oldValue != 0) {
+                positionSets[oldValue].remove(index);
+            }
+            positionSets[value].add(index);
             unsolvedCellsAnz--;
             // check the buddies
             for (int i = 0; i < buddies[index].size(); i++) {
@@ -1992,6 +2070,7 @@ public class Sudoku implements Cloneable {
             // now check all candidates from the cell itself
             for (int i = 0; i < cands.length; i++) {
                 int cand = cands[i];
+                candidateSets[cand].remove(index);
                 for (int j = 0; j < CONSTRAINTS[index].length; j++) {
                     int constr = CONSTRAINTS[index][j];
                     int newFree = --free[constr][cand];
@@ -2036,6 +2115,7 @@ public class Sudoku implements Cloneable {
         // set a cell
         // adjust mask
         cells[index] = 0;
+        candidateSetsValid = false;
         // check the buddies
         for (int i = 0; i < buddies[index].size(); i++) {
             int buddyIndex = buddies[index].get(i);
@@ -2339,43 +2419,16 @@ public class Sudoku implements Cloneable {
 //    }
 
     /**
-     * Create all 46656 possible templates. Since the calculation has become incredibly
-     * slow on Windows 7 64bit, the templates are read from a file.
+     * Create all 46656 possible templates. The templates are calculated
+     * directly into {@link #TEMPLATES_M1} and {@link #TEMPLATES_M2} (one
+     * cell per line, every column and every block used exactly once), which
+     * takes only a few milliseconds.
      */
-    @SuppressWarnings("CallToThreadDumpStack")
     private static void initTemplates() {
-        // alle 46656 möglichen Templates anlegen
-        try {
-            //System.out.println("Start Templates lesen...");
-            long ticks = System.currentTimeMillis();
-//            ObjectInputStream in = new ObjectInputStream(Sudoku.class.getResourceAsStream("/templates.dat"));
-//            templates = (SudokuSetBase[]) in.readObject();
-//            in.close();
-            ticks = System.currentTimeMillis() - ticks;
-            //System.out.println("Templates lesen: " + ticks + "ms");
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-//        //Sudoku sudoku = new Sudoku(false);
-//        Sudoku sudoku = new Sudoku();
-//        SudokuSetBase set = new SudokuSetBase();
-//        initTemplatesRecursive(sudoku, 0, 0, 1, set);
-//        try {
-////            PrintWriter out = new PrintWriter(new FileWriter("templates.txt"));
-////            for (int i = 0; i < templates.length; i++) {
-////                if ((i % 2) == 0) {
-////                    out.print("        new SudokuSetBase(" + templates[i].mask1 + "L, " + templates[i].mask2 + "L),");
-////                } else {
-////                    out.println(" new SudokuSetBase(" + templates[i].mask1 + "L, " + templates[i].mask2 + "L),");
-////                }
-////            }
-////            out.close();
-//            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream("templates.dat"));
-//            out.writeObject(templates);
-//            out.close();
-//        } catch (Exception ex) {
-//            ex.printStackTrace();
-//        }
+        int anz = initTemplatesRecursive(0, 0, 0, 0, 0L, 0L);
+        if (anz != TEMPLATE_COUNT) {
+            Logger.getLogger(Sudoku.class.getName()).log(Level.SEVERE, "Wrong number of templates: {0}", anz);
+        }
 
         // jetzt noch die Templates für die Häuser
         for (int i = 0; i < LINES.length; i++) {
@@ -2387,29 +2440,41 @@ public class Sudoku implements Cloneable {
         }
     }
 
-//    private static int initTemplatesRecursive(Sudoku sudoku, int line, int index, int cand, SudokuSetBase set) {
-//        if (line >= Sudoku.LINES.length) {
-//            templates[index++] = set.clone();
-//            return index;
-//        }
-//        for (int i = 0; i < Sudoku.LINES[line].length; i++) {
-//            int lIndex = Sudoku.LINES[line][i];
-//            SudokuCell cell = sudoku.getCell(lIndex);
-//            if (cell.getValue() != 0 || !cell.isCandidate(SudokuCell.ALL, cand)) {
-//                // Zelle ist schon belegt (darf eigentlich nicht sein) oder der Kandidat ist hier nicht mehr m�glich
-//                continue;
-//            }
-//            // Kandidat in dieser Zeile setzen
-//            sudoku.setCell(lIndex, cand);
-//            set.add(lIndex);
-//            // weiter in n�chste Zeile
-//            index = initTemplatesRecursive(sudoku, line + 1, index, cand, set);
-//            // und Zelle wieder l�schen
-//            sudoku.setCell(lIndex, 0);
-//            set.remove(lIndex);
-//        }
-//        return index;
-//    }
+    /**
+     * Places the digit in every allowed cell of <code>line</code> and
+     * recurses into the next line. A complete template is stored at
+     * <code>index</code>.
+     *
+     * @param line
+     * @param index the index of the next template
+     * @param usedCols bit mask of all columns already used
+     * @param usedBlocks bit mask of all blocks already used
+     * @param m1 cells 0 - 63 of the template so far
+     * @param m2 cells 64 - 80 of the template so far
+     * @return the index of the next template
+     */
+    private static int initTemplatesRecursive(int line, int index, int usedCols, int usedBlocks, long m1, long m2) {
+        if (line >= UNITS) {
+            TEMPLATES_M1[index] = m1;
+            TEMPLATES_M2[index] = m2;
+            return index + 1;
+        }
+        for (int col = 0; col < UNITS; col++) {
+            int block = (line / 3) * 3 + col / 3;
+            if ((usedCols & (1 << col)) != 0 || (usedBlocks & (1 << block)) != 0) {
+                continue;
+            }
+            int cell = getIndex(line, col);
+            if (cell < 64) {
+                index = initTemplatesRecursive(line + 1, index, usedCols | (1 << col), usedBlocks | (1 << block),
+                        m1 | (1L << cell), m2);
+            } else {
+                index = initTemplatesRecursive(line + 1, index, usedCols | (1 << col), usedBlocks | (1 << block),
+                        m1, m2 | (1L << (cell - 64)));
+            }
+        }
+        return index;
+    }
 
     /**
      * Makes all cells editable; needed to edit a puzzle
@@ -2441,8 +2506,14 @@ public class Sudoku implements Cloneable {
         }
         Sudoku act = new Sudoku();
         act.set(this);
-        SudokuGenerator generator = SudokuGeneratorFactory.getDefaultGeneratorInstance();
-        int anzSol = generator.getNumberOfSolutions(act);
+        // the default generator is shared by all threads: use one from the pool
+        SudokuGenerator generator = SudokuGeneratorFactory.getInstance();
+        int anzSol;
+        try {
+            anzSol = generator.getNumberOfSolutions(act);
+        } finally {
+            SudokuGeneratorFactory.giveBack(generator);
+        }
         setStatusGivens(anzSol);
     }
 
@@ -2536,6 +2607,7 @@ public class Sudoku implements Cloneable {
      */
     public void setValues(int[] values) {
         this.values = values;
+        candidateSetsValid = false;
     }
 
     /**
@@ -2598,11 +2670,72 @@ public class Sudoku implements Cloneable {
         return cells;
     }
 
+    /**
+     * One set per candidate with all cells, in which the candidate is still
+     * possible. The sets are owned by the sudoku and must not be changed.
+     *
+     * @return
+     */
+    public SudokuSet[] getCandidateSets() {
+        if (!candidateSetsValid) {
+            rebuildCandidateSets();
+        }
+        return candidateSets;
+    }
+
+    /**
+     * One set per value with all cells, that are set to that value. The sets
+     * are owned by the sudoku and must not be changed.
+     *
+     * @return
+     */
+    public SudokuSet[] getPositionSets() {
+        if (!candidateSetsValid) {
+            rebuildCandidateSets();
+        }
+        return positionSets;
+    }
+
+    /**
+     * Rebuilds {@link #candidateSets} and {@link #positionSets} from scratch.
+     */
+    private void rebuildCandidateSets() {
+        for (int i = 1; i < candidateSets.length; i++) {
+            candidateSets[i].clear();
+            positionSets[i].clear();
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            if (values[i] != 0) {
+                positionSets[values[i]].add(i);
+            } else {
+                int[] cands = POSSIBLE_VALUES[cells[i]];
+                for (int j = 0; j < cands.length; j++) {
+                    candidateSets[cands[j]].add(i);
+                }
+            }
+        }
+        candidateSetsValid = true;
+    }
+
+    /**
+     * Creates an array of empty sets, one for every candidate (index 0 is unused).
+     *
+     * @return
+     */
+    private static SudokuSet[] createSets() {
+        SudokuSet[] sets = new SudokuSet[UNITS + 1];
+        for (int i = 0; i < sets.length; i++) {
+            sets[i] = new SudokuSet();
+        }
+        return sets;
+    }
+
     /**
      * @param cells the cells to set
      */
     public void setCells(short[] cells) {
         this.cells = cells;
+        candidateSetsValid = false;
     }
 
     /**
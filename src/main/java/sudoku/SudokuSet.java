@@ -41,9 +41,9 @@ package sudoku;
  */
 public class SudokuSet extends SudokuSetBase implements Cloneable {
     // für jede der 256 möglichen Kombinationen von Bits das entsprechende Array
-    private static int[][] possibleValues = new int[256][8];
+    private static final int[][] possibleValues = new int[256][8];
     // und zu jeder Zahl die Länge des Arrays
-    public static int[] anzValues = new int[256];
+    public static final int[] anzValues = new int[256];
     private static final long serialVersionUID = 1L;
     
     private int[] values = null;
@@ -80,9 +80,10 @@ public class SudokuSet extends SudokuSetBase implements Cloneable {
     public SudokuSet clone() {
         SudokuSet newSet = null;
         newSet = (SudokuSet) super.clone();
-        // dont clone the array (for performance reasons - might not be necessary)
-        values = null;
-        initialized = false;
+        // dont clone the array (for performance reasons - might not be necessary);
+        // the original keeps its array: it may be a shared template (see Sudoku.buddies)
+        newSet.values = null;
+        newSet.initialized = false;
 //        if (values != null) {
 //            newSet.values = Arrays.copyOf(values, values.length);
 //        }
@@ -23,44 +23,248 @@ import sudoku.*;
 import sudoku.solver.SudokuSolver;
 
 import java.awt.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Generates puzzles of a given {@link DifficultyLevel}: puzzles are
+ * created and rated until one matches the requested level or
+ * {@link #MAX_TRY_COUNT} puzzles have been tried.<br>
+ * {@link #generate(DifficultyLevel)} does the work on the calling thread,
+ * {@link #generate(DifficultyLevel, int, long, TimeUnit)} distributes it
+ * over several worker threads. Every worker uses its own
+ * {@link SudokuGenerator} (with its own random generator) and its own
+ * {@link SudokuSolver}, the try budget is shared by all workers.
+ * The first matching puzzle wins, all other workers stop after their
+ * current try.<br><br>
+ *
+ * Every call has its own {@link Run} (cancel flag, try counter and result),
+ * so workers of an earlier call that are still busy can never take part
+ * in a later call.
+ */
 public class BackgroundGenerator {
 
     //最多尝试次数
     private static final int MAX_TRY_COUNT = 20000;
+    /** Counter for the names of the worker threads. */
+    private static final AtomicInteger threadCount = new AtomicInteger();
 
-    private int tryCount = 0;
+    /**
+     * The state of one call to one of the generate methods.
+     */
+    private static final class Run {
+        /** Number of puzzles tried. */
+        final AtomicInteger tryCount = new AtomicInteger();
+        /** The first matching puzzle. */
+        final AtomicReference<Sudoku> result = new AtomicReference<Sudoku>();
+        /** Set by {@link BackgroundGenerator#cancel()}, checked by all workers before every try. */
+        volatile boolean cancelled = false;
 
+        /**
+         * Counts one try.
+         *
+         * @return <code>true</code>, if the run may go on
+         */
+        boolean nextTry() {
+            return !cancelled && result.get() == null && tryCount.getAndIncrement() < MAX_TRY_COUNT;
+        }
+    }
+
+    /** The run in progress, <code>null</code> if none. */
+    private Run activeRun = null;
+    /** The run of the last call, <code>null</code> if there was none. */
+    private Run lastRun = null;
+    /** {@link #cancel()} was called while no run was in progress. */
+    private boolean cancelPending = false;
+    /** The generator used by {@link #generate(DifficultyLevel)}, created on first use. */
+    private SudokuGenerator creator = null;
+    /** The solver used by {@link #generate(DifficultyLevel)}, created on first use. */
+    private SudokuSolver solver = null;
+
+    /**
+     * Generates a puzzle of <code>level</code> on the calling thread. Generator
+     * and solver are kept for subsequent calls, so an instance must not be
+     * used by more than one thread at a time.
+     *
+     * @param level
+     * @return the new puzzle or <code>null</code>, if none could be found
+     */
     public Sudoku generate(DifficultyLevel level) {
-        tryCount = 0;
+        Run run = startRun();
+        try {
+            if (creator == null) {
+                creator = new SudokuGenerator();
+                solver = new SudokuSolver();
+            }
 
-        SudokuGenerator creator = new SudokuGenerator();
-        SudokuSolver solver = new SudokuSolver();
+            Sudoku sudoku = null;
 
-        Sudoku sudoku = null;
+            while (run.nextTry()) {
+                sudoku = creator.generateSudoku(true);
+                if (sudoku == null) {
+                    return null;
+                }
+                if (rate(solver, sudoku, level)) {
+                    run.result.set(sudoku);
+                    return sudoku;
+                }
+            }
+
+            return null;
+        } finally {
+            endRun(run);
+        }
+    }
 
-        while (true) {
-            sudoku = creator.generateSudoku(true);
-            if (sudoku == null) {
-                return null;
+    /**
+     * Generates a puzzle of <code>level</code> using <code>threads</code> worker
+     * threads. The method returns as soon as one worker has found a matching
+     * puzzle, the try budget ({@link #MAX_TRY_COUNT}) is exhausted, the timeout
+     * has elapsed or {@link #cancel()} has been called. Workers that are still
+     * busy rating a puzzle finish that puzzle in the background and then stop.
+     *
+     * @param level
+     * @param threads number of worker threads (values &lt; 1 use all available processors)
+     * @param timeout maximum time to wait (values &lt;= 0 wait without time limit)
+     * @param unit
+     * @return the new puzzle or <code>null</code>, if none could be found
+     */
+    public Sudoku generate(final DifficultyLevel level, int threads, long timeout, TimeUnit unit) {
+        if (threads < 1) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        final Run run = startRun();
+        final CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "BackgroundGenerator-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
             }
-            Sudoku solvedSudoku = sudoku.clone();
-            boolean ok = solver.solve(level, solvedSudoku, true, false, Options.getInstance().solverSteps);
-            if (ok && solvedSudoku.getLevel().getOrdinal() == level.getOrdinal()) {
-                sudoku.setLevel(solvedSudoku.getLevel());
-                sudoku.setScore(solvedSudoku.getScore());
-                break;
+        });
+        for (int i = 0; i < threads; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        SudokuGenerator workerCreator = new SudokuGenerator();
+                        SudokuSolver workerSolver = new SudokuSolver();
+                        while (run.nextTry()) {
+                            Sudoku sudoku = workerCreator.generateSudoku(true);
+                            if (sudoku == null) {
+                                // pattern could not be satisfied, no other worker will do better
+                                run.cancelled = true;
+                                break;
+                            }
+                            if (rate(workerSolver, sudoku, level)) {
+                                run.result.compareAndSet(null, sudoku);
+                                break;
+                            }
+                        }
+                    } catch (RuntimeException ex) {
+                        Logger.getLogger(BackgroundGenerator.class.getName()).log(Level.SEVERE, "Error while generating", ex);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        try {
+            long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : Long.MAX_VALUE;
+            // wake up regularly to react to a result found while other workers are still busy
+            while (run.result.get() == null && !run.cancelled && done.getCount() > 0) {
+                long wait = Math.min(deadline - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(50));
+                if (wait <= 0) {
+                    break;
+                }
+                done.await(wait, TimeUnit.NANOSECONDS);
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // workers that are still busy stop after their current try
+            run.cancelled = true;
+            executor.shutdownNow();
+            endRun(run);
+        }
+        return run.result.get();
+    }
 
-            tryCount++;
+    /**
+     * Starts a new {@link Run}. If {@link #cancel()} has been called while no
+     * run was in progress, the new run is cancelled immediately.
+     *
+     * @return
+     */
+    private synchronized Run startRun() {
+        Run run = new Run();
+        if (cancelPending) {
+            run.cancelled = true;
+            cancelPending = false;
+        }
+        activeRun = run;
+        lastRun = run;
+        return run;
+    }
 
-            if (tryCount >= MAX_TRY_COUNT) {
-                sudoku = null;
-                break;
-            }
+    /**
+     * Ends <code>run</code>.
+     *
+     * @param run
+     */
+    private synchronized void endRun(Run run) {
+        if (activeRun == run) {
+            activeRun = null;
+        }
+    }
+
+    /**
+     * Rates <code>sudoku</code>. If it matches <code>level</code>, level
+     * and score are set in <code>sudoku</code>.
+     *
+     * @param solver
+     * @param sudoku
+     * @param level
+     * @return
+     */
+    private static boolean rate(SudokuSolver solver, Sudoku sudoku, DifficultyLevel level) {
+        Sudoku solvedSudoku = sudoku.clone();
+        boolean ok = solver.solve(level, solvedSudoku, true, false, Options.getInstance().solverSteps);
+        if (ok && solvedSudoku.getLevel().getOrdinal() == level.getOrdinal()) {
+            sudoku.setLevel(solvedSudoku.getLevel());
+            sudoku.setScore(solvedSudoku.getScore());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops a running generation (can be called from any thread). The
+     * generate method returns <code>null</code> as soon as possible. If no
+     * generation is running, the next one is stopped as soon as it starts.
+     */
+    public synchronized void cancel() {
+        if (activeRun != null) {
+            activeRun.cancelled = true;
+        } else {
+            cancelPending = true;
         }
+    }
 
-        return sudoku;
+    /**
+     * @return the number of puzzles tried by the last generation
+     */
+    public synchronized int getTryCount() {
+        return lastRun == null ? 0 : Math.min(lastRun.tryCount.get(), MAX_TRY_COUNT);
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.generator;
+
+import sudoku.DifficultyLevel;
+import sudoku.DifficultyType;
+import sudoku.Options;
+import sudoku.Sudoku;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of pre-generated puzzles for every {@link DifficultyLevel}.<br>
+ * {@link #getSudoku(DifficultyLevel)} never blocks: it hands out a puzzle
+ * from the pool or returns <code>null</code>, if the pool for that level is
+ * empty. Whenever a pool drops below {@link #lowWaterMark}, it is refilled
+ * up to {@link #poolSize} puzzles on a pool of background worker threads
+ * (at most one refill task per level at a time, every worker uses its own
+ * {@link BackgroundGenerator}).<br>
+ * The worker threads are only created on the first hand-out (or by
+ * {@link #start()}). If the rating relevant options change, all pools have to
+ * be discarded ({@link #resetAll()}).
+ *
+ * @author hobiwan
+ */
+public class BackgroundGeneratorThread {
+    /** The singleton instance. */
+    private static final BackgroundGeneratorThread instance = new BackgroundGeneratorThread();
+    /** Default number of puzzles held per level. */
+    public static final int DEFAULT_POOL_SIZE = 10;
+    /** Default level at which refilling starts. */
+    public static final int DEFAULT_LOW_WATER_MARK = 3;
+
+    /**
+     * The puzzles and the statistics for one {@link DifficultyLevel}.
+     */
+    private static class LevelPool {
+        /** The puzzles ready for hand-out. */
+        final ConcurrentLinkedQueue<Sudoku> puzzles = new ConcurrentLinkedQueue<Sudoku>();
+        /** Number of puzzles in {@link #puzzles} (size() is O(n) for the queue). */
+        final AtomicInteger size = new AtomicInteger();
+        /** <code>true</code> while a refill task for this level is scheduled or running. */
+        final AtomicBoolean refilling = new AtomicBoolean();
+        /** Number of requests that could be served from the pool. */
+        final AtomicLong hits = new AtomicLong();
+        /** Number of requests that found the pool empty. */
+        final AtomicLong misses = new AtomicLong();
+        /** Number of puzzles generated for this level. */
+        final AtomicLong generated = new AtomicLong();
+        /** Time spent generating puzzles for this level. */
+        final AtomicLong generationNanos = new AtomicLong();
+    }
+
+    /** One pool for every {@link DifficultyType}. */
+    private final LevelPool[] pools = new LevelPool[DifficultyType.values().length];
+    /** Maximum number of puzzles per level. */
+    private volatile int poolSize = DEFAULT_POOL_SIZE;
+    /** Refilling starts, when a pool holds less puzzles. */
+    private volatile int lowWaterMark = DEFAULT_LOW_WATER_MARK;
+    /** Number of worker threads used for refilling. */
+    private volatile int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    /** Incremented by {@link #resetAll()}: puzzles generated for an older epoch are discarded. */
+    private final AtomicInteger epoch = new AtomicInteger();
+    /** The worker threads, <code>null</code> until the first refill. */
+    private ExecutorService executor = null;
+    /** One {@link BackgroundGenerator} per worker thread. */
+    private final ThreadLocal<BackgroundGenerator> generators = new ThreadLocal<BackgroundGenerator>() {
+        @Override
+        protected BackgroundGenerator initialValue() {
+            return new BackgroundGenerator();
+        }
+    };
+
+    /**
+     * Creates the pools; no threads are started.
+     */
+    private BackgroundGeneratorThread() {
+        for (int i = 0; i < pools.length; i++) {
+            pools[i] = new LevelPool();
+        }
+    }
+
+    /**
+     * @return the singleton instance
+     */
+    public static BackgroundGeneratorThread getInstance() {
+        return instance;
+    }
+
+    /**
+     * Hands out a puzzle of <code>level</code>. The method never blocks,
+     * if no puzzle is available <code>null</code> is returned. If the pool
+     * drops below {@link #lowWaterMark}, a refill is started.
+     *
+     * @param level
+     * @return a rated puzzle or <code>null</code>
+     */
+    public Sudoku getSudoku(DifficultyLevel level) {
+        if (!isGeneratable(level)) {
+            return null;
+        }
+        LevelPool pool = pools[level.getOrdinal()];
+        Sudoku sudoku = pool.puzzles.poll();
+        if (sudoku != null) {
+            pool.size.decrementAndGet();
+            pool.hits.incrementAndGet();
+        } else {
+            pool.misses.incrementAndGet();
+        }
+        if (pool.size.get() < lowWaterMark) {
+            refill(level);
+        }
+        return sudoku;
+    }
+
+    /**
+     * Starts filling the pools for all levels.
+     */
+    public void start() {
+        for (DifficultyType type : DifficultyType.values()) {
+            refill(Options.getInstance().getDifficultyLevel(type.ordinal()));
+        }
+    }
+
+    /**
+     * Discards all pooled puzzles (needed, if the settings that affect
+     * rating have changed). Refill tasks still running discard their results,
+     * pools that had been filled before are filled again.
+     */
+    public void resetAll() {
+        epoch.incrementAndGet();
+        for (int i = 0; i < pools.length; i++) {
+            LevelPool pool = pools[i];
+            // same lock as in fill(): no puzzle of the old epoch can be added after the drain
+            synchronized (pool) {
+                while (pool.puzzles.poll() != null) {
+                    pool.size.decrementAndGet();
+                }
+            }
+        }
+        synchronized (this) {
+            if (executor == null) {
+                // pool was never used
+                return;
+            }
+        }
+        start();
+    }
+
+    /**
+     * Stops all worker threads. Pooled puzzles are kept, the next hand-out
+     * starts new workers.<br>
+     * Refill tasks that are already running finish their current puzzle
+     * (generation cannot be interrupted) and clear their
+     * {@link LevelPool#refilling} flag themselves; only the flags of tasks
+     * that never started are cleared here.
+     */
+    public synchronized void shutdown() {
+        if (executor != null) {
+            for (Runnable task : executor.shutdownNow()) {
+                if (task instanceof RefillTask) {
+                    ((RefillTask) task).pool.refilling.set(false);
+                }
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Schedules a refill task for <code>level</code>, if none is running.
+     *
+     * @param level
+     */
+    private void refill(final DifficultyLevel level) {
+        if (!isGeneratable(level)) {
+            return;
+        }
+        final LevelPool pool = pools[level.getOrdinal()];
+        if (pool.size.get() >= poolSize || !pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        getExecutor().execute(new RefillTask(level, pool));
+    }
+
+    /**
+     * Fills the pool of one level; clears {@link LevelPool#refilling} when done.
+     */
+    private class RefillTask implements Runnable {
+        /** The level to generate. */
+        private final DifficultyLevel level;
+        /** The pool for {@link #level}. */
+        private final LevelPool pool;
+
+        RefillTask(DifficultyLevel level, LevelPool pool) {
+            this.level = level;
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            try {
+                fill(level, pool);
+            } catch (RuntimeException ex) {
+                Logger.getLogger(BackgroundGeneratorThread.class.getName()).log(Level.SEVERE, "Error while refilling", ex);
+            } finally {
+                pool.refilling.set(false);
+            }
+            // a hand-out could have happened after the last check
+            if (!Thread.currentThread().isInterrupted() && pool.size.get() < lowWaterMark) {
+                refill(level);
+            }
+        }
+    }
+
+    /**
+     * Generates puzzles for <code>level</code> until the pool is full. Stops
+     * if {@link #resetAll()} is called, the thread is interrupted or no puzzle
+     * can be found.
+     *
+     * @param level
+     * @param pool
+     */
+    private void fill(DifficultyLevel level, LevelPool pool) {
+        int actEpoch = epoch.get();
+        BackgroundGenerator generator = generators.get();
+        while (pool.size.get() < poolSize && actEpoch == epoch.get() && !Thread.currentThread().isInterrupted()) {
+            long nanos = System.nanoTime();
+            Sudoku sudoku = generator.generate(level);
+            pool.generationNanos.addAndGet(System.nanoTime() - nanos);
+            if (sudoku == null) {
+                // try budget exhausted, try again on the next hand-out
+                break;
+            }
+            pool.generated.incrementAndGet();
+            // check and add under the lock resetAll() drains with
+            synchronized (pool) {
+                if (actEpoch != epoch.get()) {
+                    break;
+                }
+                pool.puzzles.add(sudoku);
+                pool.size.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Gets the worker threads, creates them if necessary.
+     *
+     * @return
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "BackgroundGeneratorThread-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Puzzles of level {@link DifficultyType#INCOMPLETE} cannot be generated.
+     *
+     * @param level
+     * @return
+     */
+    private boolean isGeneratable(DifficultyLevel level) {
+        return level != null && level.getOrdinal() > DifficultyType.INCOMPLETE.ordinal()
+                && level.getOrdinal() < pools.length;
+    }
+
+    /**
+     * @param level
+     * @return the number of puzzles currently available for <code>level</code>
+     */
+    public int getAvailable(DifficultyLevel level) {
+        return pools[level.getOrdinal()].size.get();
+    }
+
+    /**
+     * @param level
+     * @return the number of requests for <code>level</code> that got a puzzle
+     */
+    public long getHits(DifficultyLevel level) {
+        return pools[level.getOrdinal()].hits.get();
+    }
+
+    /**
+     * @param level
+     * @return the number of requests for <code>level</code> that found the pool empty
+     */
+    public long getMisses(DifficultyLevel level) {
+        return pools[level.getOrdinal()].misses.get();
+    }
+
+    /**
+     * @param level
+     * @return the number of puzzles generated for <code>level</code>
+     */
+    public long getGenerated(DifficultyLevel level) {
+        return pools[level.getOrdinal()].generated.get();
+    }
+
+    /**
+     * Refill rate for <code>level</code> in puzzles per second of generation
+     * time (per worker).
+     *
+     * @param level
+     * @return
+     */
+    public double getRefillRate(DifficultyLevel level) {
+        LevelPool pool = pools[level.getOrdinal()];
+        long nanos = pool.generationNanos.get();
+        return nanos == 0 ? 0.0 : pool.generated.get() * 1e9 / nanos;
+    }
+
+    /**
+     * @return hits, misses and refill rates for all levels
+     */
+    public String getStatistics() {
+        StringBuilder tmp = new StringBuilder("Statistic for BackgroundGeneratorThread:");
+        for (DifficultyType type : DifficultyType.values()) {
+            DifficultyLevel level = Options.getInstance().getDifficultyLevel(type.ordinal());
+            if (!isGeneratable(level)) {
+                continue;
+            }
+            tmp.append("\r\n    ").append(level.getName()).append(": available: ").append(getAvailable(level));
+            tmp.append(", hits: ").append(getHits(level)).append(", misses: ").append(getMisses(level));
+            tmp.append(", generated: ").append(getGenerated(level));
+            tmp.append(String.format(", rate: %.2f/s", getRefillRate(level)));
+        }
+        return tmp.toString();
+    }
+
+    /**
+     * @return the maximum number of puzzles per level
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @param poolSize the maximum number of puzzles per level
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return the number of puzzles below which a refill is started
+     */
+    public int getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    /**
+     * @param lowWaterMark the number of puzzles below which a refill is started
+     */
+    public void setLowWaterMark(int lowWaterMark) {
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * The number of worker threads is used when the workers are created
+     * (first refill or after {@link #shutdown()}).
+     *
+     * @param workerCount the number of worker threads
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+    }
+}
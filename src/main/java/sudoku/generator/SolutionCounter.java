@@ -0,0 +1,539 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+package sudoku.generator;
+
+import sudoku.Sudoku;
+
+/**
+ * Bitboard based solution counter. Counts the solutions of a sudoku
+ * up to {@link #MAX_SOLUTIONS} (which is all {@link SudokuGenerator}
+ * needs to decide, whether a puzzle is valid).<br><br>
+ *
+ * The grid is held as one 81-bit board per digit, every board is split into
+ * three bands of 27 bits (one <code>int</code> per band). Bit <code>p</code>
+ * of band <code>b</code> is cell <code>27 * b + p</code>, so a row of a band
+ * is a contiguous group of 9 bits.<br><br>
+ *
+ * Propagation is done completely on the boards:
+ * <ul>
+ * <li>For every digit and every band (and every stack) the 9 "mini rows"
+ * (3 cells of one row in one box) form a 3x3 matrix that must contain
+ * exactly one permutation. All mini rows that are not part of any
+ * permutation are eliminated by a table lookup ({@link #SHRINK}).</li>
+ * <li>Hidden Singles in rows, columns and boxes.</li>
+ * <li>Naked Singles (found for 27 cells at once by bitwise counting).</li>
+ * </ul>
+ * The recursion stores the state (30 ints) in a preallocated array, no
+ * objects are created while solving.
+ *
+ * @author hobiwan
+ */
+public class SolutionCounter {
+
+    /** Counting stops as soon as this many solutions have been found. */
+    public static final int MAX_SOLUTIONS = 2;
+    /** Number of ints in one board state: 27 digit/band words and 3 unsolved words. */
+    private static final int STATE_SIZE = 30;
+    /** Offset of the unsolved cells in the state. */
+    private static final int UNSOLVED = 27;
+    /** All 27 cells of a band. */
+    private static final int BAND_MASK = 0x7ffffff;
+    /** The cells of the three rows of a band. */
+    private static final int[] ROW_MASK = {0x1ff, 0x1ff << 9, 0x1ff << 18};
+    /** The cells of the three boxes of a band. */
+    private static final int[] BOX_MASK = {0x1c0e07, 0x1c0e07 << 3, 0x1c0e07 << 6};
+    /** The cells of one column within a band. */
+    private static final int[] COL_MASK = new int[9];
+    /** All cells of the columns in a 9 bit column mask. */
+    private static final int[] COLS_TO_MASK = new int[512];
+    /** Row and box buddies of every cell of a band (including the cell itself). */
+    private static final int[] BAND_BUDDIES = new int[27];
+    /** Mini row pattern (3 bits) for every possible row (9 bits). */
+    private static final int[] ROW_TO_MINI = new int[512];
+    /** All cells belonging to a mini row pattern (9 bits, bit <code>3 * row + box</code>). */
+    private static final int[] MINI_TO_MASK = new int[512];
+    /**
+     * For every mini row pattern: all mini rows that belong to at least one
+     * permutation contained in the pattern (0, if no permutation exists).
+     */
+    private static final int[] SHRINK = new int[512];
+
+    static {
+        for (int col = 0; col < 9; col++) {
+            COL_MASK[col] = (1 | 1 << 9 | 1 << 18) << col;
+        }
+        for (int cols = 0; cols < 512; cols++) {
+            COLS_TO_MASK[cols] = cols | cols << 9 | cols << 18;
+        }
+        for (int p = 0; p < 27; p++) {
+            BAND_BUDDIES[p] = ROW_MASK[p / 9] | BOX_MASK[(p % 9) / 3];
+        }
+        for (int row = 0; row < 512; row++) {
+            for (int box = 0; box < 3; box++) {
+                if ((row & (7 << (3 * box))) != 0) {
+                    ROW_TO_MINI[row] |= 1 << box;
+                }
+            }
+        }
+        for (int pattern = 0; pattern < 512; pattern++) {
+            for (int bit = 0; bit < 9; bit++) {
+                if ((pattern & (1 << bit)) != 0) {
+                    MINI_TO_MASK[pattern] |= 7 << (9 * (bit / 3) + 3 * (bit % 3));
+                }
+            }
+        }
+        // the six permutations of a 3x3 matrix
+        int[][] perms = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        for (int pattern = 0; pattern < 512; pattern++) {
+            int result = 0;
+            for (int[] perm : perms) {
+                int permMask = 1 << perm[0] | 1 << (3 + perm[1]) | 1 << (6 + perm[2]);
+                if ((pattern & permMask) == permMask) {
+                    result |= permMask;
+                }
+            }
+            SHRINK[pattern] = result;
+        }
+    }
+
+    /** The current state: candidates per digit and band, unsolved cells per band. */
+    private final int[] state = new int[STATE_SIZE];
+    /**
+     * The boards of every digit at the time the digit was last checked. Digits
+     * whose boards are unchanged are skipped by {@link #propagate()}.
+     */
+    private final int[] checked = new int[UNSOLVED];
+    /** One saved state per recursion level. */
+    private final int[] stack = new int[(Sudoku.LENGTH + 1) * STATE_SIZE];
+    /** The cell values of the first solution found. */
+    private final int[] solution = new int[Sudoku.LENGTH];
+    /** Number of solutions found by the last call. */
+    private int solutionCount = 0;
+    /** Number of guesses made by the last call. */
+    private int guesses = 0;
+
+    /**
+     * Creates a new instance.
+     */
+    public SolutionCounter() {
+        // nothing to do
+    }
+
+    /**
+     * Counts the solutions of <code>sudoku</code> (up to {@link #MAX_SOLUTIONS}).
+     * The values and the candidates of all unsolved cells are taken into account,
+     * <code>sudoku</code> itself is not changed.
+     *
+     * @param sudoku
+     * @return 0 (invalid), 1 (valid), or 2 (multiple solutions)
+     */
+    public int countSolutions(Sudoku sudoku) {
+        for (int i = 0; i < STATE_SIZE; i++) {
+            state[i] = 0;
+        }
+        for (int index = 0; index < Sudoku.LENGTH; index++) {
+            int value = sudoku.getValue(index);
+            int band = index / 27;
+            int bit = 1 << (index % 27);
+            if (value != 0) {
+                state[(value - 1) * 3 + band] |= bit;
+            } else {
+                int cands = sudoku.getCell(index);
+                for (int digit = 0; digit < 9; digit++) {
+                    if ((cands & (1 << digit)) != 0) {
+                        state[digit * 3 + band] |= bit;
+                    }
+                }
+            }
+        }
+        state[UNSOLVED] = state[UNSOLVED + 1] = state[UNSOLVED + 2] = BAND_MASK;
+        for (int index = 0; index < Sudoku.LENGTH; index++) {
+            int value = sudoku.getValue(index);
+            if (value != 0 && !place(value - 1, index / 27, index % 27)) {
+                return finish(0);
+            }
+        }
+        return count();
+    }
+
+    /**
+     * Counts the solutions of a sudoku given as 81 cell values (0 for
+     * an empty cell) up to {@link #MAX_SOLUTIONS}.
+     *
+     * @param cellValues
+     * @return 0 (invalid), 1 (valid), or 2 (multiple solutions)
+     */
+    public int countSolutions(int[] cellValues) {
+        for (int i = 0; i < UNSOLVED; i++) {
+            state[i] = BAND_MASK;
+        }
+        state[UNSOLVED] = state[UNSOLVED + 1] = state[UNSOLVED + 2] = BAND_MASK;
+        for (int index = 0; index < cellValues.length && index < Sudoku.LENGTH; index++) {
+            int value = cellValues[index];
+            if (value >= 1 && value <= 9 && !place(value - 1, index / 27, index % 27)) {
+                return finish(0);
+            }
+        }
+        return count();
+    }
+
+    /**
+     * Counts the solutions of a sudoku given as 81 character string
+     * (everything except '1' to '9' is an empty cell).
+     *
+     * @param sudokuString
+     * @return 0 (invalid), 1 (valid), or 2 (multiple solutions)
+     */
+    public int countSolutions(String sudokuString) {
+        int[] cellValues = new int[Sudoku.LENGTH];
+        for (int i = 0; i < sudokuString.length() && i < Sudoku.LENGTH; i++) {
+            int value = sudokuString.charAt(i) - '0';
+            if (value >= 1 && value <= 9) {
+                cellValues[i] = value;
+            }
+        }
+        return countSolutions(cellValues);
+    }
+
+    /**
+     * Starts the search on the initialized {@link #state}.
+     *
+     * @return
+     */
+    private int count() {
+        for (int i = 0; i < UNSOLVED; i++) {
+            checked[i] = -1;
+        }
+        solutionCount = 0;
+        guesses = 0;
+        search(0);
+        return solutionCount;
+    }
+
+    /**
+     * Sets {@link #solutionCount} (used if the setup already fails).
+     *
+     * @param anz
+     * @return
+     */
+    private int finish(int anz) {
+        solutionCount = anz;
+        guesses = 0;
+        return anz;
+    }
+
+    /**
+     * The recursive search: propagate, check for a solution, guess
+     * in the cell with the fewest candidates.
+     *
+     * @param level
+     */
+    private void search(int level) {
+        if (!propagate()) {
+            return;
+        }
+        int[] st = state;
+        if ((st[UNSOLVED] | st[UNSOLVED + 1] | st[UNSOLVED + 2]) == 0) {
+            solutionCount++;
+            if (solutionCount == 1) {
+                recordSolution();
+            }
+            return;
+        }
+        // find a cell with two candidates (or any unsolved cell, if there is none)
+        int guessBand = -1;
+        int guessBit = 0;
+        int bestBit = 0;
+        int bestBand = -1;
+        for (int band = 0; band < 3 && guessBand < 0; band++) {
+            int unsolved = st[UNSOLVED + band];
+            if (unsolved == 0) {
+                continue;
+            }
+            int one = 0;
+            int two = 0;
+            int three = 0;
+            for (int digit = 0; digit < 9; digit++) {
+                int m = st[digit * 3 + band];
+                three |= two & m;
+                two |= one & m;
+                one |= m;
+            }
+            int biValue = two & ~three & unsolved;
+            if (biValue != 0) {
+                guessBand = band;
+                guessBit = biValue & -biValue;
+            } else if (bestBand < 0) {
+                bestBand = band;
+                bestBit = unsolved & -unsolved;
+            }
+        }
+        if (guessBand < 0) {
+            guessBand = bestBand;
+            guessBit = bestBit;
+        }
+        int p = Integer.numberOfTrailingZeros(guessBit);
+        int offset = level * STATE_SIZE;
+        System.arraycopy(st, 0, stack, offset, STATE_SIZE);
+        boolean first = true;
+        for (int digit = 0; digit < 9; digit++) {
+            if ((stack[offset + digit * 3 + guessBand] & guessBit) == 0) {
+                continue;
+            }
+            if (!first) {
+                System.arraycopy(stack, offset, st, 0, STATE_SIZE);
+            }
+            first = false;
+            // the saved state is fully propagated: only the guess makes digits dirty
+            System.arraycopy(st, 0, checked, 0, UNSOLVED);
+            guesses++;
+            if (place(digit, guessBand, p)) {
+                search(level + 1);
+                if (solutionCount >= MAX_SOLUTIONS) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Places <code>digit</code> (0 based) in cell <code>p</code> of
+     * <code>band</code>: All other digits are removed from the cell,
+     * the digit is removed from all buddies.
+     *
+     * @param digit
+     * @param band
+     * @param p
+     * @return <code>false</code>, if the placement is not possible
+     */
+    private boolean place(int digit, int band, int p) {
+        int[] st = state;
+        int bit = 1 << p;
+        int index = digit * 3 + band;
+        if ((st[UNSOLVED + band] & bit) == 0) {
+            // already set: valid only if set with the same digit
+            return (st[index] & bit) != 0;
+        }
+        if ((st[index] & bit) == 0) {
+            return false;
+        }
+        for (int i = band; i < UNSOLVED; i += 3) {
+            st[i] &= ~bit;
+        }
+        st[index] = (st[index] & ~BAND_BUDDIES[p]) | bit;
+        int col = COL_MASK[p % 9];
+        int base = digit * 3;
+        for (int b = 0; b < 3; b++) {
+            if (b != band) {
+                st[base + b] &= ~col;
+            }
+        }
+        st[UNSOLVED + band] &= ~bit;
+        return true;
+    }
+
+    /**
+     * Propagates all constraints until nothing changes anymore. A digit
+     * is only checked again, if its boards have changed since the last check
+     * (see {@link #checked}).
+     *
+     * @return <code>false</code>, if the sudoku has become invalid
+     */
+    private boolean propagate() {
+        int[] st = state;
+        int[] last = checked;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int digit = 0; digit < 9; digit++) {
+                int base = digit * 3;
+                if (st[base] == last[base] && st[base + 1] == last[base + 1] && st[base + 2] == last[base + 2]) {
+                    continue;
+                }
+                changed = true;
+                // band-wise: mini rows in rows x boxes
+                for (int band = 0; band < 3; band++) {
+                    int x = st[base + band];
+                    int pattern = ROW_TO_MINI[x & 0x1ff] | ROW_TO_MINI[(x >>> 9) & 0x1ff] << 3
+                            | ROW_TO_MINI[x >>> 18] << 6;
+                    x &= MINI_TO_MASK[SHRINK[pattern]];
+                    if (x == 0) {
+                        return false;
+                    }
+                    st[base + band] = x;
+                }
+                // stack-wise: mini columns in bands x columns
+                int c0 = fold(st[base]);
+                int c1 = fold(st[base + 1]);
+                int c2 = fold(st[base + 2]);
+                for (int shift = 0; shift < 9; shift += 3) {
+                    int pattern = (c0 >>> shift) & 7 | ((c1 >>> shift) & 7) << 3 | ((c2 >>> shift) & 7) << 6;
+                    int keep = SHRINK[pattern];
+                    if (keep == 0) {
+                        return false;
+                    }
+                    int del = pattern ^ keep;
+                    if (del != 0) {
+                        st[base] &= ~COLS_TO_MASK[(del & 7) << shift];
+                        st[base + 1] &= ~COLS_TO_MASK[((del >>> 3) & 7) << shift];
+                        st[base + 2] &= ~COLS_TO_MASK[(del >>> 6) << shift];
+                    }
+                }
+                // Hidden Singles in rows and boxes
+                for (int band = 0; band < 3; band++) {
+                    for (int i = 0; i < 3; i++) {
+                        int row = st[base + band] & ROW_MASK[i];
+                        if ((row & (row - 1)) == 0 && (row & st[UNSOLVED + band]) != 0) {
+                            if (!place(digit, band, Integer.numberOfTrailingZeros(row))) {
+                                return false;
+                            }
+                        }
+                        int box = st[base + band] & BOX_MASK[i];
+                        if ((box & (box - 1)) == 0 && (box & st[UNSOLVED + band]) != 0) {
+                            if (!place(digit, band, Integer.numberOfTrailingZeros(box))) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+                // Hidden Singles in columns: count all 9 rows at once
+                int one = 0;
+                int two = 0;
+                for (int band = 0; band < 3; band++) {
+                    int x = st[base + band];
+                    for (int shift = 0; shift < 27; shift += 9) {
+                        int m = (x >>> shift) & 0x1ff;
+                        two |= one & m;
+                        one |= m;
+                    }
+                }
+                if (one != 0x1ff) {
+                    // column without candidate
+                    return false;
+                }
+                int singles = one & ~two;
+                while (singles != 0) {
+                    int colMask = COL_MASK[Integer.numberOfTrailingZeros(singles)];
+                    singles &= singles - 1;
+                    for (int band = 0; band < 3; band++) {
+                        int bit = st[base + band] & colMask;
+                        if (bit != 0) {
+                            if ((bit & st[UNSOLVED + band]) != 0
+                                    && !place(digit, band, Integer.numberOfTrailingZeros(bit))) {
+                                return false;
+                            }
+                            break;
+                        }
+                    }
+                }
+                last[base] = st[base];
+                last[base + 1] = st[base + 1];
+                last[base + 2] = st[base + 2];
+            }
+            // Naked Singles: count candidates for 27 cells at once
+            for (int band = 0; band < 3; band++) {
+                int unsolved = st[UNSOLVED + band];
+                if (unsolved == 0) {
+                    continue;
+                }
+                int one = 0;
+                int two = 0;
+                for (int i = band; i < UNSOLVED; i += 3) {
+                    int m = st[i] & unsolved;
+                    two |= one & m;
+                    one |= m;
+                }
+                if ((unsolved & ~one) != 0) {
+                    // cell without candidates
+                    return false;
+                }
+                int singles = one & ~two;
+                while (singles != 0) {
+                    int bit = singles & -singles;
+                    singles &= ~bit;
+                    if ((st[UNSOLVED + band] & bit) == 0) {
+                        continue;
+                    }
+                    int digit = 0;
+                    while ((st[digit * 3 + band] & bit) == 0) {
+                        if (++digit == 9) {
+                            // eliminated by a previous placement
+                            return false;
+                        }
+                    }
+                    if (!place(digit, band, Integer.numberOfTrailingZeros(bit))) {
+                        return false;
+                    }
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Folds the three rows of a band into one 9 bit column mask.
+     *
+     * @param x
+     * @return
+     */
+    private static int fold(int x) {
+        return (x | x >>> 9 | x >>> 18) & 0x1ff;
+    }
+
+    /**
+     * Copies the current (solved) state into {@link #solution}.
+     */
+    private void recordSolution() {
+        for (int digit = 0; digit < 9; digit++) {
+            for (int band = 0; band < 3; band++) {
+                int x = state[digit * 3 + band];
+                while (x != 0) {
+                    int p = Integer.numberOfTrailingZeros(x);
+                    x &= x - 1;
+                    solution[band * 27 + p] = digit + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * The values of the first solution found by the last call (only valid
+     * if {@link #getSolutionCount()} is greater than 0).
+     *
+     * @return
+     */
+    public int[] getSolution() {
+        return solution;
+    }
+
+    /**
+     * @return the number of solutions found by the last call
+     */
+    public int getSolutionCount() {
+        return solutionCount;
+    }
+
+    /**
+     * @return the number of guesses made by the last call
+     */
+    public int getGuesses() {
+        return guesses;
+    }
+}
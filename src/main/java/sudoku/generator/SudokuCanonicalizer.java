@@ -0,0 +1,667 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.generator;
+
+import sudoku.Sudoku;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Maps the givens of a puzzle to a canonical form: all puzzles, that can be
+ * transformed into each other by permuting bands, stacks, rows within a band,
+ * columns within a stack, by transposition and by relabelling the digits, get
+ * the same canonical form.<br><br>
+ *
+ * The canonical form is the smallest of all 3,359,232 * 9! transformed puzzles:
+ * puzzles are compared by the pattern of their givens first (read row by row,
+ * empty cells before givens), puzzles with the same pattern by their digits
+ * (read row by row, digits relabelled in order of appearance).<br><br>
+ *
+ * The pattern is built one row at a time: only the transformations, that produce
+ * the smallest pattern so far, are kept. Rows are 9 bit masks, the result of every
+ * column permutation on every mask is precomputed. The first row can be chosen
+ * freely, so for every mask the smallest permuted mask and all column permutations
+ * that produce it are precomputed too. The few transformations, that produce the
+ * smallest pattern, are then compared by their digits; rows are packed in longs
+ * (4 bits per cell, first cell in the highest bits). All partial transformations
+ * are kept in primitive arrays that are reused between calls.<br><br>
+ *
+ * Puzzles with very few givens have many automorphisms and are much slower
+ * (an empty grid takes about a second).<br><br>
+ *
+ * An instance must not be used by more than one thread at a time; the static
+ * methods use one instance per thread.
+ *
+ * @author hobiwan
+ */
+public class SudokuCanonicalizer {
+    /** All permutations of three elements. */
+    private static final int[][] PERMS3 = {
+        {0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+    };
+    /** All column permutations, that keep the stacks: canonical column -> original column. */
+    private static final int[][] COL_PERMS = new int[6 * 6 * 6 * 6][9];
+    /** The result of every column permutation on every row mask (bit 8 is column 0). */
+    private static final short[][] PERMUTED_MASKS = new short[COL_PERMS.length][512];
+    /**
+     * The smallest pattern a row with the givens <code>mask</code> can get
+     * by a column permutation (bit 8 is column 0).
+     */
+    private static final int[] MIN_MASKS = new int[512];
+    /** All column permutations (indices into {@link #COL_PERMS}) that produce {@link #MIN_MASKS}. */
+    private static final int[][] MIN_PERMS = new int[512][];
+    /**
+     * The smallest pattern a row with the givens <code>mask2</code> can get by the
+     * column permutations in {@link #MIN_PERMS}<code>[mask1]</code>: the second row
+     * of a band, if <code>mask1</code> is the first row (index is <code>mask1 * 512 + mask2</code>).
+     */
+    private static final short[] MIN_MASKS2 = new short[512 * 512];
+    /** One instance per thread for the static methods. */
+    private static final ThreadLocal<SudokuCanonicalizer> instances = new ThreadLocal<SudokuCanonicalizer>() {
+        @Override
+        protected SudokuCanonicalizer initialValue() {
+            return new SudokuCanonicalizer();
+        }
+    };
+
+    static {
+        int index = 0;
+        for (int[] stacks : PERMS3) {
+            for (int[] p0 : PERMS3) {
+                for (int[] p1 : PERMS3) {
+                    for (int[] p2 : PERMS3) {
+                        int[][] inStack = {p0, p1, p2};
+                        for (int s = 0; s < 3; s++) {
+                            for (int c = 0; c < 3; c++) {
+                                COL_PERMS[index][s * 3 + c] = stacks[s] * 3 + inStack[s][c];
+                            }
+                        }
+                        index++;
+                    }
+                }
+            }
+        }
+        int[] perms = new int[COL_PERMS.length];
+        for (int mask = 0; mask < MIN_MASKS.length; mask++) {
+            int min = Integer.MAX_VALUE;
+            int anz = 0;
+            for (int p = 0; p < COL_PERMS.length; p++) {
+                int permuted = 0;
+                for (int c = 0; c < 9; c++) {
+                    permuted = (permuted << 1) | ((mask >> (8 - COL_PERMS[p][c])) & 1);
+                }
+                PERMUTED_MASKS[p][mask] = (short) permuted;
+                if (permuted < min) {
+                    min = permuted;
+                    anz = 0;
+                }
+                if (permuted == min) {
+                    perms[anz++] = p;
+                }
+            }
+            MIN_MASKS[mask] = min;
+            MIN_PERMS[mask] = Arrays.copyOf(perms, anz);
+        }
+        Arrays.fill(MIN_MASKS2, Short.MAX_VALUE);
+        for (int mask1 = 0; mask1 < MIN_PERMS.length; mask1++) {
+            int offset = mask1 * 512;
+            for (int p : MIN_PERMS[mask1]) {
+                short[] permuted = PERMUTED_MASKS[p];
+                for (int mask2 = 0; mask2 < 512; mask2++) {
+                    if (permuted[mask2] < MIN_MASKS2[offset + mask2]) {
+                        MIN_MASKS2[offset + mask2] = permuted[mask2];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The transformation from a puzzle to its canonical form. If the puzzle
+     * has automorphisms, it is one of several possible transformations.
+     */
+    public static final class Transform {
+        /** <code>true</code>, if the puzzle is transposed before rows and columns are permuted. */
+        private final boolean transposed;
+        /** Canonical row -> row in the (transposed) puzzle. */
+        private final int[] rows;
+        /** Canonical column -> column in the (transposed) puzzle. */
+        private final int[] cols;
+        /** Original digit -> canonical digit (index 0 is unused). */
+        private final int[] digits;
+        /** Canonical digit -> original digit (index 0 is unused). */
+        private final int[] originalDigits = new int[10];
+        /** Canonical index -> original index. */
+        private final int[] originalIndices = new int[Sudoku.LENGTH];
+        /** Original index -> canonical index. */
+        private final int[] canonicalIndices = new int[Sudoku.LENGTH];
+        /** The canonical form of the givens. */
+        private final int[] canonicalGivens;
+
+        /**
+         * Creates a new transform.
+         *
+         * @param transposed
+         * @param rows
+         * @param cols
+         * @param digits
+         * @param canonicalGivens
+         */
+        private Transform(boolean transposed, int[] rows, int[] cols, int[] digits, int[] canonicalGivens) {
+            this.transposed = transposed;
+            this.rows = rows;
+            this.cols = cols;
+            this.digits = digits;
+            this.canonicalGivens = canonicalGivens;
+            for (int d = 1; d <= 9; d++) {
+                originalDigits[digits[d]] = d;
+            }
+            for (int i = 0; i < Sudoku.LENGTH; i++) {
+                int row = rows[i / 9];
+                int col = cols[i % 9];
+                originalIndices[i] = transposed ? col * 9 + row : row * 9 + col;
+                canonicalIndices[originalIndices[i]] = i;
+            }
+        }
+
+        /**
+         * @return the transposed
+         */
+        public boolean isTransposed() {
+            return transposed;
+        }
+
+        /**
+         * Gets the row of the (transposed) puzzle that becomes canonical row <code>row</code>.
+         *
+         * @param row
+         * @return
+         */
+        public int getRow(int row) {
+            return rows[row];
+        }
+
+        /**
+         * Gets the column of the (transposed) puzzle that becomes canonical column <code>col</code>.
+         *
+         * @param col
+         * @return
+         */
+        public int getCol(int col) {
+            return cols[col];
+        }
+
+        /**
+         * Maps a cell of the original puzzle to the canonical puzzle.
+         *
+         * @param index
+         * @return
+         */
+        public int getCanonicalIndex(int index) {
+            return canonicalIndices[index];
+        }
+
+        /**
+         * Maps a cell of the canonical puzzle back to the original puzzle.
+         *
+         * @param index
+         * @return
+         */
+        public int getOriginalIndex(int index) {
+            return originalIndices[index];
+        }
+
+        /**
+         * Maps a digit of the original puzzle to the canonical puzzle.
+         *
+         * @param digit
+         * @return
+         */
+        public int getCanonicalDigit(int digit) {
+            return digits[digit];
+        }
+
+        /**
+         * Maps a digit of the canonical puzzle back to the original puzzle.
+         *
+         * @param digit
+         * @return
+         */
+        public int getOriginalDigit(int digit) {
+            return originalDigits[digit];
+        }
+
+        /**
+         * Applies the transformation to a grid of the original orientation
+         * (givens, a solution or any other cell values).
+         *
+         * @param values 81 cell values, 0 for empty cells
+         * @return The transformed values
+         */
+        public int[] apply(int[] values) {
+            int[] result = new int[Sudoku.LENGTH];
+            for (int i = 0; i < Sudoku.LENGTH; i++) {
+                result[i] = digits[values[originalIndices[i]]];
+            }
+            return result;
+        }
+
+        /**
+         * @return the canonical givens (81 cell values, 0 for empty cells)
+         */
+        public int[] getCanonicalGivens() {
+            return canonicalGivens.clone();
+        }
+
+        /**
+         * @return the canonical form, an 81 character string, empty cells are '.'
+         */
+        public String getCanonicalForm() {
+            StringBuilder out = new StringBuilder(Sudoku.LENGTH);
+            for (int value : canonicalGivens) {
+                out.append(value == 0 ? '.' : (char) ('0' + value));
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * The partial transformations of one search level in primitive arrays.
+     */
+    private static final class Candidates {
+        /** Number of candidates. */
+        int anz = 0;
+        /** 0 for the original grid, 1 for the transposed grid. */
+        int[] grids = new int[256];
+        /** The column permutation (index into {@link #COL_PERMS}). */
+        int[] perms = new int[256];
+        /** The rows chosen so far, 4 bits per canonical row (row 0 in the lowest bits). */
+        long[] rows = new long[256];
+        /** The rows chosen so far as bit mask. */
+        int[] usedRows = new int[256];
+
+        /**
+         * Adds a candidate.
+         *
+         * @param grid
+         * @param perm
+         * @param row
+         * @param usedRow
+         */
+        void add(int grid, int perm, long row, int usedRow) {
+            if (anz == grids.length) {
+                int newLength = anz * 2;
+                grids = Arrays.copyOf(grids, newLength);
+                perms = Arrays.copyOf(perms, newLength);
+                rows = Arrays.copyOf(rows, newLength);
+                usedRows = Arrays.copyOf(usedRows, newLength);
+            }
+            grids[anz] = grid;
+            perms[anz] = perm;
+            rows[anz] = row;
+            usedRows[anz] = usedRow;
+            anz++;
+        }
+    }
+
+    /** The givens and the transposed givens. */
+    private final int[][] grids = new int[2][Sudoku.LENGTH];
+    /** The row masks of {@link #grids} (bit 8 is column 0). */
+    private final int[][] masks = new int[2][9];
+    /** The candidates of the current level. */
+    private Candidates candidates = new Candidates();
+    /** The candidates of the next level. */
+    private Candidates next = new Candidates();
+    /** The digit mapping after the last call to {@link #labelRow(int[], int, int[], long, int)}. */
+    private long newLabels;
+    /** The next canonical digit after the last call to {@link #labelRow(int[], int, int[], long, int)}. */
+    private int newNextLabel;
+
+    /**
+     * Gets the canonical form of the givens of <code>sudoku</code>.
+     *
+     * @param sudoku
+     * @return An 81 character string, empty cells are '.'
+     */
+    public static String getCanonicalForm(Sudoku sudoku) {
+        return instances.get().canonicalize(sudoku).getCanonicalForm();
+    }
+
+    /**
+     * Gets the canonical form of a puzzle.
+     *
+     * @param givens 81 cell values, 0 for empty cells
+     * @return An 81 character string, empty cells are '.'
+     */
+    public static String getCanonicalForm(int[] givens) {
+        return instances.get().canonicalize(givens).getCanonicalForm();
+    }
+
+    /**
+     * Finds the transformation of the givens of <code>sudoku</code> to their
+     * canonical form.
+     *
+     * @param sudoku
+     * @return
+     */
+    public Transform canonicalize(Sudoku sudoku) {
+        int[] givens = new int[Sudoku.LENGTH];
+        for (int i = 0; i < givens.length; i++) {
+            if (sudoku.isFixed(i)) {
+                givens[i] = sudoku.getValue(i);
+            }
+        }
+        return canonicalize(givens);
+    }
+
+    /**
+     * Finds the transformation of a puzzle to its canonical form.
+     *
+     * @param givens 81 cell values, 0 for empty cells
+     * @return
+     */
+    public Transform canonicalize(int[] givens) {
+        for (int i = 0; i < Sudoku.LENGTH; i++) {
+            grids[0][i] = givens[i];
+            grids[1][(i % 9) * 9 + i / 9] = givens[i];
+        }
+
+        // first row: the rows with the smallest pattern
+        int minMask = Integer.MAX_VALUE;
+        for (int t = 0; t < 2; t++) {
+            for (int r = 0; r < 9; r++) {
+                int mask = 0;
+                for (int c = 0; c < 9; c++) {
+                    mask = (mask << 1) | (grids[t][r * 9 + c] != 0 ? 1 : 0);
+                }
+                masks[t][r] = mask;
+                minMask = Math.min(minMask, MIN_MASKS[mask]);
+            }
+        }
+
+        // second row: only rows of the same band, the column permutations have to
+        // produce the smallest first row
+        int best = Integer.MAX_VALUE;
+        candidates.anz = 0;
+        for (int t = 0; t < 2; t++) {
+            for (int r0 = 0; r0 < 9; r0++) {
+                int mask0 = masks[t][r0];
+                if (MIN_MASKS[mask0] != minMask) {
+                    continue;
+                }
+                for (int r1 = r0 / 3 * 3; r1 < r0 / 3 * 3 + 3; r1++) {
+                    if (r1 == r0) {
+                        continue;
+                    }
+                    int mask1 = masks[t][r1];
+                    int mask = MIN_MASKS2[mask0 * 512 + mask1];
+                    if (mask > best) {
+                        continue;
+                    }
+                    if (mask < best) {
+                        best = mask;
+                        candidates.anz = 0;
+                    }
+                    for (int p : MIN_PERMS[mask0]) {
+                        if (PERMUTED_MASKS[p][mask1] == mask) {
+                            candidates.add(t, p, r0 | (r1 << 4), (1 << r0) | (1 << r1));
+                        }
+                    }
+                }
+            }
+        }
+
+        // all other rows: the column permutation is fixed, only rows can be chosen
+        for (int k = 2; k < 9; k++) {
+            best = Integer.MAX_VALUE;
+            next.anz = 0;
+            for (int i = 0; i < candidates.anz; i++) {
+                int used = candidates.usedRows[i];
+                int allowed;
+                if (k % 3 != 0) {
+                    // the band of the last row
+                    int band = (int) (candidates.rows[i] >> (4 * (k - 1)) & 0xf) / 3;
+                    allowed = (7 << (band * 3)) & ~used;
+                } else {
+                    // the first row of a band that has not been used yet
+                    allowed = 0;
+                    for (int band = 0; band < 3; band++) {
+                        if ((used & (7 << (band * 3))) == 0) {
+                            allowed |= 7 << (band * 3);
+                        }
+                    }
+                }
+                int[] rowMasks = masks[candidates.grids[i]];
+                short[] permuted = PERMUTED_MASKS[candidates.perms[i]];
+                for (int r = 0; r < 9; r++) {
+                    if ((allowed & (1 << r)) == 0) {
+                        continue;
+                    }
+                    int mask = permuted[rowMasks[r]];
+                    if (mask > best) {
+                        continue;
+                    }
+                    if (mask < best) {
+                        best = mask;
+                        next.anz = 0;
+                    }
+                    next.add(candidates.grids[i], candidates.perms[i],
+                            candidates.rows[i] | ((long) r << (4 * k)), used | (1 << r));
+                }
+            }
+            Candidates tmp = candidates;
+            candidates = next;
+            next = tmp;
+        }
+
+        // all candidates give the same pattern: compare the digits
+        long[] result = new long[9];
+        long[] current = new long[9];
+        int bestIndex = -1;
+        long bestLabels = 0;
+        for (int i = 0; i < candidates.anz; i++) {
+            int[] grid = grids[candidates.grids[i]];
+            int[] cols = COL_PERMS[candidates.perms[i]];
+            long labels = 0;
+            int nextLabel = 1;
+            int cmp = bestIndex < 0 ? -1 : 0;
+            for (int k = 0; k < 9; k++) {
+                current[k] = labelRow(grid, (int) (candidates.rows[i] >> (4 * k) & 0xf), cols, labels, nextLabel);
+                labels = newLabels;
+                nextLabel = newNextLabel;
+                if (cmp == 0 && current[k] != result[k]) {
+                    cmp = current[k] < result[k] ? -1 : 1;
+                    if (cmp > 0) {
+                        break;
+                    }
+                }
+            }
+            if (cmp < 0) {
+                long[] tmp = result;
+                result = current;
+                current = tmp;
+                bestIndex = i;
+                bestLabels = labels;
+            }
+        }
+
+        int[] rows = new int[9];
+        for (int k = 0; k < 9; k++) {
+            rows[k] = (int) (candidates.rows[bestIndex] >> (4 * k) & 0xf);
+        }
+        int[] digits = new int[10];
+        int nextLabel = 1;
+        for (int d = 1; d <= 9; d++) {
+            digits[d] = (int) (bestLabels >> (4 * d) & 0xf);
+            nextLabel = Math.max(nextLabel, digits[d] + 1);
+        }
+        for (int d = 1; d <= 9; d++) {
+            if (digits[d] == 0) {
+                // digit is not a given
+                digits[d] = nextLabel++;
+            }
+        }
+        int[] canonicalGivens = new int[Sudoku.LENGTH];
+        for (int i = 0; i < Sudoku.LENGTH; i++) {
+            canonicalGivens[i] = (int) (result[i / 9] >> (4 * (8 - i % 9)) & 0xf);
+        }
+        return new Transform(candidates.grids[bestIndex] == 1, rows, COL_PERMS[candidates.perms[bestIndex]].clone(),
+                digits, canonicalGivens);
+    }
+
+    /**
+     * Relabels row <code>r</code> of <code>grid</code> with columns permuted by
+     * <code>cols</code>. Digits that are not yet mapped get the next canonical digit,
+     * the new mapping is stored in {@link #newLabels} and {@link #newNextLabel}.
+     *
+     * @param grid
+     * @param r
+     * @param cols
+     * @param labels
+     * @param nextLabel
+     * @return The row packed in a long, 4 bits per cell, column 0 in the highest bits
+     */
+    private long labelRow(int[] grid, int r, int[] cols, long labels, int nextLabel) {
+        long row = 0;
+        int offset = r * 9;
+        for (int c = 0; c < 9; c++) {
+            int value = grid[offset + cols[c]];
+            if (value != 0) {
+                long label = labels >> (4 * value) & 0xf;
+                if (label == 0) {
+                    label = nextLabel++;
+                    labels |= label << (4 * value);
+                }
+                row = (row << 4) | label;
+            } else {
+                row <<= 4;
+            }
+        }
+        newLabels = labels;
+        newNextLabel = nextLabel;
+        return row;
+    }
+
+    /**
+     * Reads puzzles (one per line, the first 81 characters are used) and
+     * writes their canonical forms to stdout. Every puzzle is also transformed
+     * randomly a few times: all copies must get the same canonical form, and the
+     * {@link Transform} must map the puzzle to its canonical form.<br>
+     * <code>SudokuCanonicalizer [-q] input</code>: with <code>-q</code> only the
+     * statistics are printed.
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        boolean quiet = args.length > 1 && args[0].equals("-q");
+        List<int[]> puzzles = new ArrayList<int[]>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(args[args.length - 1]), StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.length() < Sudoku.LENGTH || line.startsWith("#")) {
+                continue;
+            }
+            int[] givens = new int[Sudoku.LENGTH];
+            for (int i = 0; i < Sudoku.LENGTH; i++) {
+                char ch = line.charAt(i);
+                givens[i] = ch >= '1' && ch <= '9' ? ch - '0' : 0;
+            }
+            puzzles.add(givens);
+        }
+        in.close();
+
+        SudokuCanonicalizer canonicalizer = new SudokuCanonicalizer();
+        Random rand = new Random(0);
+        int errors = 0;
+        String[] forms = new String[puzzles.size()];
+        for (int i = 0; i < puzzles.size(); i++) {
+            int[] givens = puzzles.get(i);
+            Transform transform = canonicalizer.canonicalize(givens);
+            forms[i] = transform.getCanonicalForm();
+            if (!Arrays.equals(transform.apply(givens), transform.getCanonicalGivens())) {
+                errors++;
+            }
+            for (int j = 0; j < 5; j++) {
+                int[] copy = randomTransform(givens, rand);
+                if (!canonicalizer.canonicalize(copy).getCanonicalForm().equals(forms[i])) {
+                    errors++;
+                }
+            }
+            if (!quiet) {
+                System.out.println(forms[i]);
+            }
+        }
+
+        // timing: give the JIT about 20000 calls for warmup
+        int warmup = 20000 / Math.max(1, puzzles.size()) + 1;
+        int rounds = 20;
+        long nanos = 0;
+        for (int r = 0; r < warmup + rounds; r++) {
+            long start = System.nanoTime();
+            for (int[] givens : puzzles) {
+                canonicalizer.canonicalize(givens);
+            }
+            if (r >= warmup) {
+                nanos += System.nanoTime() - start;
+            }
+        }
+        long anz = (long) rounds * puzzles.size();
+        System.err.printf("%d puzzles, %d errors, %.1fus/puzzle (%.0f puzzles/s)%n",
+                puzzles.size(), errors, nanos / 1e3 / anz, anz / (nanos / 1e9));
+    }
+
+    /**
+     * Applies a random symmetry and a random relabelling to <code>givens</code>.
+     *
+     * @param givens
+     * @param rand
+     * @return
+     */
+    private static int[] randomTransform(int[] givens, Random rand) {
+        int[] rows = COL_PERMS[rand.nextInt(COL_PERMS.length)];
+        int[] cols = COL_PERMS[rand.nextInt(COL_PERMS.length)];
+        boolean transpose = rand.nextBoolean();
+        int[] digits = new int[10];
+        for (int d = 1; d <= 9; d++) {
+            int j = 1 + rand.nextInt(d);
+            digits[d] = digits[j];
+            digits[j] = d;
+        }
+        int[] result = new int[Sudoku.LENGTH];
+        for (int r = 0; r < 9; r++) {
+            for (int c = 0; c < 9; c++) {
+                int value = digits[givens[rows[r] * 9 + cols[c]]];
+                result[transpose ? c * 9 + r : r * 9 + c] = value;
+            }
+        }
+        return result;
+    }
+}
@@ -42,8 +42,8 @@ public class SudokuGenerator {
     /** Maximum number of tries when generating a puzzle using a pattern */
     private static final int MAX_TRIES = 1000000;
 
-    /** Empty sudoku for initialization */
-    private static Sudoku EMPTY_GRID = new Sudoku();
+    /** Empty sudoku for initialization (one per generator, generators may run in parallel) */
+    private final Sudoku emptyGrid = new Sudoku();
 
     /**
      * One entry in recursion stack
@@ -59,6 +59,8 @@ public class SudokuGenerator {
         /** The index of the last tried candidate in {@link #candidates}. */
         int candIndex;
     }
+    /** The bitboard based solver used for counting solutions. */
+    private final SolutionCounter counter = new SolutionCounter();
     /** The cells values of the first solution */
     private int[] solution = new int[81];
     /** Number of solutions already found */
@@ -74,9 +76,6 @@ public class SudokuGenerator {
     /** A random generator for creating new puzzles. */
     private Random rand = new Random();
 
-    private int anzTries = 0;
-    private int anzNS = 0;
-    private int anzHS = 0;
     private int anzTriesGen = 0;
     private int anzClues = 0;
     private long nanos = 0;
@@ -128,18 +127,12 @@ public class SudokuGenerator {
     }
 
     /**
-     * Solves <code>sudoku</code>.
+     * Solves <code>sudoku</code>. The real work is done by {@link #counter}.
      * @param sudoku
      */
     private void solve(Sudoku sudoku) {
-        // start with the current state of the sudoku
-        stack[0].sudoku.set(sudoku);
-        stack[0].index = 0;
-        stack[0].candidates = null;
-        stack[0].candIndex = 0;
-
-        // solve it
-        solve();
+        solutionCount = counter.countSolutions(sudoku);
+        copySolution();
     }
 
     /**
@@ -147,21 +140,8 @@ public class SudokuGenerator {
      * @param sudokuString
      */
     public void solve(String sudokuString) {
-        // start with an empty sudoku
-        stack[0].sudoku.set(EMPTY_GRID);
-        stack[0].candidates = null;
-        stack[0].candIndex = 0;
-
-        // set up the sudoku
-        for (int i = 0; i < sudokuString.length() && i < Sudoku.LENGTH; i++) {
-            int value = sudokuString.charAt(i) - '0';
-            if (value >= 1 && value <= 9) {
-                stack[0].sudoku.setCell(i, value, false, false);
-                setAllExposedSingles(stack[0].sudoku);
-            }
-        }
-        // solve it
-        solve();
+        solutionCount = counter.countSolutions(sudokuString);
+        copySolution();
     }
 
     /**
@@ -169,149 +149,16 @@ public class SudokuGenerator {
      * @param cellValues 
      */
     public void solve(int[] cellValues) {
-//        System.out.println("start solving " + getSolutionAsString(cellValues));
-//        actSetNanos = System.nanoTime();
-        // start with an empty sudoku
-        stack[0].sudoku.set(EMPTY_GRID);
-        stack[0].candidates = null;
-        stack[0].candIndex = 0;
-
-//        // set up the sudoku
-//        for (int i = 0; i < cellValues.length; i++) {
-//            int value = cellValues[i];
-//            if (value >= 1 && value <= 9) {
-//                stack[0].sudoku.setCell(i, value, false, false);
-//                setAllExposedSingles(stack[0].sudoku);
-//            }
-//        }
-        // set up the sudoku
-//        System.out.println("setting up sudoku...");
-        for (int i = 0; i < cellValues.length; i++) {
-            int value = cellValues[i];
-            if (value >= 1 && value <= 9) {
-                stack[0].sudoku.setCellBS(i, value);
-            }
-        }
-        stack[0].sudoku.rebuildInternalData();
-        setAllExposedSingles(stack[0].sudoku);
-//        System.out.println("and solve...");
-
-        // solve it
-        solve();
+        solutionCount = counter.countSolutions(cellValues);
+        copySolution();
     }
 
     /**
-     * The real backtracking solver: Recursion is simulated by
-     * a recursion stack ({@link #stack}), if Singles are exposed
-     * during solving, they are set.
+     * Stores the first solution found by {@link #counter} in {@link #solution}.
      */
-    private void solve() {
-        anzTries = 0;
-        anzNS = 0;
-        anzHS = 0;
-        solutionCount = 0;
-        // first set all Singles exposed by building up the Sudoku grid
-        if (DEBUG) {
-            System.out.println("solve start:");
-        }
-        if (!setAllExposedSingles(stack[0].sudoku)) {
-            // puzzle was invalid all along
-            if (DEBUG) {
-                System.out.println("  puzzle was invalid!");
-            }
-            return;
-        }
-//        setNanos += System.nanoTime() - actSetNanos;
-//        System.out.println("solve: " + getSolutionAsString(stack[0].sudoku.getValues()));
-//        System.out.println("unsolvedCellsAnz = " + stack[0].sudoku.getUnsolvedCellsAnz());
-        if (stack[0].sudoku.getUnsolvedCellsAnz() == 0) {
-            // already solved, nothing to do
-            solution = Arrays.copyOf(stack[0].sudoku.getValues(), Sudoku.LENGTH);
-            solutionCount++;
-            if (DEBUG) {
-                System.out.println("  puzzle was already solved!");
-            }
-            return;
-        }
-        int level = 0;
-        while (true) {
-            // get the next unsolved cells with the fewest number of candidates
-            if (stack[level].sudoku.getUnsolvedCellsAnz() == 0) {
-                // sudoku is solved
-                solutionCount++;
-                // count the solutions
-                if (solutionCount == 1) {
-                    // first solution is recorded
-                    solution = Arrays.copyOf(stack[level].sudoku.getValues(), Sudoku.LENGTH);
-                } else if (solutionCount > 1) {
-                    // but not more than 1000
-                    if (DEBUG) {
-                        System.out.println("  puzzle has more than one solution (" + solutionCount + ")!");
-                    }
-                    return;
-                }
-            } else {
-                int index = -1;
-                int anzCand = 9;
-                Sudoku sudoku = stack[level].sudoku;
-                for (int i = 0; i < Sudoku.LENGTH; i++) {
-//                    if (sudoku.getCell(i) != 0) {
-//                        System.out.println("cell[" + i + "] = " + Sudoku.ANZ_VALUES[sudoku.getCell(i)]);
-//                    }
-                    if (sudoku.getCell(i) != 0 && Sudoku.ANZ_VALUES[sudoku.getCell(i)] < anzCand) {
-                        index = i;
-                        anzCand = Sudoku.ANZ_VALUES[sudoku.getCell(i)];
-                    }
-                }
-                level++;
-                // missing candidates lead to exception -> avoid that
-                if (index < 0) {
-                    solutionCount = 0;
-                    return;
-                }
-                stack[level].index = (short) index;
-                stack[level].candidates = Sudoku.POSSIBLE_VALUES[stack[level - 1].sudoku.getCell(index)];
-                stack[level].candIndex = 0;
-            }
-
-            // go to the next level
-            boolean done = false;
-            do {
-                // this loop runs as long as the next candidate tried produces an
-                // invalid sudoku or until all possibilities have been tried
-
-                // fall back all levels, where nothing is to do anymore
-                while (stack[level].candIndex >= stack[level].candidates.length) {
-                    level--;
-                    if (level <= 0) {
-                        // no level with candidates left
-                        done = true;
-                        break;
-                    }
-                }
-                if (done) {
-                    break;
-                }
-                // try the next candidate
-                int nextCand = stack[level].candidates[stack[level].candIndex++];
-                // start with a fresh sudoku
-                anzTries++;
-                stack[level].sudoku.setBS(stack[level - 1].sudoku);
-                if (!stack[level].sudoku.setCell(stack[level].index, nextCand, false, false)) {
-                    // invalid -> try next candidate
-                    continue;
-                }
-                if (setAllExposedSingles(stack[level].sudoku)) {
-                    // valid move, break from the inner loop to advance to the next level
-                    break;
-                }
-            } while (true);
-            if (done) {
-                break;
-            }
-        }
-        if (DEBUG) {
-            System.out.println("  puzzle has " + solutionCount + " solution!");
+    private void copySolution() {
+        if (solutionCount > 0) {
+            System.arraycopy(counter.getSolution(), 0, solution, 0, Sudoku.LENGTH);
         }
     }
 
@@ -395,18 +242,14 @@ public class SudokuGenerator {
     }
 
     /**
-     * Generates a new valid full sudoku grid. Works exactly like the
-     * backtracking solver ({@link #solve()}), the cells are set in
-     * random order.<br>
+     * Generates a new valid full sudoku grid. Works like a simple
+     * backtracking solver, the cells are set in random order.<br>
      * The method works very well most of the times, but somtimes 
      * (about 1.5% of all cases) it can take extremely long to get a
      * solution. It is then better to abort and try with a new randomized
      * index set.
      */
     private boolean doGenerateFullGrid() {
-        anzTries = 0;
-        anzNS = 0;
-        anzHS = 0;
         // limit the number of tries
         int actTries = 0;
         // generate a random order for setting the cells
@@ -425,7 +268,7 @@ public class SudokuGenerator {
             generateIndices[index2] = dummy;
         }
         // first set a new empty Sudoku
-        stack[0].sudoku.set(EMPTY_GRID);
+        stack[0].sudoku.set(emptyGrid);
         int level = 0;
         stack[0].index = -1;
         while (true) {
@@ -477,7 +320,6 @@ public class SudokuGenerator {
                 // try the next candidate
                 int nextCand = stack[level].candidates[stack[level].candIndex++];
                 // start with a fresh sudoku
-                anzTries++;
                 stack[level].sudoku.setBS(stack[level - 1].sudoku);
                 if (!stack[level].sudoku.setCell(stack[level].index, nextCand, false, false)) {
                     // invalid -> try next candidate
@@ -611,7 +453,6 @@ public class SudokuGenerator {
                 int value = nsQueue.getValue(singleIndex);
                 if ((sudoku.getCell(index) & Sudoku.MASKS[value]) != 0) {
                     // only set the cell if the Single is still valid
-                    anzNS++;
                     valid = sudoku.setCell(index, value, false, false);
                     if (DEBUG && ! valid) {
                         System.out.println("   NS " + index + "/" + value + "/" + valid);
@@ -624,7 +465,6 @@ public class SudokuGenerator {
                 int value = hsQueue.getValue(singleIndex);
                 if ((sudoku.getCell(index) & Sudoku.MASKS[value]) != 0) {
                     // only set the cell if the Single is still valid
-                    anzHS++;
                     valid = sudoku.setCell(index, value, false, false);
                     if (DEBUG && ! valid) {
                         System.out.println("   HS " + index + "/" + value + "/" + valid);
@@ -661,7 +501,7 @@ public class SudokuGenerator {
     }
 
     public String printStat() {
-        return "anzTries: " + anzTries + ", anzNS: " + anzNS + ", anzHS: " + anzHS;
+        return "guesses: " + counter.getGuesses();
     }
 
     public static void main(String[] args) {
@@ -62,6 +62,15 @@ public abstract class AbstractSolver {
         this.finder = finder;
     }
 
+    /**
+     * Gets all types, for which {@link #getStep(SolutionType)} or
+     * {@link #doStep(SolutionStep)} can be called. Used by
+     * {@link SudokuStepFinder} to pass a request directly to the
+     * solvers, that handle the type.
+     * @return
+     */
+    protected abstract SolutionType[] getTypes();
+
     /**
      * Method for finding a new instance of a specific technique.
      * @param type
@@ -69,6 +78,24 @@ public abstract class AbstractSolver {
      */
     protected abstract SolutionStep getStep(SolutionType type);
 
+    /**
+     * Finds a new instance of a specific technique and records it in
+     * <code>buffer</code> (score-only mode, see {@link StepBuffer}). The default
+     * implementation stores the {@link SolutionStep} found by {@link #getStep(SolutionType)};
+     * solvers that can report the effect of a step directly should override it.
+     * @param type
+     * @param buffer
+     * @return <code>true</code>, if a step was found
+     */
+    protected boolean getStep(SolutionType type, StepBuffer buffer) {
+        SolutionStep step = getStep(type);
+        if (step == null) {
+            return false;
+        }
+        buffer.setStep(step);
+        return true;
+    }
+
     /**
      * Method for executing a specific technique.
      * @param step
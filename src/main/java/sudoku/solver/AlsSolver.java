@@ -45,7 +45,7 @@ public class AlsSolver extends AbstractSolver {
     /** all chains that have been found so far: eliminations and number of links */
     private SortedMap<String, Integer> deletesMap = new TreeMap<String, Integer>();
     /** A special comparator used to find the "best" step out of a list of steps. */
-    private static AlsComparator alsComparator = null;
+    private static final AlsComparator alsComparator = new AlsComparator();
     /** A list with all steps found during the last run. */
     private List<SolutionStep> steps = new ArrayList<SolutionStep>();
     /** One step instance for optimization. */
@@ -106,9 +106,14 @@ public class AlsSolver extends AbstractSolver {
      */
     public AlsSolver(SudokuStepFinder finder) {
         super(finder);
-        if (alsComparator == null) {
-            alsComparator = new AlsComparator();
-        }
+    }
+
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.ALS_XZ, SolutionType.ALS_XY_WING, SolutionType.ALS_XY_CHAIN,
+            SolutionType.DEATH_BLOSSOM
+        };
     }
 
     @Override
@@ -169,16 +174,16 @@ public class AlsSolver extends AbstractSolver {
         sudoku = finder.getSudoku();
         List<SolutionStep> oldSteps = steps;
         List<SolutionStep> resultSteps = new ArrayList<SolutionStep>();
-        finder.setRcOnlyForward(Options.getInstance().isAllStepsAlsChainForwardOnly());
+        finder.setRcOnlyForward(finder.getSettings().isAllStepsAlsChainForwardOnly());
         if (chain.length == MAX_RC) {
-            chain = new RestrictedCommon[Options.getInstance().getAllStepsAlsChainLength()];
+            chain = new RestrictedCommon[finder.getSettings().getAllStepsAlsChainLength()];
         }
         long millis1 = 0;
         if (TIMING) {
             millis1 = System.nanoTime();
         }
         collectAllAlses();
-        collectAllRestrictedCommons(Options.getInstance().isAllowAlsOverlap());
+        collectAllRestrictedCommons(finder.getSettings().isAllowAlsOverlap());
         if (doXz) {
             steps.clear();
             getAlsXZInt(false);
@@ -259,7 +264,7 @@ public class AlsSolver extends AbstractSolver {
     private SolutionStep getAlsXYChain() {
         steps.clear();
         collectAllAlses();
-        collectAllRestrictedCommons(Options.getInstance().isAllowAlsOverlap());
+        collectAllRestrictedCommons(finder.getSettings().isAllowAlsOverlap());
         getAlsXYChainInt();
         if (steps.size() > 0) {
             Collections.sort(steps, alsComparator);
@@ -279,7 +284,7 @@ public class AlsSolver extends AbstractSolver {
     private SolutionStep getAlsXYWing(boolean onlyOne) {
         steps.clear();
         collectAllAlses();
-        collectAllRestrictedCommons(Options.getInstance().isAllowAlsOverlap());
+        collectAllRestrictedCommons(finder.getSettings().isAllowAlsOverlap());
         SolutionStep step = getAlsXYWingInt(onlyOne);
         if (!onlyOne && steps.size() > 0) {
             Collections.sort(steps, alsComparator);
@@ -303,7 +308,7 @@ public class AlsSolver extends AbstractSolver {
         anzCalls++;
         steps.clear();
         collectAllAlses();
-        collectAllRestrictedCommons(Options.getInstance().isAllowAlsOverlap());
+        collectAllRestrictedCommons(finder.getSettings().isAllowAlsOverlap());
         SolutionStep step = getAlsXZInt(onlyOne);
         if (!onlyOne && steps.size() > 0) {
             Collections.sort(steps, alsComparator);
@@ -428,7 +433,7 @@ public class AlsSolver extends AbstractSolver {
                     a = alses.get(rc1.getAls1());
                     b = alses.get(rc2.getAls1());
                 }
-                if (!Options.getInstance().isAllowAlsOverlap()) {
+                if (!finder.getSettings().isAllowAlsOverlap()) {
                     // Check overlaps: the RCs have already been checked, a and b are missing:
                     tmpSet.set(a.indices);
                     if (!tmpSet.andEmpty(b.indices)) {
@@ -565,6 +570,7 @@ public class AlsSolver extends AbstractSolver {
         // check all RCs; if none exist the loop is never entered
         boolean firstTry = true;
         for (int i = startIndices[alsIndex]; i < endIndices[alsIndex]; i++) {
+            finder.checkBudget();
             RestrictedCommon rc = restrictedCommons.get(i);
             if (chainIndex >= chain.length || !rc.checkRC(lastRC, firstTry)) {
                 // chain is full or RC doesnt adhere to the adjacency rules
@@ -631,7 +637,7 @@ public class AlsSolver extends AbstractSolver {
                     boolean writeIt = true;
                     int replaceIndex = -1;
                     String elim = null;
-                    if (Options.getInstance().isOnlyOneAlsPerStep()) {
+                    if (finder.getSettings().isOnlyOneAlsPerStep()) {
                         elim = globalStep.getCandidateString();
                         Integer alreadyThere = deletesMap.get(elim);
                         if (alreadyThere != null) {
@@ -779,10 +785,11 @@ public class AlsSolver extends AbstractSolver {
         if (aktRcdb.indices[cand] > 0) {
             // There are ALS to try
             for (int i = 0; i < aktRcdb.indices[cand]; i++) {
+                finder.checkBudget();
                 Als als = alses.get(aktRcdb.alsPerCandidate[cand][i]);
                 //if (DEBUG) System.out.println("cand = " + cand + ", i = " + i + ", ALS: " + als.toString());
                 // check for overlap
-                if (!Options.getInstance().isAllowAlsOverlap() && !als.indices.andNotEquals(aktDBIndices)) {
+                if (!finder.getSettings().isAllowAlsOverlap() && !als.indices.andNotEquals(aktDBIndices)) {
                     // new ALS overlaps -> we dont need to look further
                     //if (DEBUG) System.out.println(" Overlap!");
                     continue;
@@ -875,7 +882,7 @@ public class AlsSolver extends AbstractSolver {
                         boolean writeIt = true;
                         int replaceIndex = -1;
                         String elim = null;
-                        if (Options.getInstance().isOnlyOneAlsPerStep()) {
+                        if (finder.getSettings().isOnlyOneAlsPerStep()) {
                             elim = globalStep.getCandidateString();
                             Integer alreadyThere = deletesMap.get(elim);
                             if (alreadyThere != null) {
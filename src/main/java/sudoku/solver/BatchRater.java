@@ -0,0 +1,568 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+import sudoku.DifficultyLevel;
+import sudoku.DifficultyType;
+import sudoku.Options;
+import sudoku.Sudoku;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rates many puzzles on a fixed number of worker threads. Every worker
+ * has its own {@link SudokuSolver}, all workers share one {@link SolverSettings}
+ * snapshot, so nothing is synchronized while a puzzle is rated. With more than
+ * one worker the searches inside a puzzle are not split over
+ * {@link java.util.concurrent.ForkJoinPool#commonPool()}
+ * ({@link SolverSettings#withoutParallelSearch()}): the workers already use
+ * the processors, the tasks of all workers would compete for one pool.<br><br>
+ *
+ * The puzzles are read from an {@link Iterator} by the calling thread and
+ * handed to the workers through a bounded queue. Results are passed to a
+ * {@link ResultHandler} either in input order or as soon as they are available.
+ * The number of puzzles that have been read but not yet handed to the handler is
+ * limited, a slow puzzle in ordered mode doesn't let the buffers grow.<br><br>
+ *
+ * The solvers are kept between calls to {@link #rate(java.util.Iterator, boolean, sudoku.solver.BatchRater.ResultHandler)},
+ * the threads are created for every call.<br><br>
+ *
+ * {@link #main(java.lang.String[])} is a command line front end.
+ *
+ * @author hobiwan
+ */
+public class BatchRater {
+    /**
+     * Receives the results of a batch. Calls are never concurrent, the handler
+     * doesn't have to be thread safe.
+     */
+    public interface ResultHandler {
+        /**
+         * Called once for every puzzle.
+         *
+         * @param result
+         */
+        void handle(RatingResult result);
+    }
+
+    /** Number of puzzles in flight per worker thread. */
+    private static final int PUZZLES_PER_THREAD = 32;
+    /** Minimum number of givens for a rating (as in {@link SudokuSolver}). */
+    private static final int MIN_GIVENS = 10;
+
+    /** One solver per worker thread. */
+    private final SudokuSolver[] solvers;
+    /** The settings for all solvers. */
+    private final SolverSettings settings;
+    /** Puzzles harder than this are rated anyway. */
+    private final DifficultyLevel maxLevel;
+    /** Cache for the ratings, <code>null</code> if every puzzle is rated. */
+    private final RatingCache cache;
+
+    /**
+     * One puzzle in the work queue.
+     */
+    private static class Job {
+        /** Marks the end of the input. */
+        static final Job END = new Job(-1, null);
+
+        /** Position in the input. */
+        final long index;
+        /** The puzzle. */
+        final String puzzle;
+
+        /**
+         * Creates a job.
+         *
+         * @param index
+         * @param puzzle
+         */
+        Job(long index, String puzzle) {
+            this.index = index;
+            this.puzzle = puzzle;
+        }
+    }
+
+    /**
+     * Passes the results of one batch to the {@link ResultHandler}. In ordered
+     * mode the results are collected in a ring buffer until all results
+     * before them have been handed out.
+     */
+    private static class Delivery {
+        /** The handler for the batch. */
+        private final ResultHandler handler;
+        /** <code>true</code>, if the input order has to be kept. */
+        private final boolean ordered;
+        /** Results that cannot be handed out yet (index modulo capacity). */
+        private final RatingResult[] pending;
+        /** A permit is released for every result that has been handed out. */
+        private final Semaphore inFlight;
+        /** Index of the next result for the handler (ordered mode only). */
+        private long nextIndex = 0;
+        /** The first exception thrown by the handler; all later results are dropped. */
+        private volatile RuntimeException failure = null;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param handler
+         * @param ordered
+         * @param capacity Maximum number of results in flight
+         * @param inFlight
+         */
+        Delivery(ResultHandler handler, boolean ordered, int capacity, Semaphore inFlight) {
+            this.handler = handler;
+            this.ordered = ordered;
+            this.pending = ordered ? new RatingResult[capacity] : null;
+            this.inFlight = inFlight;
+        }
+
+        /**
+         * Hands out <code>result</code> and, in ordered mode, all results
+         * that have been waiting for it.
+         *
+         * @param result
+         */
+        synchronized void deliver(RatingResult result) {
+            if (!ordered) {
+                emit(result);
+                return;
+            }
+            pending[(int) (result.getIndex() % pending.length)] = result;
+            while (true) {
+                int slot = (int) (nextIndex % pending.length);
+                RatingResult next = pending[slot];
+                if (next == null || next.getIndex() != nextIndex) {
+                    break;
+                }
+                pending[slot] = null;
+                nextIndex++;
+                emit(next);
+            }
+        }
+
+        /**
+         * Calls the handler.
+         *
+         * @param result
+         */
+        private void emit(RatingResult result) {
+            try {
+                if (failure == null) {
+                    handler.handle(result);
+                }
+            } catch (RuntimeException ex) {
+                failure = ex;
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        /**
+         * @return the failure
+         */
+        RuntimeException getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Creates a rater with one thread per available processor and the
+     * current {@link Options}.
+     */
+    public BatchRater() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a rater with the current {@link Options}.
+     *
+     * @param threadAnz
+     */
+    public BatchRater(int threadAnz) {
+        this(threadAnz, new SolverSettings(Options.getInstance()));
+    }
+
+    /**
+     * Creates a rater.
+     *
+     * @param threadAnz Number of worker threads
+     * @param settings The settings for all puzzles
+     */
+    public BatchRater(int threadAnz, SolverSettings settings) {
+        this(threadAnz, settings, 0);
+    }
+
+    /**
+     * Creates a rater with a {@link RatingCache}: puzzles that are equivalent
+     * to a puzzle rated before are not rated again. The cache is kept between calls
+     * to {@link #rate(java.util.Iterator, boolean, sudoku.solver.BatchRater.ResultHandler)}.
+     *
+     * @param threadAnz Number of worker threads
+     * @param settings The settings for all puzzles (parallel searches are
+     *      switched off, if <code>threadAnz</code> is greater than 1)
+     * @param cacheSize Maximum number of entries in the cache, 0 for no cache
+     */
+    public BatchRater(int threadAnz, SolverSettings settings, int cacheSize) {
+        if (threadAnz < 1) {
+            throw new IllegalArgumentException("threadAnz must be at least 1: " + threadAnz);
+        }
+        solvers = new SudokuSolver[threadAnz];
+        for (int i = 0; i < solvers.length; i++) {
+            solvers[i] = new SudokuSolver();
+        }
+        this.settings = threadAnz > 1 ? settings.withoutParallelSearch() : settings;
+        this.maxLevel = settings.getDifficultyLevel(DifficultyType.EXTREME.ordinal());
+        this.cache = cacheSize > 0 ? new RatingCache(cacheSize, this.settings) : null;
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getThreadAnz() {
+        return solvers.length;
+    }
+
+    /**
+     * @return the cache, <code>null</code> if none is used
+     */
+    public RatingCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Rates all puzzles from <code>puzzles</code>. The method returns, when all
+     * results have been handed to <code>handler</code>.<br>
+     * <code>puzzles</code> is only accessed by the calling thread; the handler is
+     * called by the worker threads, but never concurrently.
+     *
+     * @param puzzles The puzzles (any format accepted by {@link Sudoku#setSudoku(java.lang.String)})
+     * @param ordered <code>true</code>, if the results have to be handed out in input order
+     * @param handler
+     * @return The number of puzzles rated
+     * @throws InterruptedException
+     * @throws RuntimeException if the handler or the iterator threw one (the batch is aborted)
+     */
+    public synchronized long rate(Iterator<String> puzzles, boolean ordered, ResultHandler handler) throws InterruptedException {
+        int capacity = solvers.length * PUZZLES_PER_THREAD;
+        final BlockingQueue<Job> queue = new ArrayBlockingQueue<Job>(capacity);
+        final Semaphore inFlight = new Semaphore(capacity);
+        final Delivery delivery = new Delivery(handler, ordered, capacity, inFlight);
+
+        Thread[] threads = new Thread[solvers.length];
+        for (int i = 0; i < threads.length; i++) {
+            final SudokuSolver solver = solvers[i];
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Job job;
+                        while ((job = queue.take()) != Job.END) {
+                            delivery.deliver(rate(solver, job.index, job.puzzle));
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "BatchRater-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        long anz = 0;
+        RuntimeException failure = null;
+        try {
+            while (puzzles.hasNext() && delivery.getFailure() == null) {
+                String puzzle = puzzles.next();
+                inFlight.acquire();
+                queue.put(new Job(anz++, puzzle));
+            }
+        } catch (RuntimeException ex) {
+            failure = ex;
+        } catch (InterruptedException ex) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            throw ex;
+        }
+        for (int i = 0; i < threads.length; i++) {
+            queue.put(Job.END);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure == null) {
+            failure = delivery.getFailure();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return anz;
+    }
+
+    /**
+     * Rates one puzzle. Exceptions in the solver are logged, the puzzle
+     * is reported as not rated.
+     *
+     * @param solver
+     * @param index
+     * @param puzzle
+     * @return
+     */
+    private RatingResult rate(SudokuSolver solver, long index, String puzzle) {
+        try {
+            Sudoku sudoku = new Sudoku();
+            sudoku.setSudoku(puzzle);
+            if (81 - sudoku.getUnsolvedCellsAnz() < MIN_GIVENS) {
+                // the solver doesn't even try
+                return new RatingResult(index, puzzle);
+            }
+            if (cache != null) {
+                return new RatingResult(index, puzzle, cache.rate(solver, sudoku));
+            }
+            boolean solved = solver.rate(maxLevel, sudoku, false, settings);
+            return new RatingResult(index, puzzle, solved, solver, settings);
+        } catch (RuntimeException ex) {
+            Logger.getLogger(BatchRater.class.getName()).log(Level.WARNING, "Error rating puzzle " + puzzle, ex);
+            return new RatingResult(index, puzzle);
+        }
+    }
+
+    /**
+     * Iterates over the puzzles in a file: empty lines and lines starting with
+     * '#' are skipped, only the first token of every line is used.
+     *
+     * @param in
+     * @return
+     */
+    private static Iterator<String> puzzleIterator(final BufferedReader in) {
+        return new Iterator<String>() {
+            private String next = null;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        String line = in.readLine();
+                        if (line == null) {
+                            return false;
+                        }
+                        line = line.trim();
+                        if (line.isEmpty() || line.startsWith("#")) {
+                            continue;
+                        }
+                        int end = 0;
+                        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+                            end++;
+                        }
+                        next = line.substring(0, end);
+                    }
+                    return true;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String ret = next;
+                next = null;
+                return ret;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Compares the score-only mode ({@link SudokuSolver#rate(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, sudoku.solver.SolverSettings)})
+     * with a normal solve on the current thread: all ratings must be the same. Prints
+     * time and allocated memory per puzzle for both modes (the allocation is only
+     * available on JVMs that support {@link com.sun.management.ThreadMXBean}).
+     *
+     * @param puzzles
+     * @param rounds
+     * @return <code>true</code>, if both modes gave identical results
+     */
+    private static boolean benchmark(List<String> puzzles, int rounds) {
+        SolverSettings settings = new SolverSettings(Options.getInstance());
+        DifficultyLevel maxLevel = settings.getDifficultyLevel(DifficultyType.EXTREME.ordinal());
+        SudokuSolver solver = new SudokuSolver();
+        String[][] results = new String[2][puzzles.size()];
+        for (int mode = 0; mode < 2; mode++) {
+            // first round is warmup
+            long nanos = 0;
+            long bytes = 0;
+            for (int r = 0; r <= rounds; r++) {
+                long allocated = getAllocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < puzzles.size(); i++) {
+                    Sudoku sudoku = new Sudoku();
+                    sudoku.setSudoku(puzzles.get(i));
+                    boolean solved;
+                    if (mode == 0) {
+                        solved = solver.solve(maxLevel, sudoku, false, false, settings);
+                    } else {
+                        solved = solver.rate(maxLevel, sudoku, false, settings);
+                    }
+                    results[mode][i] = solved + " " + solver.getScore() + " " + solver.getLevel().getName() + " "
+                            + solver.getHardestType() + " " + Arrays.toString(solver.getAnzSteps());
+                }
+                if (r > 0) {
+                    nanos += System.nanoTime() - start;
+                    bytes += getAllocatedBytes() - allocated;
+                }
+            }
+            long anz = (long) rounds * puzzles.size();
+            System.err.printf("%-10s %10.1fus/puzzle %12d bytes/puzzle%n", mode == 0 ? "solve()" : "rate()",
+                    nanos / 1e3 / anz, bytes < 0 ? -1 : bytes / anz);
+        }
+        int mismatches = 0;
+        for (int i = 0; i < puzzles.size(); i++) {
+            if (!results[0][i].equals(results[1][i])) {
+                mismatches++;
+                System.err.println(puzzles.get(i) + ": " + results[0][i] + " <> " + results[1][i]);
+            }
+        }
+        System.err.println(mismatches == 0 ? "OK" : mismatches + " mismatches");
+        return mismatches == 0;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the current thread so far.
+     *
+     * @return -1, if the JVM doesn't support it
+     */
+    private static long getAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Command line front end:<br>
+     * <code>BatchRater [-t threads] [-u] [-c cacheSize] input [output]</code><br>
+     * Rates all puzzles from <code>input</code> (one puzzle per line, "-" for stdin) and
+     * writes one line per puzzle to <code>output</code> (default stdout):
+     * puzzle, score, level and hardest step, separated by tabs
+     * (see {@link RatingResult#toString()}). With <code>-u</code> the results are
+     * written as soon as they are available, else in input order. <code>-c</code>
+     * uses a {@link RatingCache} with the given number of entries.<br>
+     * <code>BatchRater -bench rounds input</code> compares the score-only mode with
+     * a normal solve (see {@link #benchmark(java.util.List, int)}).
+     *
+     * @param args
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threadAnz = Runtime.getRuntime().availableProcessors();
+        boolean ordered = true;
+        String inName = null;
+        String outName = null;
+        int benchRounds = 0;
+        int cacheSize = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-bench") && i + 1 < args.length) {
+                benchRounds = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-t") && i + 1 < args.length) {
+                threadAnz = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-c") && i + 1 < args.length) {
+                cacheSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-u")) {
+                ordered = false;
+            } else if (inName == null) {
+                inName = args[i];
+            } else if (outName == null) {
+                outName = args[i];
+            } else {
+                inName = null;
+                break;
+            }
+        }
+        if (inName == null) {
+            System.err.println("usage: BatchRater [-t threads] [-u] [-c cacheSize] input [output]");
+            System.err.println("       BatchRater -bench rounds input");
+            System.exit(2);
+        }
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                inName.equals("-") ? System.in : new FileInputStream(inName), StandardCharsets.UTF_8));
+        if (benchRounds > 0) {
+            List<String> puzzles = new ArrayList<String>();
+            Iterator<String> iterator = puzzleIterator(in);
+            while (iterator.hasNext()) {
+                puzzles.add(iterator.next());
+            }
+            in.close();
+            System.exit(benchmark(puzzles, benchRounds) ? 0 : 1);
+        }
+        final PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                outName == null ? System.out : new FileOutputStream(outName), StandardCharsets.UTF_8));
+        try {
+            BatchRater rater = new BatchRater(threadAnz, new SolverSettings(Options.getInstance()), cacheSize);
+            long nanos = System.nanoTime();
+            long anz = rater.rate(puzzleIterator(in), ordered, new ResultHandler() {
+                @Override
+                public void handle(RatingResult result) {
+                    out.println(result);
+                }
+            });
+            nanos = System.nanoTime() - nanos;
+            out.flush();
+            System.err.printf("%d puzzles in %.2fs (%d threads, %.1f puzzles/s)%n",
+                    anz, nanos / 1e9, threadAnz, anz / (nanos / 1e9));
+            if (rater.getCache() != null) {
+                System.err.println(rater.getCache());
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+    }
+}
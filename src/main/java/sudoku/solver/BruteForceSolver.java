@@ -24,6 +24,7 @@ import sudoku.SolutionStep;
 import sudoku.SolutionType;
 import sudoku.Sudoku;
 import sudoku.SudokuSet;
+import sudoku.generator.SudokuGenerator;
 import sudoku.generator.SudokuGeneratorFactory;
 
 /**
@@ -39,6 +40,13 @@ public class BruteForceSolver extends AbstractSolver {
         super(finder);
     }
     
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.BRUTE_FORCE
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -79,7 +87,14 @@ public class BruteForceSolver extends AbstractSolver {
             // can happen, when command line mode is used (no brute force solving is done)
             // sets the solution in the sudoku
 //            System.out.println("   no solution set");
-            boolean isValid = SudokuGeneratorFactory.getDefaultGeneratorInstance().validSolution(sudoku);
+            // the default generator is shared by all threads: use one from the pool
+            SudokuGenerator generator = SudokuGeneratorFactory.getInstance();
+            boolean isValid;
+            try {
+                isValid = generator.validSolution(sudoku);
+            } finally {
+                SudokuGeneratorFactory.giveBack(generator);
+            }
             if (! isValid) {
                 return null;
             }
@@ -45,7 +45,7 @@ public class ChainSolver extends AbstractSolver {
     /** Turbot Fish: X-Chain with length 5 */
     private static final int TURBOT_FISH = 4;
     /** A custom comparator for chains */
-    private static ChainComparator chainComparator = null;
+    private static final ChainComparator chainComparator = new ChainComparator();
 
     /** An entry in the recursion stack */
     class StackEntry {
@@ -139,10 +139,6 @@ public class ChainSolver extends AbstractSolver {
     /** For timing */
     private int anzY;
 
-    static {
-        chainComparator = new ChainComparator();
-    }
-
     /** Creates a new instance of ChainSolver
      * @param finder 
      */
@@ -153,6 +149,14 @@ public class ChainSolver extends AbstractSolver {
         }
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.X_CHAIN, SolutionType.XY_CHAIN, SolutionType.REMOTE_PAIR, SolutionType.TURBOT_FISH,
+            SolutionType.NICE_LOOP
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -325,11 +329,11 @@ public class ChainSolver extends AbstractSolver {
 
         // calculate maximum length of chain
         chainMaxLength = MAX_CHAIN_LENGTH - 1;
-        if (Options.getInstance().isRestrictChainSize()) {
+        if (finder.getSettings().isRestrictChainSize()) {
             if (type == NICE_LOOP) {
-                chainMaxLength = Options.getInstance().getRestrictNiceLoopLength();
+                chainMaxLength = finder.getSettings().getRestrictNiceLoopLength();
             } else {
-                chainMaxLength = Options.getInstance().getRestrictChainLength();
+                chainMaxLength = finder.getSettings().getRestrictChainLength();
             }
         }
         if (type == TURBOT_FISH) {
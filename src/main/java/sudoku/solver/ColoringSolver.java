@@ -70,6 +70,14 @@ public class ColoringSolver extends AbstractSolver {
         }
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.SIMPLE_COLORS, SolutionType.SIMPLE_COLORS_TRAP, SolutionType.SIMPLE_COLORS_WRAP,
+            SolutionType.MULTI_COLORS, SolutionType.MULTI_COLORS_1, SolutionType.MULTI_COLORS_2
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -24,6 +24,9 @@ import java.beans.XMLDecoder;
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Es gelten die Definitionen aus dem Ultimate Fish Guide: http://www.sudoku.com/boards/viewtopic.php?t=4993
@@ -289,6 +292,26 @@ public class FishSolver extends AbstractSolver {
      * For every entry in {@link #coverUnits} all cells where the candiate is set (high order DWORD).
      */
     private long[] coverCandidatesM2 = new long[Sudoku.UNITS * 3];
+    /**
+     * For every index into {@link #coverUnits}: all cells covered by the units from that index
+     * on (low order DWORD). Used to prune the cover search.
+     */
+    private long[] coverSuffixM1 = new long[Sudoku.UNITS * 3 + 1];
+    /**
+     * For every index into {@link #coverUnits}: all cells covered by the units from that index
+     * on (high order DWORD).
+     */
+    private long[] coverSuffixM2 = new long[Sudoku.UNITS * 3 + 1];
+    /**
+     * For every index into {@link #coverUnits}: the maximum number of base candidates
+     * covered by one of the units from that index on. Used to prune the cover search.
+     */
+    private int[] coverSuffixMax = new int[Sudoku.UNITS * 3 + 1];
+    /**
+     * The largest numbers of uncovered base candidates a cover unit can cover (see
+     * {@link #getMaxCovered(long, long, int, int) }).
+     */
+    private int[] maxCovered = new int[8];
     /**
      * The number of cover units in this cover search
      */
@@ -430,6 +453,16 @@ public class FishSolver extends AbstractSolver {
      * Check for templates
      */
     private boolean doTemplates;
+    /**
+     * Maximum number of fins for the current search. Set by every search
+     * (the values in {@link Options} are shared by all solvers and must not
+     * be changed temporarily).
+     */
+    private int maxFins;
+    /**
+     * Maximum number of endo fins for the current search, see {@link #maxFins}.
+     */
+    private int maxEndoFins;
     /**
      * All steps found by the last search
      */
@@ -470,6 +503,28 @@ public class FishSolver extends AbstractSolver {
      * number of tries for finned fish per number of fins
      */
     private int[] anzFins = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    /**
+     * The only base unit tried on the first level (index into {@link #baseUnits}),
+     * -1 for all units. Used to split a parallel search for mutant fish ({@link FishTask}).
+     */
+    private int rootUnit = -1;
+    /**
+     * <code>false</code> for the solvers of the tasks of a parallel search: the
+     * {@link SolverBudget} is checked by the calling thread only.
+     */
+    private boolean checkBudget = true;
+    /**
+     * Lock for the chain methods of {@link #tablingSolver} (Kraken Fish), shared
+     * by all solvers of a parallel search. The chain methods use the solver's
+     * chain buffers. The kraken checks only read the tables, which are filled
+     * and fully expanded by {@link TablingSolver#initForKrakenSearch()} before the
+     * search is split, so they need no lock.
+     */
+    private Object chainLock = this;
+    /**
+     * One solver per task for parallel searches, created when needed.
+     */
+    private FishSolver[] workers = null;
 
     /**
      * Creates a new instance of FishSolver
@@ -486,6 +541,29 @@ public class FishSolver extends AbstractSolver {
         }
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.LEVIATHAN, SolutionType.WHALE, SolutionType.SQUIRMBAG, SolutionType.JELLYFISH,
+            SolutionType.SWORDFISH, SolutionType.X_WING, SolutionType.FINNED_LEVIATHAN,
+            SolutionType.FINNED_WHALE, SolutionType.FINNED_SQUIRMBAG, SolutionType.FINNED_JELLYFISH,
+            SolutionType.FINNED_SWORDFISH, SolutionType.FINNED_X_WING, SolutionType.SASHIMI_LEVIATHAN,
+            SolutionType.SASHIMI_WHALE, SolutionType.SASHIMI_SQUIRMBAG, SolutionType.SASHIMI_JELLYFISH,
+            SolutionType.SASHIMI_SWORDFISH, SolutionType.SASHIMI_X_WING, SolutionType.FRANKEN_LEVIATHAN,
+            SolutionType.FRANKEN_WHALE, SolutionType.FRANKEN_SQUIRMBAG, SolutionType.FRANKEN_JELLYFISH,
+            SolutionType.FRANKEN_SWORDFISH, SolutionType.FRANKEN_X_WING,
+            SolutionType.FINNED_FRANKEN_LEVIATHAN, SolutionType.FINNED_FRANKEN_WHALE,
+            SolutionType.FINNED_FRANKEN_SQUIRMBAG, SolutionType.FINNED_FRANKEN_JELLYFISH,
+            SolutionType.FINNED_FRANKEN_SWORDFISH, SolutionType.FINNED_FRANKEN_X_WING,
+            SolutionType.MUTANT_LEVIATHAN, SolutionType.MUTANT_WHALE, SolutionType.MUTANT_SQUIRMBAG,
+            SolutionType.MUTANT_JELLYFISH, SolutionType.MUTANT_SWORDFISH, SolutionType.MUTANT_X_WING,
+            SolutionType.FINNED_MUTANT_LEVIATHAN, SolutionType.FINNED_MUTANT_WHALE,
+            SolutionType.FINNED_MUTANT_SQUIRMBAG, SolutionType.FINNED_MUTANT_JELLYFISH,
+            SolutionType.FINNED_MUTANT_SWORDFISH, SolutionType.FINNED_MUTANT_X_WING,
+            SolutionType.KRAKEN_FISH, SolutionType.KRAKEN_FISH_TYPE_1, SolutionType.KRAKEN_FISH_TYPE_2
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -681,29 +759,31 @@ public class FishSolver extends AbstractSolver {
 //        this.dlg = dlg;
 
         sudoku = finder.getSudoku();
-        int oldMaxFins = Options.getInstance().getMaxFins();
-        int oldEndoFins = Options.getInstance().getMaxEndoFins();
-        Options.getInstance().setMaxFins(maxFins);
-        Options.getInstance().setMaxEndoFins(maxEndoFins);
+        this.maxFins = maxFins;
+        this.maxEndoFins = maxEndoFins;
         List<SolutionStep> oldSteps = steps;
         steps = new ArrayList<SolutionStep>();
         kraken = false;
         searchAll = true;
         fishType = UNDEFINED;
         long millis1 = System.currentTimeMillis();
-        for (int i = 1; i <= 9; i++) {
-            if (forCandidate != -1 && forCandidate != i) {
-                // not now
-                continue;
+        if (isParallel(forCandidate, type)) {
+            getAllFishesParallel(minSize, maxSize, forCandidate, type);
+        } else {
+            for (int i = 1; i <= 9; i++) {
+                if (forCandidate != -1 && forCandidate != i) {
+                    // not now
+                    continue;
+                }
+//                /*K*/System.out.println("getAllFishes() for Candidate " + i);
+                long millis = System.currentTimeMillis();
+                baseGesamt = 0;
+                baseShowGesamt = 0;
+                getFishes(i, minSize, maxSize, true, true, false, true, type);
+                millis = System.currentTimeMillis() - millis;
+//                /*K*/System.out.println("getAllFishes(" + i + "): " + millis + "ms");
+//                /*K*/System.out.println(steps.size() + " fishes found!");
             }
-//            /*K*/System.out.println("getAllFishes() for Candidate " + i);
-            long millis = System.currentTimeMillis();
-            baseGesamt = 0;
-            baseShowGesamt = 0;
-            getFishes(i, minSize, maxSize, true, true, false, true, type);
-            millis = System.currentTimeMillis() - millis;
-//            /*K*/System.out.println("getAllFishes(" + i + "): " + millis + "ms");
-//            /*K*/System.out.println(steps.size() + " fishes found!");
         }
         millis1 = System.currentTimeMillis() - millis1;
 //        System.out.println("getAllFishes() gesamt: " + millis1 + "ms");
@@ -719,8 +799,6 @@ public class FishSolver extends AbstractSolver {
             Collections.sort(result);
         }
         steps = oldSteps;
-        Options.getInstance().setMaxFins(oldMaxFins);
-        Options.getInstance().setMaxEndoFins(oldEndoFins);
 
         // TODO: 2019-07-06
 //        this.dlg = null;
@@ -767,6 +845,8 @@ public class FishSolver extends AbstractSolver {
         // the hard way...
         steps.clear();
         kraken = false;
+        maxFins = finder.getSettings().getMaxFins();
+        maxEndoFins = finder.getSettings().getMaxEndoFins();
         SolutionStep step = null;
         for (int cand = 1; cand <= 9; cand++) {
             step = getFishes(cand, size, size, withoutFins, withFins, sashimi, withEndoFins, fishType);
@@ -805,12 +885,9 @@ public class FishSolver extends AbstractSolver {
 //            this.dlg = dlg;
 
             sudoku = finder.getSudoku();
-            boolean oldCheckTemplates = Options.getInstance().isCheckTemplates();
-            Options.getInstance().setCheckTemplates(false);
-            int oldMaxFins = Options.getInstance().getMaxFins();
-            int oldEndoFins = Options.getInstance().getMaxEndoFins();
-            Options.getInstance().setMaxFins(maxFins);
-            Options.getInstance().setMaxEndoFins(maxEndoFins);
+            // no templates for kraken fish (see getFishes())
+            this.maxFins = maxFins;
+            this.maxEndoFins = maxEndoFins;
             List<SolutionStep> oldSteps = steps;
             steps = new ArrayList<SolutionStep>();
             kraken = true;
@@ -818,19 +895,23 @@ public class FishSolver extends AbstractSolver {
 //        fishType = UNDEFINED;
             tablingSolver.initForKrakenSearch();
             long millis1 = System.currentTimeMillis();
-            for (int i = 1; i <= 9; i++) {
-                if (forCandidate != -1 && forCandidate != i) {
-                    // not now
-                    continue;
+            if (isParallel(forCandidate, type)) {
+                getAllFishesParallel(minSize, maxSize, forCandidate, type);
+            } else {
+                for (int i = 1; i <= 9; i++) {
+                    if (forCandidate != -1 && forCandidate != i) {
+                        // not now
+                        continue;
+                    }
+                    long millis = System.currentTimeMillis();
+                    baseGesamt = 0;
+                    baseShowGesamt = 0;
+                    //getFishes(i, minSize, maxSize, lineUnits, colUnits, true, true, false, true);
+                    getFishes(i, minSize, maxSize, true, true, false, true, type);
+                    millis = System.currentTimeMillis() - millis;
+//                System.out.println("getAllKrakenFishes(" + i + "): " + millis + "ms");
+//                System.out.println(steps.size() + " kraken fishes found!");
                 }
-                long millis = System.currentTimeMillis();
-                baseGesamt = 0;
-                baseShowGesamt = 0;
-                //getFishes(i, minSize, maxSize, lineUnits, colUnits, true, true, false, true);
-                getFishes(i, minSize, maxSize, true, true, false, true, type);
-                millis = System.currentTimeMillis() - millis;
-//            System.out.println("getAllKrakenFishes(" + i + "): " + millis + "ms");
-//            System.out.println(steps.size() + " kraken fishes found!");
             }
             millis1 = System.currentTimeMillis() - millis1;
 //        System.out.println("getAllKrakenFishes() gesamt: " + millis1 + "ms");
@@ -846,9 +927,6 @@ public class FishSolver extends AbstractSolver {
                 Collections.sort(result);
             }
             steps = oldSteps;
-            Options.getInstance().setCheckTemplates(oldCheckTemplates);
-            Options.getInstance().setMaxFins(oldMaxFins);
-            Options.getInstance().setMaxEndoFins(oldEndoFins);
             kraken = false;
 
             // TODO: 2019-07-06
@@ -860,7 +938,108 @@ public class FishSolver extends AbstractSolver {
     }
 
     /**
-     * Find a Kraken Fish. All options are taken from {@link Options}.
+     * The search for all fishes is done in parallel, if this is allowed in the
+     * {@link SolverSettings}, {@link ForkJoinPool#commonPool()} has more than
+     * one thread and the search can be split (more than one candidate or mutant fish).
+     *
+     * @param forCandidate
+     * @param type
+     * @return
+     */
+    private boolean isParallel(int forCandidate, int type) {
+        return finder.getSettings().isFishParallel() && ForkJoinPool.getCommonPoolParallelism() > 1
+                && (forCandidate == -1 || type == MUTANT);
+    }
+
+    /**
+     * Searches all fishes with one {@link FishTask} per candidate (for mutant
+     * fish one per candidate and base unit on the first level). The results
+     * are merged in the order of a sequential search; if more than one fish
+     * provides the same eliminations, the same fish is kept as in
+     * {@link #addFishStep()} and {@link #addKrakenStep(sudoku.SolutionStep)}.
+     * All attributes for the search must have been set.
+     *
+     * @param minSize
+     * @param maxSize
+     * @param forCandidate
+     * @param type
+     */
+    private void getAllFishesParallel(int minSize, int maxSize, int forCandidate, int type) {
+        // data that are computed on demand must be up to date before the tasks start
+        finder.getCandidates();
+        if (isDoTemplates(maxSize, type)) {
+            finder.getDelCandTemplates(false);
+        }
+        int roots = type == MUTANT ? baseUnits.length : 1;
+        List<FishTask> tasks = new ArrayList<FishTask>();
+        for (int i = 1; i <= 9; i++) {
+            if (forCandidate != -1 && forCandidate != i) {
+                continue;
+            }
+            for (int j = 0; j < roots; j++) {
+                tasks.add(new FishTask(getWorker(tasks.size()), i, type == MUTANT ? j : -1, minSize, maxSize, type));
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+        boolean onlyOne = finder.getSettings().isOnlyOneFishPerStep();
+        int lastCandidate = -1;
+        for (FishTask task : tasks) {
+            if (task.rootUnit == -1) {
+                // all fishes for one candidate: exactly the steps of the sequential search
+                steps.addAll(task.worker.steps);
+            } else {
+                if (task.candidate != lastCandidate) {
+                    // like getFishes(): duplicates are only checked within one candidate
+                    deletesMap.clear();
+                    lastCandidate = task.candidate;
+                }
+                for (SolutionStep step : task.worker.steps) {
+                    if (step.getType().isKrakenFish()) {
+                        addKrakenStep(step);
+                    } else if (onlyOne) {
+                        addOnlyOneFishStep(step, false);
+                    } else {
+                        steps.add(step);
+                    }
+                }
+            }
+            task.worker.steps.clear();
+        }
+        finder.checkBudget();
+    }
+
+    /**
+     * Gets the solver for a {@link FishTask} and copies the attributes for the
+     * current search.
+     *
+     * @param index
+     * @return
+     */
+    private FishSolver getWorker(int index) {
+        if (workers == null || workers.length <= index) {
+            FishSolver[] tmp = new FishSolver[Math.max(index + 1, 9)];
+            if (workers != null) {
+                System.arraycopy(workers, 0, tmp, 0, workers.length);
+            }
+            workers = tmp;
+        }
+        if (workers[index] == null) {
+            workers[index] = new FishSolver(finder);
+            workers[index].checkBudget = false;
+        }
+        FishSolver worker = workers[index];
+        worker.chainLock = this;
+        worker.sudoku = sudoku;
+        worker.tablingSolver = tablingSolver;
+        worker.maxFins = maxFins;
+        worker.maxEndoFins = maxEndoFins;
+        worker.kraken = kraken;
+        worker.searchAll = true;
+        return worker;
+    }
+
+    /**
+     * Find a Kraken Fish. All options are taken from the {@link SolverSettings}.
      *
      * @return
      */
@@ -870,28 +1049,27 @@ public class FishSolver extends AbstractSolver {
             baseGesamt = 0;
             baseShowGesamt = 0;
             steps = new ArrayList<SolutionStep>();
-            boolean oldCheckTemplates = Options.getInstance().isCheckTemplates();
-            Options.getInstance().setCheckTemplates(false);
-            int oldMaxFins = Options.getInstance().getMaxFins();
-            int oldEndoFins = Options.getInstance().getMaxEndoFins();
-            Options.getInstance().setMaxFins(Options.getInstance().getMaxKrakenFins());
-            Options.getInstance().setMaxEndoFins(Options.getInstance().getMaxKrakenEndoFins());
+            SolverSettings settings = finder.getSettings();
+            // no templates for kraken fish (see getFishes())
+            maxFins = settings.getMaxKrakenFins();
+            maxEndoFins = settings.getMaxKrakenEndoFins();
             kraken = true;
 //        fishType = UNDEFINED;
-            tablingSolver.initForKrakenSearch();
-            // Endo fins are only searched if the fish type is other than basic and if the max endo fin size > 0
-            withEndoFins = Options.getInstance().getMaxKrakenEndoFins() != 0 && Options.getInstance().getKrakenMaxFishType() > 0;
-            int size = Options.getInstance().getKrakenMaxFishSize();
-            for (int i = 1; i <= 9; i++) {
-                getFishes(i, 2, size, false, true, true, withEndoFins, Options.getInstance().getKrakenMaxFishType());
-                if (steps.size() > 0) {
-                    break;
+            try {
+                tablingSolver.initForKrakenSearch();
+                // Endo fins are only searched if the fish type is other than basic and if the max endo fin size > 0
+                withEndoFins = settings.getMaxKrakenEndoFins() != 0 && settings.getKrakenMaxFishType() > 0;
+                int size = settings.getKrakenMaxFishSize();
+                for (int i = 1; i <= 9; i++) {
+                    getFishes(i, 2, size, false, true, true, withEndoFins, settings.getKrakenMaxFishType());
+                    if (steps.size() > 0) {
+                        break;
+                    }
                 }
+            } finally {
+                // the search may have been aborted (see SolverBudget)
+                kraken = false;
             }
-            kraken = false;
-            Options.getInstance().setCheckTemplates(oldCheckTemplates);
-            Options.getInstance().setMaxFins(oldMaxFins);
-            Options.getInstance().setMaxEndoFins(oldEndoFins);
             if (steps.size() > 0) {
                 findSiameseFish(steps);
                 Collections.sort(steps);
@@ -919,18 +1097,13 @@ public class FishSolver extends AbstractSolver {
                                    boolean withoutFins, boolean withFins, boolean sashimi, boolean withEndoFins, int fishType) {
         // init attributes
         this.deletesMap.clear();
-        this.siamese = Options.getInstance().isAllowDualsAndSiamese();
+        this.siamese = finder.getSettings().isAllowDualsAndSiamese();
         this.fishType = fishType;
         this.candidate = candidate;
 //        this.candidates = finder.getCandidates()[candidate];
         this.candidatesM1 = finder.getCandidates()[candidate].getMask1();
         this.candidatesM2 = finder.getCandidates()[candidate].getMask2();
-        this.doTemplates = Options.getInstance().isCheckTemplates();
-        // put some restrictions on templates: they need a lot of time to be computed
-        // so only use them for really large fish
-        if ((fishType == BASIC && maxSize <= 5) || (fishType == FRANKEN && maxSize <= 4) || (fishType == MUTANT && maxSize <= 3)) {
-            doTemplates = false;
-        }
+        this.doTemplates = isDoTemplates(maxSize, fishType);
         this.withoutFins = withoutFins;
         this.withFins = withFins;
         this.withEndoFins = withEndoFins;
@@ -955,6 +1128,23 @@ public class FishSolver extends AbstractSolver {
         return step2;
     }
 
+    /**
+     * Checks whether templates should be used to restrict the search.
+     *
+     * @param maxSize
+     * @param fishType
+     * @return
+     */
+    private boolean isDoTemplates(int maxSize, int fishType) {
+        // templates are never used for kraken fish and not while progress scores are calculated
+        if (kraken || !finder.isCheckTemplates() || !finder.getSettings().isCheckTemplates()) {
+            return false;
+        }
+        // put some restrictions on templates: they need a lot of time to be computed
+        // so only use them for really large fish
+        return !((fishType == BASIC && maxSize <= 5) || (fishType == FRANKEN && maxSize <= 4) || (fishType == MUTANT && maxSize <= 3));
+    }
+
     /**
      * Gets all fishes with size between {@link #minSize} and {@link #maxSize} of
      * type {@link #fishType}. Most required data are set in attributes
@@ -996,7 +1186,15 @@ public class FishSolver extends AbstractSolver {
 //        baseStack[0].endoFins.clear();
         baseStack[0].endoFinsM1 = 0;
         baseStack[0].endoFinsM2 = 0;
-        baseStack[1].aktIndex = 0;
+        // a task of a parallel search tries only one unit on the first level
+        int rootEnd = numberOfBaseUnits;
+        if (rootUnit >= 0) {
+            if (rootUnit >= numberOfBaseUnits) {
+                return null;
+            }
+            rootEnd = rootUnit + 1;
+        }
+        baseStack[1].aktIndex = rootUnit >= 0 ? rootUnit : 0;
         baseStack[1].lastUnit = -1;
         // the current unit index
         int aktBaseIndex = 0;
@@ -1005,7 +1203,7 @@ public class FishSolver extends AbstractSolver {
             // fall back if no unit is available (only one level because baseUnitsIncluded
             // must be treated correctly
 //            System.out.println("while: " + baseStack[baseLevel].aktIndex + " >= " + (numberOfBaseUnits - minSize + baseLevel));
-            while (baseStack[baseLevel].aktIndex >= (numberOfBaseUnits)) {
+            while (baseStack[baseLevel].aktIndex >= (baseLevel == 1 ? rootEnd : numberOfBaseUnits)) {
                 if (baseStack[baseLevel].lastUnit != -1) {
                     baseUnitsUsed[baseStack[baseLevel].lastUnit] = false;
                     baseStack[baseLevel].lastUnit = -1;
@@ -1026,6 +1224,9 @@ public class FishSolver extends AbstractSolver {
             // make all necessary calculations
             baseGesamt++; // counter for progress bar
             baseShowGesamt++; // counter for progress bar
+            if (checkBudget) {
+                finder.checkBudget();
+            }
 
             // TODO: 2019-07-06
 //            if (dlg != null && baseShowGesamt % 100 == 0) {
@@ -1041,7 +1242,7 @@ public class FishSolver extends AbstractSolver {
                 // intersects() == true means: there are endoFins!
 //                if (!withFins || !withEndoFins || (baseStack[baseLevel - 1].endoFins.size() + aktEndoFinSet.size()) > Options.getInstance().maxEndoFins) {
                 if (!withFins || !withEndoFins || (getSize(baseStack[baseLevel - 1].endoFinsM1, baseStack[baseLevel - 1].endoFinsM2)
-                        + getSize(aktEndoFinSetM1, aktEndoFinSetM2)) > Options.getInstance().getMaxEndoFins()) {
+                        + getSize(aktEndoFinSetM1, aktEndoFinSetM2)) > maxEndoFins) {
                     // every invalid combination eliminates a lot of possibilities:
                     // (all non-zero baseUnits greater than i) over (maxSize - aktSize)
 
@@ -1142,6 +1343,17 @@ public class FishSolver extends AbstractSolver {
             coverCandidatesM1[numberOfCoverUnits] = allCoverCandidatesM1[i];
             coverCandidatesM2[numberOfCoverUnits++] = allCoverCandidatesM2[i];
         }
+        coverSuffixM1[numberOfCoverUnits] = 0;
+        coverSuffixM2[numberOfCoverUnits] = 0;
+        coverSuffixMax[numberOfCoverUnits] = 0;
+        for (int i = numberOfCoverUnits - 1; i >= 0; i--) {
+            coverSuffixM1[i] = coverSuffixM1[i + 1] | coverCandidatesM1[i];
+            coverSuffixM2[i] = coverSuffixM2[i + 1] | coverCandidatesM2[i];
+            coverSuffixMax[i] = Math.max(coverSuffixMax[i + 1],
+                    Long.bitCount(baseSetM1 & coverCandidatesM1[i]) + Long.bitCount(baseSetM2 & coverCandidatesM2[i]));
+        }
+        // maximum number of fins
+        int finLimit = withFins ? maxFins : 0;
         // try all combinations of cover units
         Arrays.fill(coverUnitsUsed, false);
         // start with level one (level zero is a stopper)
@@ -1176,8 +1388,17 @@ public class FishSolver extends AbstractSolver {
                 }
             }
             cEntry = coverStack[coverLevel];
+            if (checkBudget) {
+                finder.checkBudget();
+            }
             // get the next cover set; there must be one left or we would have fallen back
             aktCoverIndex = cEntry.aktIndex++;
+            if (coverLevel == baseLevel
+                    && Long.bitCount((baseSetM1 & ~(coverStack[coverLevel - 1].candidatesM1 | coverCandidatesM1[aktCoverIndex])) | endoFinSetM1)
+                    + Long.bitCount((baseSetM2 & ~(coverStack[coverLevel - 1].candidatesM2 | coverCandidatesM2[aktCoverIndex])) | endoFinSetM2) > finLimit) {
+                // too many fins, the unit can be skipped without further calculations
+                continue;
+            }
 //            System.out.println("try cover: " + aktCoverIndex + "/" + coverLevel);
             // if the new unit has common candidates with the current cover set, those candidates
             // have to be treated as possible eliminations (cannibalistic eliminations)
@@ -1248,7 +1469,7 @@ public class FishSolver extends AbstractSolver {
                             return step;
                         }
                     }
-                } else if (withFins && (finSize = getSize(finsM1, finsM2)) > 0 && finSize <= Options.getInstance().getMaxFins()) {
+                } else if (withFins && (finSize = getSize(finsM1, finsM2)) > 0 && finSize <= maxFins) {
 //                    System.out.println("finned fish");
                     /*********** POSSIBLE FINNED/SASHIMI-FISCH **********/
                     versucheFins++;
@@ -1306,7 +1527,43 @@ public class FishSolver extends AbstractSolver {
                 }
             }
             // and on to the next level
-            if (coverLevel < maxSize) {
+            // a fish has as many cover units as base units: deeper levels would only
+            // run over stale entries in coverUnits and corrupt coverUnitsUsed
+            if (coverLevel < baseLevel) {
+                // the remaining units have to cover all base candidates but finLimit
+                // (endo fins stay fins anyway): if they cannot, no fish is possible on
+                // the next levels
+                long uncoveredM1 = baseSetM1 & ~cEntry.candidatesM1 & ~endoFinSetM1;
+                long uncoveredM2 = baseSetM2 & ~cEntry.candidatesM2 & ~endoFinSetM2;
+                int minFins = Long.bitCount(uncoveredM1) + Long.bitCount(uncoveredM2)
+                        + Long.bitCount(endoFinSetM1) + Long.bitCount(endoFinSetM2);
+                if (minFins - (baseLevel - coverLevel) * coverSuffixMax[aktCoverIndex + 1] > finLimit) {
+                    continue;
+                }
+                if (baseLevel - coverLevel > 1 && minFins - getMaxCovered(uncoveredM1, uncoveredM2,
+                        aktCoverIndex + 1, baseLevel - coverLevel) > finLimit) {
+                    continue;
+                }
+                // base candidates that cannot be covered by the remaining units will be fins:
+                // if there are too many of them or if they don't see any candidate, that
+                // could be eliminated, no fish can be found on the next levels
+                long possibleM1 = cEntry.candidatesM1 | coverSuffixM1[aktCoverIndex + 1];
+                long possibleM2 = cEntry.candidatesM2 | coverSuffixM2[aktCoverIndex + 1];
+                long sureFinsM1 = (baseSetM1 & ~possibleM1) | endoFinSetM1;
+                long sureFinsM2 = (baseSetM2 & ~possibleM2) | endoFinSetM2;
+                if (sureFinsM1 != 0 || sureFinsM2 != 0) {
+                    if (Long.bitCount(sureFinsM1) + Long.bitCount(sureFinsM2) > finLimit) {
+                        continue;
+                    }
+                    Sudoku.getBuddies(sureFinsM1, sureFinsM2, getBuddiesSet);
+                    if (kraken) {
+                        // Kraken Fish need only a cell that sees all fins
+                        possibleM1 = possibleM2 = -1L;
+                    }
+                    if ((getBuddiesSet.getMask1() & possibleM1) == 0 && (getBuddiesSet.getMask2() & possibleM2) == 0) {
+                        continue;
+                    }
+                }
                 coverLevel++;
                 cEntry = coverStack[coverLevel];
                 cEntry.aktIndex = aktCoverIndex + 1;
@@ -1315,6 +1572,39 @@ public class FishSolver extends AbstractSolver {
         }
     }
 
+    /**
+     * Computes an upper bound for the number of candidates in <code>uncovered</code>
+     * that can be covered by <code>anz</code> cover units from index <code>start</code> on:
+     * the sum of the <code>anz</code> largest intersections.
+     *
+     * @param uncoveredM1
+     * @param uncoveredM2
+     * @param start
+     * @param anz
+     * @return
+     */
+    private int getMaxCovered(long uncoveredM1, long uncoveredM2, int start, int anz) {
+        Arrays.fill(maxCovered, 0, anz, 0);
+        for (int i = start; i < numberOfCoverUnits; i++) {
+            int covered = Long.bitCount(uncoveredM1 & coverCandidatesM1[i]) + Long.bitCount(uncoveredM2 & coverCandidatesM2[i]);
+            // insert into the sorted list of the largest values
+            int j = anz - 1;
+            if (covered <= maxCovered[j]) {
+                continue;
+            }
+            while (j > 0 && maxCovered[j - 1] < covered) {
+                maxCovered[j] = maxCovered[j - 1];
+                j--;
+            }
+            maxCovered[j] = covered;
+        }
+        int sum = 0;
+        for (int i = 0; i < anz; i++) {
+            sum += maxCovered[i];
+        }
+        return sum;
+    }
+
     /**
      * Search the current base/cover set combination for possible Kraken Fish
      *
@@ -1363,11 +1653,13 @@ public class FishSolver extends AbstractSolver {
                     step.setType(SolutionType.KRAKEN_FISH_TYPE_1);
                     step.addCandidateToDelete(endIndex, candidate);
                     // now the chains
-                    for (int k = 0; k < krakenFinSet.size(); k++) {
-                        Chain tmpChain = tablingSolver.getKrakenChain(krakenFinSet.get(k), candidate, endIndex, candidate);
-                        step.addChain((Chain) tmpChain.clone());
+                    synchronized (chainLock) {
+                        for (int k = 0; k < krakenFinSet.size(); k++) {
+                            Chain tmpChain = tablingSolver.getKrakenChain(krakenFinSet.get(k), candidate, endIndex, candidate);
+                            step.addChain((Chain) tmpChain.clone());
+                        }
+                        tablingSolver.adjustChains(step);
                     }
-                    tablingSolver.adjustChains(step);
                     step = addKrakenStep(step);
                     if (step != null && !searchAll) {
                         return step;
@@ -1426,11 +1718,13 @@ public class FishSolver extends AbstractSolver {
                         step.setSubType(step.getType());
                         step.setType(SolutionType.KRAKEN_FISH_TYPE_2);
                         step.addCandidateToDelete(endIndex, endCandidate);
-                        for (int k = 0; k < krakenDeleteCandSet.size(); k++) {
-                            Chain tmpChain = tablingSolver.getKrakenChain(krakenDeleteCandSet.get(k), candidate, endIndex, endCandidate);
-                            step.addChain((Chain) tmpChain.clone());
+                        synchronized (chainLock) {
+                            for (int k = 0; k < krakenDeleteCandSet.size(); k++) {
+                                Chain tmpChain = tablingSolver.getKrakenChain(krakenDeleteCandSet.get(k), candidate, endIndex, endCandidate);
+                                step.addChain((Chain) tmpChain.clone());
+                            }
+                            tablingSolver.adjustChains(step);
                         }
-                        tablingSolver.adjustChains(step);
                         step = addKrakenStep(step);
 //                        if (step != null) {
 //                            System.out.println(step.toString(2));
@@ -1469,32 +1763,45 @@ public class FishSolver extends AbstractSolver {
                 return null;
             }
         }
-        if (Options.getInstance().isOnlyOneFishPerStep()) {
-            //String del = globalStep.getCandidateString() + " " + globalStep.getValues().get(0);
-            String delOrg = globalStep.getCandidateString();
-            int startIndex = delOrg.indexOf(')');
-            startIndex = delOrg.indexOf('(', startIndex);
-            String del = delOrg.substring(0, startIndex);
-            Integer oldIndex = deletesMap.get(del);
-            SolutionStep tmpStep = null;
-            if (oldIndex != null) {
-                tmpStep = steps.get(oldIndex.intValue());
-            }
-            if (tmpStep == null || globalStep.getType().compare(tmpStep.getType()) < 0) {
-                if (oldIndex != null) {
-                    steps.remove(oldIndex.intValue());
-                    steps.add(oldIndex.intValue(), (SolutionStep) globalStep.clone());
-                } else {
-                    steps.add((SolutionStep) globalStep.clone());
-                    deletesMap.put(del, steps.size() - 1);
-                }
-            }
+        if (finder.getSettings().isOnlyOneFishPerStep()) {
+            addOnlyOneFishStep(globalStep, true);
         } else {
             steps.add((SolutionStep) globalStep.clone());
         }
         return null;
     }
 
+    /**
+     * Adds <code>step</code> to {@link #steps}, if no fish with the same
+     * eliminations exists; if one exists, it is replaced if <code>step</code>
+     * is a smaller fish.
+     *
+     * @param step
+     * @param copy <code>true</code>, if a copy of <code>step</code> has to be stored
+     */
+    private void addOnlyOneFishStep(SolutionStep step, boolean copy) {
+        //String del = step.getCandidateString() + " " + step.getValues().get(0);
+        String delOrg = step.getCandidateString();
+        int startIndex = delOrg.indexOf(')');
+        startIndex = delOrg.indexOf('(', startIndex);
+        String del = delOrg.substring(0, startIndex);
+        Integer oldIndex = deletesMap.get(del);
+        SolutionStep tmpStep = null;
+        if (oldIndex != null) {
+            tmpStep = steps.get(oldIndex.intValue());
+        }
+        if (tmpStep == null || step.getType().compare(tmpStep.getType()) < 0) {
+            SolutionStep newStep = copy ? (SolutionStep) step.clone() : step;
+            if (oldIndex != null) {
+                steps.remove(oldIndex.intValue());
+                steps.add(oldIndex.intValue(), newStep);
+            } else {
+                steps.add(newStep);
+                deletesMap.put(del, steps.size() - 1);
+            }
+        }
+    }
+
     /**
      * Adds a Kraken Fish to {@link #steps} if an equivalent smaller fish
      * doesnt already exist.
@@ -1527,33 +1834,51 @@ public class FishSolver extends AbstractSolver {
      * To find them: Compare all pairs of fishes, if the base sets match create
      * a new steps, that contains the same base set and both cover sets/fins/
      * eliminations.
+     * <p>
+     * Only fishes with the same candidate, category and base units can form a
+     * siamese fish: the fishes are grouped by a key made from those (see
+     * {@link #getSiameseKey(sudoku.SolutionStep) }), only fishes within the same
+     * group are compared. The fishes are still combined in the order of the list.
      *
      * @param fishes All available fishes
      */
     private void findSiameseFish(List<SolutionStep> fishes) {
-        if (!Options.getInstance().isAllowDualsAndSiamese()) {
+        if (!finder.getSettings().isAllowDualsAndSiamese()) {
             // not allowed!
             return;
         }
         // read current size (list can be changed by Siamese Fishes)
         int maxIndex = fishes.size();
+        // group the fishes; the indices in every group are sorted
+        long[] keys = new long[maxIndex];
+        Map<Long, List<Integer>> groups = new HashMap<Long, List<Integer>>();
+        for (int i = 0; i < maxIndex; i++) {
+            keys[i] = getSiameseKey(fishes.get(i));
+            List<Integer> group = groups.get(keys[i]);
+            if (group == null) {
+                group = new ArrayList<Integer>();
+                groups.put(keys[i], group);
+            }
+            group.add(i);
+        }
         for (int i = 0; i < maxIndex - 1; i++) {
-            for (int j = i + 1; j < maxIndex; j++) {
-                SolutionStep step1 = fishes.get(i);
-                SolutionStep step2 = fishes.get(j);
-                if (step1.getValues().get(0) != step2.getValues().get(0)) {
-                    // different candidate
+            List<Integer> group = groups.get(keys[i]);
+            if (group.size() == 1) {
+                // no other fish with the same base set
+                continue;
+            }
+            for (int m = 0; m < group.size(); m++) {
+                int j = group.get(m);
+                if (j <= i) {
                     continue;
                 }
+                SolutionStep step1 = fishes.get(i);
+                SolutionStep step2 = fishes.get(j);
                 if (step1.getBaseEntities().size() != step2.getBaseEntities().size()) {
                     // different fish size -> no dual
                     continue;
                 }
-                if (SolutionType.getStepConfig(step1.getType()).getCategory().ordinal()
-                        != SolutionType.getStepConfig(step2.getType()).getCategory().ordinal()) {
-                    // not the same type of fish
-                    continue;
-                }
+                // the key can be ambiguous -> check the base sets
                 boolean baseSetEqual = true;
                 for (int k = 0; k < step1.getBaseEntities().size(); k++) {
                     if (!step1.getBaseEntities().get(k).equals(step2.getBaseEntities().get(k))) {
@@ -1589,6 +1914,27 @@ public class FishSolver extends AbstractSolver {
         }
     }
 
+    /**
+     * Builds the key for grouping fishes in {@link #findSiameseFish(java.util.List) }:
+     * the base units as bit mask (bits 0 - 35), the candidate (bits 36 - 39) and
+     * the category of the fish (bits 40 and up). Base entities, that are no units,
+     * can make keys ambiguous, the base sets have to be compared nevertheless.
+     *
+     * @param step
+     * @return
+     */
+    private long getSiameseKey(SolutionStep step) {
+        long key = 0;
+        List<Entity> bases = step.getBaseEntities();
+        for (int i = 0; i < bases.size(); i++) {
+            Entity base = bases.get(i);
+            key |= 1L << ((base.getEntityName() * 9 + base.getEntityNumber()) % 36);
+        }
+        key |= ((long) step.getValues().get(0)) << 36;
+        key |= ((long) SolutionType.getStepConfig(step.getType()).getCategory().ordinal()) << 40;
+        return key;
+    }
+
     /**
      * Create a new fish step. The step is added to the step list if {@link #searchAll}
      * or {@link #siamese} are set.
@@ -1855,18 +2201,7 @@ public class FishSolver extends AbstractSolver {
      * @return
      */
     private int getSize(long mask1, long mask2) {
-        int anzahl = 0;
-        if (mask1 != 0) {
-            for (int i = 0; i < 64; i += 8) {
-                anzahl += SudokuSet.anzValues[(int) ((mask1 >> i) & 0xFF)];
-            }
-        }
-        if (mask2 != 0) {
-            for (int i = 0; i < 24; i += 8) {
-                anzahl += SudokuSet.anzValues[(int) ((mask2 >> i) & 0xFF)];
-            }
-        }
-        return anzahl;
+        return Long.bitCount(mask1) + Long.bitCount(mask2);
     }
 
     /**
@@ -1878,24 +2213,7 @@ public class FishSolver extends AbstractSolver {
      * @return
      */
     private boolean getSizeLTE1(long mask1, long mask2) {
-        int anzahl = 0;
-        if (mask1 != 0) {
-            for (int i = 0; i < 64; i += 8) {
-                anzahl += SudokuSet.anzValues[(int) ((mask1 >> i) & 0xFF)];
-                if (anzahl > 1) {
-                    return false;
-                }
-            }
-        }
-        if (mask2 != 0) {
-            for (int i = 0; i < 24; i += 8) {
-                anzahl += SudokuSet.anzValues[(int) ((mask2 >> i) & 0xFF)];
-                if (anzahl > 1) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return Long.bitCount(mask1) + Long.bitCount(mask2) <= 1;
     }
 
     /**
@@ -1914,6 +2232,41 @@ public class FishSolver extends AbstractSolver {
         System.out.println(text + ": " + set);
     }
 
+    /**
+     * Searches all fishes for one candidate with its own {@link FishSolver}; for
+     * mutant fish only one base unit is tried on the first level. Used if
+     * {@link #getAllFishes(int, int, int, int, int, int)} or
+     * {@link #getAllKrakenFishes(int, int, int, int, int, int)} run in parallel.
+     */
+    private class FishTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** The solver for this task, the fishes are collected in its {@link #steps}. */
+        private final FishSolver worker;
+        /** The fish candidate. */
+        private final int candidate;
+        /** The base unit on the first level, -1 for all units. */
+        private final int rootUnit;
+        private final int minSize;
+        private final int maxSize;
+        private final int type;
+
+        FishTask(FishSolver worker, int candidate, int rootUnit, int minSize, int maxSize, int type) {
+            this.worker = worker;
+            this.candidate = candidate;
+            this.rootUnit = rootUnit;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.type = type;
+        }
+
+        @Override
+        protected void compute() {
+            worker.steps = new ArrayList<SolutionStep>();
+            worker.rootUnit = rootUnit;
+            worker.getFishes(candidate, minSize, maxSize, true, true, false, true, type);
+        }
+    }
+
     /**
      * Print some statistics to the console
      */
@@ -1926,8 +2279,69 @@ public class FishSolver extends AbstractSolver {
         System.out.println(tmpBuffer);
     }
 
+    /**
+     * Benchmark for the search for all fishes ("All Steps"): Basic, Franken and
+     * Mutant Fish (including finned fish) in a fixed set of puzzles. The number
+     * of fishes and a checksum over all steps are printed as well, so that
+     * changes in the search can be checked. The fastest round is reported
+     * (the first rounds are slowed down by the JIT compiler).
+     *
+     * @param rounds
+     */
+    private static void benchmark(int rounds) {
+        String[] puzzles = {
+            ".5.6.13..7.....4.5..1....8....9...28...7.6...12...4....9....6..5.2.....1..62.7.3.",
+            "....6..23..7......35.7....1...4...68..65721..93...8...5....7.82......9..24..5....",
+            "9............9..1415....9637...62...5.24196.7...37...5263....8141..5............6",
+            "49.......3....4...7.25...3.5.3..2.4...61.78...1.4..3.2.2...56.3...8....9.......51",
+            "1......6...24.3..58....54......7.54...........79.8......82....66..7.91...5......2",
+            ".....8.6...8.....535..1.4....13.98.48.9...7.14.78.15....3.4..791.....6...4.1.....",
+            "8.1.5.3.....2....7....9..1..9.76..8...79325...6..85.3..5..4....9....8.....3.2.4.8",
+            "8....4..9.....5.36...7.12.....9...4.35.....62.6...7.....76.2...23.5.....5..4....8",
+            "71.....8..2...65......4.2.....43...2..42.89..8...95.....1.8......36...2..7.....35",
+            ".483.7....97........3........1.72..946..3..827..89.1........5........62....5.487.",
+            ".8..72.4.4.......6.391..........96.2.9..1..5.3.58..........126.9.......3.5.38..9.",
+            "..591..3.97.28..1.2....6.8.......7..52.....68..7.......1.7....5.6..95.71.5..623..",
+        };
+        // type, maxSize, maxFins, maxEndoFins
+        int[][] configs = {{BASIC, 4, 5, 2}, {FRANKEN, 4, 5, 2}, {MUTANT, 3, 3, 1}, {MUTANT, 4, 2, 1}};
+        String[] names = {"Basic", "Franken", "Mutant", "Mutant"};
+        // sequential search only
+        Options.getInstance().setFishParallel(false);
+        SudokuStepFinder finder = new SudokuStepFinder();
+        Sudoku sudoku = new Sudoku();
+        for (int i = 0; i < configs.length; i++) {
+            int[] config = configs[i];
+            long nanos = Long.MAX_VALUE;
+            int anz = 0;
+            int checksum = 0;
+            for (int round = 0; round < rounds; round++) {
+                long roundNanos = 0;
+                for (String puzzle : puzzles) {
+                    sudoku.setSudoku(puzzle);
+                    long ticks = System.nanoTime();
+                    List<SolutionStep> steps = finder.getAllFishes(sudoku, 2, config[1], config[2], config[3], -1, config[0]);
+                    roundNanos += System.nanoTime() - ticks;
+                    if (round == 0) {
+                        anz += steps.size();
+                        for (SolutionStep step : steps) {
+                            checksum = checksum * 31 + step.toString(2).hashCode();
+                        }
+                    }
+                }
+                nanos = Math.min(nanos, roundNanos);
+            }
+            System.out.printf("%-8s size %d, %d fins, %d endo fins: %8.2fms per round, %5d fishes, checksum %08x%n",
+                    names[i], config[1], config[2], config[3], nanos / 1e6, anz, checksum);
+        }
+    }
+
     @SuppressWarnings("CallToThreadDumpStack")
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("-bench")) {
+            benchmark(args.length > 1 ? Integer.parseInt(args[1]) : 10);
+            System.exit(0);
+        }
 //        Sudoku sudoku = new Sudoku();
 //        // X-Wing: 3 r37 c34 => r1c34,r4c34,r5c34,r6c34,r9c4<>3
 //        sudoku.setSudoku(":0300:3:9.....+5+6+1..+6.+1.7+937+1..962486...2+147+9........5....4...642..+586+1+75.71.+2..+4..1....+52::313 314 343 344 353 354 363 364 394::");
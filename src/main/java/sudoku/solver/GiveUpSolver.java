@@ -35,6 +35,13 @@ public class GiveUpSolver extends AbstractSolver {
         super(finder);
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.GIVE_UP
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         if (type == SolutionType.GIVE_UP) {
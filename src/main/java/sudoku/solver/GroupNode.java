@@ -41,9 +41,6 @@ public class GroupNode {
     public int index2;    // index of second cell
     public int index3;    // index of third cell or -1, if grouped node consists only of two cells
     
-    private static SudokuSet candInHouse = new SudokuSet(); // all positions for a given candidate in a given house
-    private static SudokuSet tmpSet = new SudokuSet();      // for check with blocks
-    
     /**
      * Creates a new instance of GroupNode
      * @param cand
@@ -91,14 +88,18 @@ public class GroupNode {
      */
     public static List<GroupNode> getGroupNodes(SudokuStepFinder finder) {
         List<GroupNode> groupNodes = new ArrayList<GroupNode>();
+        // scratch sets are local: several finders may search for group nodes concurrently
+        SudokuSet candInHouse = new SudokuSet(); // all positions for a given candidate in a given house
+        SudokuSet tmpSet = new SudokuSet();      // for check with blocks
         
-        getGroupNodesForHouseType(groupNodes, finder, Sudoku.LINE_TEMPLATES);
-        getGroupNodesForHouseType(groupNodes, finder, Sudoku.COL_TEMPLATES);
+        getGroupNodesForHouseType(groupNodes, finder, Sudoku.LINE_TEMPLATES, candInHouse, tmpSet);
+        getGroupNodesForHouseType(groupNodes, finder, Sudoku.COL_TEMPLATES, candInHouse, tmpSet);
         
         return groupNodes;
     }
     
-    private static void getGroupNodesForHouseType(List<GroupNode> groupNodes, SudokuStepFinder finder, SudokuSet[] houses) {
+    private static void getGroupNodesForHouseType(List<GroupNode> groupNodes, SudokuStepFinder finder, SudokuSet[] houses,
+            SudokuSet candInHouse, SudokuSet tmpSet) {
         for (int i = 0; i < houses.length; i++) {
             for (int cand = 1; cand <= 9; cand++) {
                 candInHouse.set(houses[i]);
@@ -35,6 +35,13 @@ public class IncompleteSolver extends AbstractSolver {
         super(finder);
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.INCOMPLETE
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         if (type == SolutionType.INCOMPLETE) {
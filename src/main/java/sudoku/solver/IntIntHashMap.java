@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+/**
+ * A map from <code>int</code> to <code>int</code> without boxing (open addressing,
+ * linear probing). Used as reverse lookup cache in {@link TableEntry}: the keys
+ * are chain entries (see {@link sudoku.Chain}), the values are indices into the table.<br><br>
+ *
+ * The key <code>0</code> is used to mark empty slots and cannot be stored (a chain
+ * entry is never 0, since the candidate is part of every entry).<br><br>
+ *
+ * All occupied slots are recorded, so {@link #clear()} takes time proportional to
+ * the number of entries and not to the capacity. The capacity is kept after
+ * clearing, a map that is reused for every step doesn't allocate anything once it
+ * has grown to its working size.
+ *
+ * @author hobiwan
+ */
+public class IntIntHashMap {
+    /** Marks an empty slot. */
+    private static final int EMPTY = 0;
+    /** Default initial capacity. */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** The keys, {@link #EMPTY} for unused slots. */
+    private int[] keys;
+    /** The values, synchronized with {@link #keys}. */
+    private int[] values;
+    /** Indices of all occupied slots (in insertion order). */
+    private int[] slots;
+    /** Number of entries in the map. */
+    private int size = 0;
+    /** <code>keys.length - 1</code> (the capacity is always a power of 2). */
+    private int mask;
+
+    /**
+     * Creates a map with the default capacity.
+     */
+    public IntIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a map that can hold <code>expectedSize</code> entries
+     * without rehashing.
+     *
+     * @param expectedSize
+     */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        values = new int[capacity];
+        slots = new int[capacity / 2];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Stores <code>value</code> for <code>key</code>; an existing
+     * value is overwritten.
+     *
+     * @param key must not be 0
+     * @param value
+     */
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("key 0 is not allowed");
+        }
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == slots.length) {
+            rehash(keys.length * 2);
+            put(key, value);
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        slots[size++] = slot;
+    }
+
+    /**
+     * Gets the value for <code>key</code>.
+     *
+     * @param key
+     * @param defaultValue returned, if <code>key</code> is not in the map
+     * @return
+     */
+    public int get(int key, int defaultValue) {
+        int slot = hash(key) & mask;
+        int k;
+        while ((k = keys[slot]) != EMPTY) {
+            if (k == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Checks if <code>key</code> is in the map.
+     *
+     * @param key
+     * @return
+     */
+    public boolean containsKey(int key) {
+        int slot = hash(key) & mask;
+        int k;
+        while ((k = keys[slot]) != EMPTY) {
+            if (k == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return <code>true</code>, if the map contains no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries. Only the occupied slots are touched,
+     * the capacity stays the same.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            keys[slots[i]] = EMPTY;
+        }
+        size = 0;
+    }
+
+    /**
+     * Doubles the capacity (keeps the load factor at 0.5).
+     *
+     * @param newCapacity
+     */
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        int[] oldSlots = slots;
+        int oldSize = size;
+        keys = new int[newCapacity];
+        values = new int[newCapacity];
+        slots = new int[newCapacity / 2];
+        mask = newCapacity - 1;
+        size = 0;
+        for (int i = 0; i < oldSize; i++) {
+            int slot = oldSlots[i];
+            put(oldKeys[slot], oldValues[slot]);
+        }
+    }
+
+    /**
+     * Spreads the bits of the key: chain entries differ mostly in the
+     * lower bits (candidate, cell index).
+     *
+     * @param key
+     * @return
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+/**
+ * A set of pairs of <code>long</code>s without boxing (open addressing,
+ * linear probing). Used to detect duplicate ALS in {@link SudokuStepFinder}:
+ * a pair holds <code>mask1</code> and <code>mask2</code> of a
+ * {@link sudoku.SudokuSet}.<br><br>
+ *
+ * The pair <code>(0, 0)</code> (an empty cell set) is used to mark empty
+ * slots and cannot be stored.<br><br>
+ *
+ * All occupied slots are recorded, so {@link #clear()} takes time proportional to
+ * the number of entries and not to the capacity. Every entry knows its position
+ * in the insertion order (see {@link #indexOf(long, long)}).
+ *
+ * @author hobiwan
+ */
+public class LongPairHashSet {
+    /** Default initial capacity. */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /** First part of the keys. */
+    private long[] keys1;
+    /** Second part of the keys; a slot is empty if both parts are 0. */
+    private long[] keys2;
+    /** Indices of all occupied slots (in insertion order). */
+    private int[] slots;
+    /** For every occupied slot its index in {@link #slots}. */
+    private int[] positions;
+    /** Number of entries in the set. */
+    private int size = 0;
+    /** <code>keys1.length - 1</code> (the capacity is always a power of 2). */
+    private int mask;
+
+    /**
+     * Creates a set with the default capacity.
+     */
+    public LongPairHashSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a set that can hold <code>expectedSize</code> entries
+     * without rehashing.
+     *
+     * @param expectedSize
+     */
+    public LongPairHashSet(int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys1 = new long[capacity];
+        keys2 = new long[capacity];
+        slots = new int[capacity / 2];
+        positions = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a pair to the set.
+     *
+     * @param key1
+     * @param key2
+     * @return <code>true</code>, if the pair was not in the set
+     */
+    public boolean add(long key1, long key2) {
+        if (key1 == 0 && key2 == 0) {
+            throw new IllegalArgumentException("key (0, 0) is not allowed");
+        }
+        int slot = hash(key1, key2) & mask;
+        while (keys1[slot] != 0 || keys2[slot] != 0) {
+            if (keys1[slot] == key1 && keys2[slot] == key2) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == slots.length) {
+            rehash(keys1.length * 2);
+            return add(key1, key2);
+        }
+        keys1[slot] = key1;
+        keys2[slot] = key2;
+        positions[slot] = size;
+        slots[size++] = slot;
+        return true;
+    }
+
+    /**
+     * Checks if a pair is in the set.
+     *
+     * @param key1
+     * @param key2
+     * @return
+     */
+    public boolean contains(long key1, long key2) {
+        return indexOf(key1, key2) >= 0;
+    }
+
+    /**
+     * Gets the position of a pair in the insertion order.
+     *
+     * @param key1
+     * @param key2
+     * @return the number of pairs added before this one or -1, if the pair is not in the set
+     */
+    public int indexOf(long key1, long key2) {
+        int slot = hash(key1, key2) & mask;
+        while (keys1[slot] != 0 || keys2[slot] != 0) {
+            if (keys1[slot] == key1 && keys2[slot] == key2) {
+                return positions[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all entries. Only the occupied slots are touched,
+     * the capacity stays the same.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            keys1[slots[i]] = 0;
+            keys2[slots[i]] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * Doubles the capacity (keeps the load factor at 0.5).
+     *
+     * @param newCapacity
+     */
+    private void rehash(int newCapacity) {
+        long[] oldKeys1 = keys1;
+        long[] oldKeys2 = keys2;
+        int[] oldSlots = slots;
+        int oldSize = size;
+        keys1 = new long[newCapacity];
+        keys2 = new long[newCapacity];
+        slots = new int[newCapacity / 2];
+        positions = new int[newCapacity];
+        mask = newCapacity - 1;
+        size = 0;
+        for (int i = 0; i < oldSize; i++) {
+            int slot = oldSlots[i];
+            add(oldKeys1[slot], oldKeys2[slot]);
+        }
+    }
+
+    /**
+     * Mixes both parts of the key.
+     *
+     * @param key1
+     * @param key2
+     * @return
+     */
+    private static int hash(long key1, long key2) {
+        long h = (key1 ^ (key2 * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+}
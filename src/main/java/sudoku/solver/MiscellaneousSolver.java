@@ -112,6 +112,13 @@ public class MiscellaneousSolver extends AbstractSolver {
         }
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.SUE_DE_COQ
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
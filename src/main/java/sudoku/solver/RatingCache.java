@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+import sudoku.DifficultyLevel;
+import sudoku.DifficultyType;
+import sudoku.Sudoku;
+import sudoku.generator.SudokuCanonicalizer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache for ratings. The key is the canonical form of the givens
+ * ({@link SudokuCanonicalizer}), so relabelled, rotated, mirrored or transposed
+ * copies of a puzzle share one entry. When the cache is full, the least recently
+ * used entry is dropped.<br><br>
+ *
+ * On a miss the puzzle is rated as it was submitted, so the first request for a
+ * puzzle gets the same result as without a cache. The solvers don't find the steps
+ * of a technique in an order that is invariant under the symmetries, though:
+ * a transformed copy of a puzzle can get a different rating than the copy that
+ * is in the cache. A hit returns the cached rating, so the result for a copy
+ * can depend on which copy was rated first (and on evictions).<br><br>
+ *
+ * All ratings are done with the {@link SolverSettings} given to the constructor.
+ * The cache can be used by several threads, the puzzles are rated outside the lock
+ * (two threads may rate the same puzzle at the same time).
+ *
+ * @author hobiwan
+ */
+public class RatingCache {
+    /** Maximum number of entries. */
+    private final int maxSize;
+    /** The settings for all ratings. */
+    private final SolverSettings settings;
+    /** Puzzles harder than this are rated anyway. */
+    private final DifficultyLevel maxLevel;
+    /** The ratings, in access order. */
+    private final Map<String, RatingResult> ratings;
+    /** Number of ratings taken from the cache. */
+    private long hits = 0;
+    /** Number of puzzles that had to be rated. */
+    private long misses = 0;
+    /** Number of entries that have been dropped. */
+    private long evictions = 0;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize Maximum number of entries
+     * @param settings
+     */
+    public RatingCache(int maxSize, SolverSettings settings) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.settings = settings;
+        this.maxLevel = settings.getDifficultyLevel(DifficultyType.EXTREME.ordinal());
+        ratings = new LinkedHashMap<String, RatingResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RatingResult> eldest) {
+                if (size() > RatingCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the rating of the givens of <code>sudoku</code>. If the puzzle (or an
+     * equivalent one) is not in the cache, it is rated by <code>solver</code>.
+     * <code>sudoku</code> is not changed.
+     *
+     * @param solver Used only on a miss
+     * @param sudoku
+     * @return The rating; index is 0, puzzle is the one rated on the miss
+     */
+    public RatingResult rate(SudokuSolver solver, Sudoku sudoku) {
+        String key = SudokuCanonicalizer.getCanonicalForm(sudoku);
+        synchronized (this) {
+            RatingResult rating = ratings.get(key);
+            if (rating != null) {
+                hits++;
+                return rating;
+            }
+            misses++;
+        }
+        // rate the givens as they were submitted
+        StringBuilder givens = new StringBuilder(Sudoku.LENGTH);
+        for (int i = 0; i < Sudoku.LENGTH; i++) {
+            givens.append(sudoku.isFixed(i) ? (char) ('0' + sudoku.getValue(i)) : '.');
+        }
+        String puzzle = givens.toString();
+        Sudoku tmpSudoku = new Sudoku();
+        tmpSudoku.setSudoku(puzzle);
+        boolean solved = solver.rate(maxLevel, tmpSudoku, false, settings);
+        RatingResult rating = new RatingResult(0, puzzle, solved, solver, settings);
+        synchronized (this) {
+            ratings.put(key, rating);
+        }
+        return rating;
+    }
+
+    /**
+     * Removes all entries, the statistics are kept.
+     */
+    public synchronized void clear() {
+        ratings.clear();
+    }
+
+    /**
+     * @return the settings
+     */
+    public SolverSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return the maxSize
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the current number of entries
+     */
+    public synchronized int getSize() {
+        return ratings.size();
+    }
+
+    /**
+     * @return the hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the fraction of requests that could be answered from the cache.
+     *
+     * @return 0, if the cache has not been used yet
+     */
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Statistics for log output.
+     *
+     * @return
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("RatingCache: %d/%d entries, %d hits, %d misses (%.1f%%), %d evictions",
+                ratings.size(), maxSize, hits, misses, getHitRatio() * 100, evictions);
+    }
+}
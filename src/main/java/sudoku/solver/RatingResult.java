@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+import sudoku.DifficultyLevel;
+import sudoku.SolutionType;
+
+/**
+ * The rating of one puzzle as produced by {@link BatchRater}.
+ *
+ * @author hobiwan
+ */
+public class RatingResult {
+    /** Position of the puzzle in the input (starting with 0). */
+    private final long index;
+    /** The puzzle as it was read. */
+    private final String puzzle;
+    /** <code>true</code>, if the puzzle could be solved logically. */
+    private final boolean solved;
+    /** The score of the puzzle. */
+    private final int score;
+    /** The level of the puzzle, <code>null</code> if the puzzle could not be rated. */
+    private final DifficultyLevel level;
+    /** The hardest step in the solution, <code>null</code> if the puzzle could not be rated. */
+    private final SolutionType hardestType;
+    /**
+     * Number of steps per technique (index is the ordinal of the {@link SolutionType}
+     * of the {@link sudoku.StepConfig}), <code>null</code> if the puzzle could not be rated.
+     */
+    private final int[] stepCounts;
+
+    /**
+     * Creates a new result.
+     *
+     * @param index
+     * @param puzzle
+     * @param solved
+     * @param score
+     * @param level
+     * @param hardestType
+     * @param stepCounts
+     */
+    public RatingResult(long index, String puzzle, boolean solved, int score, DifficultyLevel level, SolutionType hardestType,
+            int[] stepCounts) {
+        this.index = index;
+        this.puzzle = puzzle;
+        this.solved = solved;
+        this.score = score;
+        this.level = level;
+        this.hardestType = hardestType;
+        this.stepCounts = stepCounts;
+    }
+
+    /**
+     * Creates a result from the last run of <code>solver</code>.
+     *
+     * @param index
+     * @param puzzle
+     * @param solved
+     * @param solver
+     * @param settings The settings used by <code>solver</code>
+     */
+    RatingResult(long index, String puzzle, boolean solved, SudokuSolver solver, SolverSettings settings) {
+        this(index, puzzle, solved, solver.getScore(), solver.getLevel(), solver.getHardestType(),
+                new int[SolutionType.values().length]);
+        SolverSettings.Step[] steps = settings.getSteps();
+        int[] anzSteps = solver.getAnzSteps();
+        for (int i = 0; i < steps.length; i++) {
+            stepCounts[steps[i].getType().ordinal()] += anzSteps[i];
+        }
+    }
+
+    /**
+     * Creates a result for another puzzle with the rating of <code>rating</code>
+     * (see {@link RatingCache}).
+     *
+     * @param index
+     * @param puzzle
+     * @param rating
+     */
+    public RatingResult(long index, String puzzle, RatingResult rating) {
+        this(index, puzzle, rating.solved, rating.score, rating.level, rating.hardestType, rating.stepCounts);
+    }
+
+    /**
+     * Creates a result for a puzzle that could not be rated.
+     *
+     * @param index
+     * @param puzzle
+     */
+    public RatingResult(long index, String puzzle) {
+        this(index, puzzle, false, 0, null, null, null);
+    }
+
+    /**
+     * @return the index
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the puzzle
+     */
+    public String getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * @return the solved
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return the level
+     */
+    public DifficultyLevel getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the hardestType
+     */
+    public SolutionType getHardestType() {
+        return hardestType;
+    }
+
+    /**
+     * Gets the number of steps of one technique in the solution.
+     *
+     * @param type
+     * @return 0, if the puzzle could not be rated
+     */
+    public int getStepCount(SolutionType type) {
+        return stepCounts == null ? 0 : stepCounts[type.ordinal()];
+    }
+
+    /**
+     * One line per result: puzzle, score, level and hardest step, separated by tabs.
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        if (level == null) {
+            return puzzle + "\t-\t-\t-";
+        }
+        return puzzle + "\t" + score + "\t" + level.getName() + "\t"
+                + (hardestType != null ? hardestType.getStepName() : "-")
+                + (solved ? "" : "\t(not solved)");
+    }
+}
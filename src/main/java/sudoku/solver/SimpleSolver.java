@@ -66,6 +66,17 @@ public class SimpleSolver extends AbstractSolver {
         steps = new ArrayList<SolutionStep>();
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.FULL_HOUSE, SolutionType.HIDDEN_SINGLE, SolutionType.HIDDEN_PAIR,
+            SolutionType.HIDDEN_TRIPLE, SolutionType.HIDDEN_QUADRUPLE, SolutionType.NAKED_SINGLE,
+            SolutionType.LOCKED_PAIR, SolutionType.NAKED_PAIR, SolutionType.LOCKED_TRIPLE,
+            SolutionType.NAKED_TRIPLE, SolutionType.NAKED_QUADRUPLE, SolutionType.LOCKED_CANDIDATES,
+            SolutionType.LOCKED_CANDIDATES_1, SolutionType.LOCKED_CANDIDATES_2
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -88,6 +99,47 @@ public class SimpleSolver extends AbstractSolver {
         }
         return result;
     }
+
+    /**
+     * Finds the next single of type <code>type</code> without creating a step
+     * (used for draining singles, see {@link SudokuStepFinder#findSingle(sudoku.SolutionType)}).
+     * The queues are consumed exactly as in {@link #getStep(sudoku.SolutionType)}.
+     * @param type {@link SolutionType#FULL_HOUSE}, {@link SolutionType#NAKED_SINGLE} or {@link SolutionType#HIDDEN_SINGLE}
+     * @return <code>index << 4 | value</code> or -1, if no single exists
+     */
+    int findSingle(SolutionType type) {
+        sudoku = finder.getSudoku();
+        switch (type) {
+            case FULL_HOUSE: return findFullHouseCell();
+            case HIDDEN_SINGLE: return findHiddenSingleCell();
+            case NAKED_SINGLE: return findNakedSingleCell();
+            default: return -1;
+        }
+    }
+
+    /**
+     * Singles are reported without creating a {@link SolutionStep}.
+     * @param type
+     * @param buffer
+     * @return
+     */
+    @Override
+    protected boolean getStep(SolutionType type, StepBuffer buffer) {
+        int single;
+        sudoku = finder.getSudoku();
+        switch (type) {
+            case FULL_HOUSE: single = findFullHouseCell(); break;
+            case HIDDEN_SINGLE: single = findHiddenSingleCell(); break;
+            case NAKED_SINGLE: single = findNakedSingleCell(); break;
+            default: return super.getStep(type, buffer);
+        }
+        if (single == -1) {
+            return false;
+        }
+        buffer.reset(type);
+        buffer.addPlacement(single >> 4, single & 0xf);
+        return true;
+    }
     
     @Override
     protected boolean doStep(SolutionStep step) {
@@ -146,6 +198,10 @@ public class SimpleSolver extends AbstractSolver {
      * @return
      */
     private SolutionStep findFullHouse(boolean all) {
+        if (!all) {
+            int single = findFullHouseCell();
+            return single == -1 ? null : createSingleStep(SolutionType.FULL_HOUSE, single);
+        }
         //SudokuUtil.clearStepList(steps);
         SolutionStep step = null;
         byte[][] free = sudoku.getFree();
@@ -191,26 +247,74 @@ public class SimpleSolver extends AbstractSolver {
         return step;
     }
     
+    /**
+     * Finds the first Full House in the grid (see {@link #findFullHouse(boolean)}).
+     * @return <code>index << 4 | value</code> or -1, if no Full House exists
+     */
+    private int findFullHouseCell() {
+        byte[][] free = sudoku.getFree();
+        SudokuSinglesQueue nsQueue = sudoku.getNsQueue();
+        int queueIndex = nsQueue.getFirstIndex();
+        while (queueIndex != -1) {
+            int index = nsQueue.getIndex(queueIndex);
+            int value = nsQueue.getValue(queueIndex);
+            if (sudoku.getValue(index) == 0) {
+                for (int i = 0; i < Sudoku.CONSTRAINTS[index].length; i++) {
+                    int constr = Sudoku.CONSTRAINTS[index][i];
+                    boolean valid = true;
+                    for (int j = 1; j <= 9; j++) {
+                        if (j != value && free[constr][j] != 0) {
+                            valid = false;
+                            break;
+                        }
+                    }
+                    if (valid) {
+                        return index << 4 | value;
+                    }
+                }
+            }
+            queueIndex = nsQueue.getNextIndex();
+        }
+        return -1;
+    }
+
+    /**
+     * Creates a step for a single.
+     * @param type
+     * @param single <code>index << 4 | value</code>
+     * @return
+     */
+    static SolutionStep createSingleStep(SolutionType type, int single) {
+        SolutionStep step = new SolutionStep(type);
+        step.addValue(single & 0xf);
+        step.addIndex(single >> 4);
+        return step;
+    }
+
     /**
      * Finds the next Naked Single in the grid
      * @return
      */
     private SolutionStep findNakedSingle() {
-        SolutionStep step = null;
+        int single = findNakedSingleCell();
+        return single == -1 ? null : createSingleStep(SolutionType.NAKED_SINGLE, single);
+    }
+
+    /**
+     * Finds the next Naked Single in the grid; the single is removed from the queue.
+     * @return <code>index << 4 | value</code> or -1, if no Naked Single exists
+     */
+    private int findNakedSingleCell() {
         SudokuSinglesQueue nsQueue = sudoku.getNsQueue();
         int queueIndex = -1;
         while ((queueIndex = nsQueue.getSingle()) != -1) {
             int index = nsQueue.getIndex(queueIndex);
-            int value = nsQueue.getValue(queueIndex);
             if (sudoku.getValue(index) == 0) {
                 // cell is still a valid Naked Single
-                step = new SolutionStep(SolutionType.NAKED_SINGLE);
-                step.addValue(value);
-                step.addIndex(index);
-                break;
+                return index << 4 | nsQueue.getValue(queueIndex);
             }
         }
-        return step;
+        return -1;
     }
 
     /**
@@ -244,6 +348,28 @@ public class SimpleSolver extends AbstractSolver {
         return newList;
     }
 
+    /**
+     * Same as {@link #findAllNakedSingles()}, but no {@link SolutionStep} is
+     * created: the singles are appended to <code>singles</code> as
+     * <code>index << 4 | value</code>, in the same order.
+     * @param singles
+     * @param anz Number of entries already in <code>singles</code>
+     * @return The new number of entries in <code>singles</code>
+     */
+    int findAllNakedSingles(int[] singles, int anz) {
+        sudoku = finder.getSudoku();
+        SudokuSinglesQueue nsQueue = sudoku.getNsQueue();
+        int queueIndex = nsQueue.getFirstIndex();
+        while (queueIndex != -1) {
+            int index = nsQueue.getIndex(queueIndex);
+            if (sudoku.getValue(index) == 0) {
+                singles[anz++] = index << 4 | nsQueue.getValue(queueIndex);
+            }
+            queueIndex = nsQueue.getNextIndex();
+        }
+        return anz;
+    }
+
     /**
      * Find the next Naked Subset of size <code>anz</code>. If <code>lockedOnly</code>
      * is <code>true</code>, only Locked Subsets are found, Naked Subsets are cached.<br>
@@ -424,7 +550,16 @@ public class SimpleSolver extends AbstractSolver {
      * @return
      */
     private SolutionStep findHiddenSingle() {
-        SolutionStep step = null;
+        int single = findHiddenSingleCell();
+        return single == -1 ? null : createSingleStep(SolutionType.HIDDEN_SINGLE, single);
+    }
+
+    /**
+     * Finds the next Hidden Single in the grid; all singles up to and including
+     * the first valid cell are removed from the queue.
+     * @return <code>index << 4 | value</code> or -1, if no Hidden Single exists
+     */
+    private int findHiddenSingleCell() {
         byte[][] free = sudoku.getFree();
         SudokuSinglesQueue hsQueue = sudoku.getHsQueue();
         int queueIndex = -1;
@@ -435,16 +570,13 @@ public class SimpleSolver extends AbstractSolver {
                 // cell is still a valid Hidden Single; which constraint?
                 for (int i = 0; i < Sudoku.CONSTRAINTS[index].length; i++) {
                     if (free[Sudoku.CONSTRAINTS[index][i]][value] == 1) {
-                        step = new SolutionStep(SolutionType.HIDDEN_SINGLE);
-                        step.addValue(value);
-                        step.addIndex(index);
-                        break;
+                        return index << 4 | value;
                     }
                 }
-                break;
+                return -1;
             }
         }
-        return step;
+        return -1;
     }
 
     /**
@@ -489,6 +621,38 @@ public class SimpleSolver extends AbstractSolver {
         return newList;
     }
 
+    /**
+     * Same as {@link #findAllHiddenSingles()}, but no {@link SolutionStep} is
+     * created: the singles are appended to <code>singles</code> as
+     * <code>index << 4 | value</code>, in the same order.
+     * @param singles
+     * @param anz Number of entries already in <code>singles</code>
+     * @return The new number of entries in <code>singles</code>
+     */
+    int findAllHiddenSingles(int[] singles, int anz) {
+        sudoku = finder.getSudoku();
+        Arrays.fill(singleFound, false);
+
+        byte[][] free = sudoku.getFree();
+        SudokuSinglesQueue hsQueue = sudoku.getHsQueue();
+        int queueIndex = hsQueue.getFirstIndex();
+        while (queueIndex != -1) {
+            int index = hsQueue.getIndex(queueIndex);
+            int value = hsQueue.getValue(queueIndex);
+            if (sudoku.getValue(index) == 0 && ! singleFound[index]) {
+                for (int i = 0; i < Sudoku.CONSTRAINTS[index].length; i++) {
+                    if (free[Sudoku.CONSTRAINTS[index][i]][value] == 1) {
+                        singles[anz++] = index << 4 | value;
+                        singleFound[index] = true;
+                        break;
+                    }
+                }
+            }
+            queueIndex = hsQueue.getNextIndex();
+        }
+        return anz;
+    }
+
     /**
      * Find all Hidden Subsets in the grid.
      * @return
@@ -153,6 +153,14 @@ public class SingleDigitPatternSolver extends AbstractSolver {
         }
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.SKYSCRAPER, SolutionType.TWO_STRING_KITE, SolutionType.EMPTY_RECTANGLE,
+            SolutionType.DUAL_TWO_STRING_KITE, SolutionType.DUAL_EMPTY_RECTANGLE
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -215,10 +223,10 @@ public class SingleDigitPatternSolver extends AbstractSolver {
     protected SolutionStep findEmptyRectangle() {
         steps.clear();
         SolutionStep step = findEmptyRectangles(true);
-        if (step != null && ! Options.getInstance().isAllowDualsAndSiamese()) {
+        if (step != null && ! finder.getSettings().isAllowDualsAndSiamese()) {
             return step;
         }
-        if (steps.size() > 0 && Options.getInstance().isAllowDualsAndSiamese()) {
+        if (steps.size() > 0 && finder.getSettings().isAllowDualsAndSiamese()) {
             findDualEmptyRectangles(steps);
             Collections.sort(steps);
             return steps.get(0);
@@ -236,7 +244,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
     private SolutionStep findEmptyRectangles(boolean onlyOne) {
         for (int i = 1; i <= 9; i++) {
             SolutionStep step = findEmptyRectanglesForCandidate(i, onlyOne);
-            if (step != null && onlyOne && ! Options.getInstance().isAllowDualsAndSiamese()) {
+            if (step != null && onlyOne && ! finder.getSettings().isAllowDualsAndSiamese()) {
                 return step;
             }
         }
@@ -303,7 +311,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
                     continue;
                 }
                 erCol = erCols[i][j];
-                if (notEnoughCandidates && Options.getInstance().isAllowErsWithOnlyTwoCandidates() == false) {
+                if (notEnoughCandidates && finder.getSettings().isAllowErsWithOnlyTwoCandidates() == false) {
                     // both row and col have only one candidate -> invalid
                     continue;
                 }
@@ -312,12 +320,12 @@ public class SingleDigitPatternSolver extends AbstractSolver {
                 // a candidate, check whether it forms a conjugate pair in the respective col
                 SolutionStep step = checkEmptyRectangle(cand, i, blockCands, Sudoku.LINES[erLine], Sudoku.LINE_TEMPLATES,
                         Sudoku.COL_TEMPLATES, erCol, false, onlyOne);
-                if (onlyOne && step != null && ! Options.getInstance().isAllowDualsAndSiamese()) {
+                if (onlyOne && step != null && ! finder.getSettings().isAllowDualsAndSiamese()) {
                     return step;
                 }
                 step = checkEmptyRectangle(cand, i, blockCands, Sudoku.COLS[erCol], Sudoku.COL_TEMPLATES,
                         Sudoku.LINE_TEMPLATES, erLine, true, onlyOne);
-                if (onlyOne && step != null && ! Options.getInstance().isAllowDualsAndSiamese()) {
+                if (onlyOne && step != null && ! finder.getSettings().isAllowDualsAndSiamese()) {
                     return step;
                 }
             }
@@ -408,7 +416,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
                             globalStep.addCandidateToDelete(indexDel, cand);
                             SolutionStep step = (SolutionStep) globalStep.clone();
                             // only one elimination per conjugate pair possible
-                            if (onlyOne && ! Options.getInstance().isAllowDualsAndSiamese()) {
+                            if (onlyOne && ! finder.getSettings().isAllowDualsAndSiamese()) {
                                 return step;
                             } else {
                                 steps.add(step);
@@ -435,7 +443,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
      * @param kites All available 2-String-Kites
      */
     private void findDualEmptyRectangles(List<SolutionStep> ers) {
-        if (! Options.getInstance().isAllowDualsAndSiamese()) {
+        if (! finder.getSettings().isAllowDualsAndSiamese()) {
             // do nothing
             return;
         }
@@ -634,7 +642,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
         List<SolutionStep> newList = new ArrayList<SolutionStep>();
         steps = newList;
         findTwoStringKite(false);
-        if (Options.getInstance().isAllowDualsAndSiamese()) {
+        if (finder.getSettings().isAllowDualsAndSiamese()) {
             findDualTwoStringKites(steps);
         }
         Collections.sort(steps);
@@ -649,7 +657,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
     protected SolutionStep findTwoStringKite() {
         steps.clear();
         SolutionStep step = findTwoStringKite(true);
-        if (step != null && ! Options.getInstance().isAllowDualsAndSiamese()) {
+        if (step != null && ! finder.getSettings().isAllowDualsAndSiamese()) {
             return step;
         }
         findDualTwoStringKites(steps);
@@ -746,7 +754,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
                         // in a different color)
                         step.addFin(only2Indices[i][0], cand);
                         step.addFin(only2Indices[j][0], cand);
-                        if (onlyOne && ! Options.getInstance().isAllowDualsAndSiamese()) {
+                        if (onlyOne && ! finder.getSettings().isAllowDualsAndSiamese()) {
                             return step;
                         } else {
                             steps.add(step);
@@ -770,7 +778,7 @@ public class SingleDigitPatternSolver extends AbstractSolver {
      * @param kites All available 2-String-Kites
      */
     private void findDualTwoStringKites(List<SolutionStep> kites) {
-        if (! Options.getInstance().isAllowDualsAndSiamese()) {
+        if (! finder.getSettings().isAllowDualsAndSiamese()) {
             // do nothing
             return;
         }
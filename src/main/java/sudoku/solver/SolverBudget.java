@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+import sudoku.SolutionType;
+
+/**
+ * Limits the effort of one run of {@link SudokuSolver}: a deadline, a maximum
+ * number of search nodes or both. The run can also be cancelled from another
+ * thread ({@link #cancel()}).<br><br>
+ *
+ * The budget is checked cooperatively: the expensive solvers (tabling, fish
+ * including kraken fish, ALS chains and Death Blossom) call
+ * {@link SudokuStepFinder#checkBudget()} in their search loops, every call
+ * counts as one node. The deadline and the cancel flag are only looked at every
+ * {@link #CHECK_INTERVAL} nodes and before every technique is tried. When the
+ * tables for forcing nets are filled or expanded in parallel, the worker threads
+ * check only the deadline and the cancel flag ({@link SudokuStepFinder#checkBudgetTime()});
+ * the calling thread counts the nodes after it has joined the workers.<br><br>
+ *
+ * When the budget runs out, the search is aborted. The solver returns
+ * <code>false</code>, {@link #isExceeded()} is set and the steps found so far
+ * are kept. The time spent in every technique is recorded as well.<br><br>
+ *
+ * A budget is started by the solver ({@link #start()}) and can be reused for
+ * further runs; a cancelled budget stays cancelled.
+ *
+ * @author hobiwan
+ */
+public class SolverBudget {
+    /** Why a run was aborted. */
+    public enum Reason {
+        /** The deadline has passed. */
+        TIME,
+        /** The maximum number of nodes has been reached. */
+        NODES,
+        /** {@link SolverBudget#cancel()} was called. */
+        CANCELLED
+    }
+
+    /**
+     * Thrown inside the solvers to unwind the search; caught by {@link SudokuSolver}.
+     * No stack trace is recorded.
+     */
+    static final class ExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new exception.
+         *
+         * @param reason
+         */
+        ExceededException(Reason reason) {
+            super(reason.name(), null, false, false);
+        }
+    }
+
+    /** Deadline and cancel flag are checked every CHECK_INTERVAL nodes (power of 2). */
+    public static final int CHECK_INTERVAL = 1024;
+
+    /** Maximum time for a run in nanoseconds, 0 for no limit. */
+    private final long maxNanos;
+    /** Maximum number of nodes for a run, 0 for no limit. */
+    private final long maxNodes;
+    /** The deadline of the current run ({@link System#nanoTime()}). */
+    private long deadline;
+    /** Nodes checked in the current run. */
+    private long nodes;
+    /** Set from another thread to abort the run. */
+    private volatile boolean cancelled = false;
+    /** Why the current run was aborted, <code>null</code> if it wasn't. */
+    private volatile Reason reason = null;
+    /** The technique that was tried when the run was aborted. */
+    private volatile SolutionType exceededType = null;
+    /** The technique that is tried at the moment. */
+    private SolutionType currentType = null;
+    /** Time spent per technique in nanoseconds (index is the ordinal of the {@link SolutionType}). */
+    private final long[] nanos = new long[SolutionType.values().length];
+
+    /**
+     * Creates a new budget.
+     *
+     * @param maxMillis Maximum time for a run in milliseconds, 0 for no limit
+     * @param maxNodes Maximum number of search nodes for a run, 0 for no limit
+     */
+    public SolverBudget(long maxMillis, long maxNodes) {
+        if (maxMillis < 0 || maxNodes < 0) {
+            throw new IllegalArgumentException("negative limit: " + maxMillis + "/" + maxNodes);
+        }
+        this.maxNanos = maxMillis * 1000000L;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Starts a new run: the deadline is set, nodes, times and the outcome of the
+     * last run are reset.
+     */
+    void start() {
+        deadline = System.nanoTime() + maxNanos;
+        nodes = 0;
+        reason = null;
+        exceededType = null;
+        currentType = null;
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = 0;
+        }
+    }
+
+    /**
+     * Counts one node. Aborts the run, if the budget has run out.
+     *
+     * @throws ExceededException
+     */
+    void check() {
+        nodes++;
+        if (maxNodes > 0 && nodes > maxNodes) {
+            exceed(Reason.NODES);
+        }
+        if ((nodes & (CHECK_INTERVAL - 1)) == 0) {
+            checkTime();
+        }
+    }
+
+    /**
+     * Checks the deadline and the cancel flag. Unlike {@link #check()} this may
+     * be called by the worker threads of a parallel search.
+     *
+     * @throws ExceededException
+     */
+    void checkTime() {
+        if (cancelled) {
+            exceed(Reason.CANCELLED);
+        }
+        if (maxNanos > 0 && System.nanoTime() - deadline > 0) {
+            exceed(Reason.TIME);
+        }
+    }
+
+    /**
+     * Records the outcome and aborts the run.
+     *
+     * @param reason
+     */
+    private void exceed(Reason reason) {
+        this.exceededType = currentType;
+        this.reason = reason;
+        throw new ExceededException(reason);
+    }
+
+    /**
+     * Called by the {@link SudokuStepFinder} before a technique is tried.
+     *
+     * @param type
+     */
+    void startTechnique(SolutionType type) {
+        currentType = type;
+        checkTime();
+    }
+
+    /**
+     * Called by the {@link SudokuStepFinder} after a technique has been tried
+     * (or has been aborted).
+     *
+     * @param type
+     * @param time Time spent in nanoseconds
+     */
+    void endTechnique(SolutionType type, long time) {
+        nanos[type.ordinal()] += time;
+        currentType = null;
+    }
+
+    /**
+     * Aborts the current run as soon as possible (can be called from any thread).
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return <code>true</code>, if {@link #cancel()} has been called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return <code>true</code>, if the last run was aborted
+     */
+    public boolean isExceeded() {
+        return reason != null;
+    }
+
+    /**
+     * @return why the last run was aborted, <code>null</code> if it wasn't
+     */
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the technique that was tried when the last run was aborted
+     */
+    public SolutionType getExceededType() {
+        return exceededType;
+    }
+
+    /**
+     * @return the number of nodes checked in the last run
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the time spent in one technique during the last run.
+     *
+     * @param type
+     * @return Time in nanoseconds
+     */
+    public long getNanos(SolutionType type) {
+        return nanos[type.ordinal()];
+    }
+
+    /**
+     * Outcome and the time per technique, for log output.
+     *
+     * @return
+     */
+    @Override
+    public String toString() {
+        StringBuilder tmp = new StringBuilder();
+        tmp.append("SolverBudget: ").append(nodes).append(" nodes");
+        if (reason != null) {
+            tmp.append(", exceeded (").append(reason);
+            if (exceededType != null) {
+                tmp.append(" in ").append(exceededType.getStepName());
+            }
+            tmp.append(")");
+        }
+        SolutionType[] types = SolutionType.values();
+        for (int i = 0; i < nanos.length; i++) {
+            if (nanos[i] > 0) {
+                tmp.append(String.format("%n  %10.2fms: %s", nanos[i] / 1e6, types[i].getStepName()));
+            }
+        }
+        return tmp.toString();
+    }
+}
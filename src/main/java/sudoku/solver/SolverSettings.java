@@ -0,0 +1,507 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+import sudoku.DifficultyLevel;
+import sudoku.DifficultyType;
+import sudoku.Options;
+import sudoku.SolutionType;
+import sudoku.StepConfig;
+
+/**
+ * An immutable snapshot of all {@link Options} used by the solvers. A
+ * snapshot is taken once per solve ({@link SudokuSolver}) and handed to
+ * the {@link SudokuStepFinder}; the specialized solvers read their limits
+ * from here instead of from the (mutable, shared) {@link Options}.<br><br>
+ *
+ * Since the snapshot never changes, several solvers with different
+ * settings can run concurrently in the same JVM.
+ *
+ * @author hobiwan
+ */
+public final class SolverSettings {
+
+    /**
+     * One step in the search order of a snapshot: the values of a
+     * {@link StepConfig} at the time the snapshot was taken.
+     */
+    public static final class Step {
+        /** The technique. */
+        private final SolutionType type;
+        /** <code>true</code>, if the step is tried in this search order. */
+        private final boolean enabled;
+        /** Score for every instance of the step. */
+        private final int baseScore;
+        /** The difficulty level of the step. */
+        private final DifficultyLevel level;
+
+        /**
+         * Creates a step.
+         *
+         * @param config
+         * @param enabled
+         * @param levels
+         */
+        private Step(StepConfig config, boolean enabled, DifficultyLevel[] levels) {
+            this.type = config.getType();
+            this.enabled = enabled;
+            this.baseScore = config.getBaseScore();
+            this.level = levels[config.getLevel()];
+        }
+
+        /**
+         * @return the type
+         */
+        public SolutionType getType() {
+            return type;
+        }
+
+        /**
+         * @return the enabled
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * @return the baseScore
+         */
+        public int getBaseScore() {
+            return baseScore;
+        }
+
+        /**
+         * @return the level
+         */
+        public DifficultyLevel getLevel() {
+            return level;
+        }
+    }
+
+    /** The steps in solving order. */
+    private final Step[] steps;
+    /** The steps in the order used for progress scores (see {@link Options#solverStepsProgress}). */
+    private final Step[] progressSteps;
+    /** The base score for every {@link SolutionType} (index is the ordinal). */
+    private final int[] baseScores;
+    /** The difficulty levels by ordinal (see {@link Options#getDifficultyLevel(int)}). */
+    private final DifficultyLevel[] difficultyLevels;
+
+    // fish
+    private final boolean allowDualsAndSiamese;
+    private final boolean onlyOneFishPerStep;
+    private final boolean checkTemplates;
+    private final boolean templatesParallel;
+    private final int maxFins;
+    private final int maxEndoFins;
+    private final int krakenMaxFishType;
+    private final int krakenMaxFishSize;
+    private final int maxKrakenFins;
+    private final int maxKrakenEndoFins;
+    private final boolean fishParallel;
+    // single digit patterns and uniqueness
+    private final boolean allowErsWithOnlyTwoCandidates;
+    private final boolean allowUniquenessMissingCandidates;
+    // chains and tabling
+    private final boolean restrictChainSize;
+    private final int restrictChainLength;
+    private final int restrictNiceLoopLength;
+    private final boolean onlyOneChainPerStep;
+    private final boolean allowAlsInTablingChains;
+    private final int maxTableEntryLength;
+    private final int anzTableLookAhead;
+    private final boolean tablingParallel;
+    // ALS
+    private final boolean allowAlsOverlap;
+    private final boolean onlyOneAlsPerStep;
+    private final boolean allStepsAlsChainForwardOnly;
+    private final int allStepsAlsChainLength;
+    private final boolean alsRcParallel;
+    private final boolean alsIncremental;
+
+    /**
+     * Takes a snapshot of <code>options</code>, the steps are taken
+     * from {@link Options#solverSteps}.
+     *
+     * @param options
+     */
+    public SolverSettings(Options options) {
+        this(options, options.solverSteps);
+    }
+
+    /**
+     * Takes a snapshot of <code>options</code> with a custom search
+     * order. If <code>solverSteps</code> is {@link Options#solverStepsProgress},
+     * {@link StepConfig#isEnabledProgress()} decides, which steps are used.
+     *
+     * @param options
+     * @param solverSteps The steps in solving order
+     */
+    public SolverSettings(Options options, StepConfig[] solverSteps) {
+        // the level objects are shared, they are compared by identity in some places
+        DifficultyLevel[] levels = options.getDifficultyLevels().clone();
+        StepConfig[] progress = options.solverStepsProgress;
+        progressSteps = new Step[progress.length];
+        for (int i = 0; i < progressSteps.length; i++) {
+            progressSteps[i] = new Step(progress[i], progress[i].isEnabledProgress(), levels);
+        }
+        if (solverSteps == progress) {
+            steps = progressSteps;
+        } else {
+            steps = new Step[solverSteps.length];
+            for (int i = 0; i < steps.length; i++) {
+                steps[i] = new Step(solverSteps[i], solverSteps[i].isEnabled(), levels);
+            }
+        }
+        // types without StepConfig get the score of the step they belong to
+        SolutionType[] types = SolutionType.values();
+        baseScores = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            StepConfig config = types[i].getStepConfig();
+            if (config == null) {
+                continue;
+            }
+            baseScores[i] = config.getBaseScore();
+            for (int j = 0; j < steps.length; j++) {
+                if (steps[j].type == config.getType()) {
+                    baseScores[i] = steps[j].baseScore;
+                    break;
+                }
+            }
+        }
+        difficultyLevels = new DifficultyLevel[DifficultyType.values().length];
+        for (int i = 0; i < difficultyLevels.length; i++) {
+            difficultyLevels[i] = options.getDifficultyLevel(i);
+        }
+
+        allowDualsAndSiamese = options.isAllowDualsAndSiamese();
+        onlyOneFishPerStep = options.isOnlyOneFishPerStep();
+        checkTemplates = options.isCheckTemplates();
+        templatesParallel = options.isTemplatesParallel();
+        maxFins = options.getMaxFins();
+        maxEndoFins = options.getMaxEndoFins();
+        krakenMaxFishType = options.getKrakenMaxFishType();
+        krakenMaxFishSize = options.getKrakenMaxFishSize();
+        maxKrakenFins = options.getMaxKrakenFins();
+        maxKrakenEndoFins = options.getMaxKrakenEndoFins();
+        fishParallel = options.isFishParallel();
+        allowErsWithOnlyTwoCandidates = options.isAllowErsWithOnlyTwoCandidates();
+        allowUniquenessMissingCandidates = options.isAllowUniquenessMissingCandidates();
+        restrictChainSize = options.isRestrictChainSize();
+        restrictChainLength = options.getRestrictChainLength();
+        restrictNiceLoopLength = options.getRestrictNiceLoopLength();
+        onlyOneChainPerStep = options.isOnlyOneChainPerStep();
+        allowAlsInTablingChains = options.isAllowAlsInTablingChains();
+        maxTableEntryLength = options.getMaxTableEntryLength();
+        anzTableLookAhead = options.getAnzTableLookAhead();
+        tablingParallel = options.isTablingParallel();
+        allowAlsOverlap = options.isAllowAlsOverlap();
+        onlyOneAlsPerStep = options.isOnlyOneAlsPerStep();
+        allStepsAlsChainForwardOnly = options.isAllStepsAlsChainForwardOnly();
+        allStepsAlsChainLength = options.getAllStepsAlsChainLength();
+        alsRcParallel = options.isAlsRcParallel();
+        alsIncremental = options.isAlsIncremental();
+    }
+
+    /**
+     * Copies <code>src</code>, all searches that could be split over
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()} are done
+     * sequentially (see {@link #withoutParallelSearch()}).
+     *
+     * @param src
+     */
+    private SolverSettings(SolverSettings src) {
+        steps = src.steps;
+        progressSteps = src.progressSteps;
+        baseScores = src.baseScores;
+        difficultyLevels = src.difficultyLevels;
+
+        allowDualsAndSiamese = src.allowDualsAndSiamese;
+        onlyOneFishPerStep = src.onlyOneFishPerStep;
+        checkTemplates = src.checkTemplates;
+        templatesParallel = false;
+        maxFins = src.maxFins;
+        maxEndoFins = src.maxEndoFins;
+        krakenMaxFishType = src.krakenMaxFishType;
+        krakenMaxFishSize = src.krakenMaxFishSize;
+        maxKrakenFins = src.maxKrakenFins;
+        maxKrakenEndoFins = src.maxKrakenEndoFins;
+        fishParallel = false;
+        allowErsWithOnlyTwoCandidates = src.allowErsWithOnlyTwoCandidates;
+        allowUniquenessMissingCandidates = src.allowUniquenessMissingCandidates;
+        restrictChainSize = src.restrictChainSize;
+        restrictChainLength = src.restrictChainLength;
+        restrictNiceLoopLength = src.restrictNiceLoopLength;
+        onlyOneChainPerStep = src.onlyOneChainPerStep;
+        allowAlsInTablingChains = src.allowAlsInTablingChains;
+        maxTableEntryLength = src.maxTableEntryLength;
+        anzTableLookAhead = src.anzTableLookAhead;
+        tablingParallel = false;
+        allowAlsOverlap = src.allowAlsOverlap;
+        onlyOneAlsPerStep = src.onlyOneAlsPerStep;
+        allStepsAlsChainForwardOnly = src.allStepsAlsChainForwardOnly;
+        allStepsAlsChainLength = src.allStepsAlsChainLength;
+        alsRcParallel = false;
+        alsIncremental = src.alsIncremental;
+    }
+
+    /**
+     * Gets settings for solvers that run concurrently on their own threads
+     * (e.g. {@link BatchRater}): the same settings, but no search is split over
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()} (tabling, fish, RCs
+     * between ALS and templates). The results are the same.
+     *
+     * @return <code>this</code>, if no parallel search is enabled, else a copy
+     */
+    public SolverSettings withoutParallelSearch() {
+        if (!templatesParallel && !fishParallel && !tablingParallel && !alsRcParallel) {
+            return this;
+        }
+        return new SolverSettings(this);
+    }
+
+    /**
+     * The steps in solving order. The array must not be changed.
+     *
+     * @return
+     */
+    Step[] getSteps() {
+        return steps;
+    }
+
+    /**
+     * The steps in the order for progress scores. The array must not be changed.
+     *
+     * @return
+     */
+    Step[] getProgressSteps() {
+        return progressSteps;
+    }
+
+    /**
+     * Gets the base score of a technique (types that don't have a {@link StepConfig}
+     * are mapped as in {@link SolutionType#getStepConfig()}).
+     *
+     * @param type
+     * @return
+     */
+    public int getBaseScore(SolutionType type) {
+        return baseScores[type.ordinal()];
+    }
+
+    /**
+     * Find a {@link DifficultyLevel} via its ordinal.
+     *
+     * @param ordinal
+     * @return
+     */
+    public DifficultyLevel getDifficultyLevel(int ordinal) {
+        return difficultyLevels[ordinal];
+    }
+
+    /**
+     * @return the allowDualsAndSiamese
+     */
+    public boolean isAllowDualsAndSiamese() {
+        return allowDualsAndSiamese;
+    }
+
+    /**
+     * @return the onlyOneFishPerStep
+     */
+    public boolean isOnlyOneFishPerStep() {
+        return onlyOneFishPerStep;
+    }
+
+    /**
+     * @return the checkTemplates
+     */
+    public boolean isCheckTemplates() {
+        return checkTemplates;
+    }
+
+    /**
+     * @return the templatesParallel
+     */
+    public boolean isTemplatesParallel() {
+        return templatesParallel;
+    }
+
+    /**
+     * @return the maxFins
+     */
+    public int getMaxFins() {
+        return maxFins;
+    }
+
+    /**
+     * @return the maxEndoFins
+     */
+    public int getMaxEndoFins() {
+        return maxEndoFins;
+    }
+
+    /**
+     * @return the krakenMaxFishType
+     */
+    public int getKrakenMaxFishType() {
+        return krakenMaxFishType;
+    }
+
+    /**
+     * @return the krakenMaxFishSize
+     */
+    public int getKrakenMaxFishSize() {
+        return krakenMaxFishSize;
+    }
+
+    /**
+     * @return the maxKrakenFins
+     */
+    public int getMaxKrakenFins() {
+        return maxKrakenFins;
+    }
+
+    /**
+     * @return the maxKrakenEndoFins
+     */
+    public int getMaxKrakenEndoFins() {
+        return maxKrakenEndoFins;
+    }
+
+    /**
+     * @return the fishParallel
+     */
+    public boolean isFishParallel() {
+        return fishParallel;
+    }
+
+    /**
+     * @return the allowErsWithOnlyTwoCandidates
+     */
+    public boolean isAllowErsWithOnlyTwoCandidates() {
+        return allowErsWithOnlyTwoCandidates;
+    }
+
+    /**
+     * @return the allowUniquenessMissingCandidates
+     */
+    public boolean isAllowUniquenessMissingCandidates() {
+        return allowUniquenessMissingCandidates;
+    }
+
+    /**
+     * @return the restrictChainSize
+     */
+    public boolean isRestrictChainSize() {
+        return restrictChainSize;
+    }
+
+    /**
+     * @return the restrictChainLength
+     */
+    public int getRestrictChainLength() {
+        return restrictChainLength;
+    }
+
+    /**
+     * @return the restrictNiceLoopLength
+     */
+    public int getRestrictNiceLoopLength() {
+        return restrictNiceLoopLength;
+    }
+
+    /**
+     * @return the onlyOneChainPerStep
+     */
+    public boolean isOnlyOneChainPerStep() {
+        return onlyOneChainPerStep;
+    }
+
+    /**
+     * @return the allowAlsInTablingChains
+     */
+    public boolean isAllowAlsInTablingChains() {
+        return allowAlsInTablingChains;
+    }
+
+    /**
+     * @return the maxTableEntryLength
+     */
+    public int getMaxTableEntryLength() {
+        return maxTableEntryLength;
+    }
+
+    /**
+     * @return the anzTableLookAhead
+     */
+    public int getAnzTableLookAhead() {
+        return anzTableLookAhead;
+    }
+
+    /**
+     * @return the tablingParallel
+     */
+    public boolean isTablingParallel() {
+        return tablingParallel;
+    }
+
+    /**
+     * @return the allowAlsOverlap
+     */
+    public boolean isAllowAlsOverlap() {
+        return allowAlsOverlap;
+    }
+
+    /**
+     * @return the onlyOneAlsPerStep
+     */
+    public boolean isOnlyOneAlsPerStep() {
+        return onlyOneAlsPerStep;
+    }
+
+    /**
+     * @return the allStepsAlsChainForwardOnly
+     */
+    public boolean isAllStepsAlsChainForwardOnly() {
+        return allStepsAlsChainForwardOnly;
+    }
+
+    /**
+     * @return the allStepsAlsChainLength
+     */
+    public int getAllStepsAlsChainLength() {
+        return allStepsAlsChainLength;
+    }
+
+    /**
+     * @return the alsRcParallel
+     */
+    public boolean isAlsRcParallel() {
+        return alsRcParallel;
+    }
+
+    /**
+     * @return the alsIncremental
+     */
+    public boolean isAlsIncremental() {
+        return alsIncremental;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+import sudoku.SolutionStep;
+import sudoku.SolutionType;
+import sudoku.Sudoku;
+
+/**
+ * A reusable record of the effect of one step: the cells that are set and
+ * the candidates that are deleted, stored in primitive arrays. Used by the
+ * score-only mode of {@link SudokuSolver} (see
+ * {@link SudokuSolver#rate(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, sudoku.solver.SolverSettings)}),
+ * where no {@link SolutionStep} is kept.<br><br>
+ *
+ * Solvers that can report a technique without creating a {@link SolutionStep}
+ * override {@link AbstractSolver#getStep(sudoku.SolutionType, sudoku.solver.StepBuffer)};
+ * for all others the step itself is stored in the buffer and executed by its solver.
+ *
+ * @author hobiwan
+ */
+public class StepBuffer {
+    /** The type of the step. */
+    private SolutionType type;
+    /** The step, if the solver could not fill the arrays. */
+    private SolutionStep step;
+    /** Cells that are set. */
+    private final int[] setIndices = new int[Sudoku.LENGTH];
+    /** Values for the cells in {@link #setIndices}. */
+    private final int[] setValues = new int[Sudoku.LENGTH];
+    /** Number of entries in {@link #setIndices}. */
+    private int setAnz;
+    /** Cells of all candidates that are deleted. */
+    private final int[] delIndices = new int[Sudoku.LENGTH * 9];
+    /** Candidates that are deleted (synchronized with {@link #delIndices}). */
+    private final int[] delValues = new int[Sudoku.LENGTH * 9];
+    /** Number of entries in {@link #delIndices}. */
+    private int delAnz;
+
+    /**
+     * Clears the buffer for a new step.
+     *
+     * @param type
+     */
+    public void reset(SolutionType type) {
+        this.type = type;
+        step = null;
+        setAnz = 0;
+        delAnz = 0;
+    }
+
+    /**
+     * Stores a step that has been found by a solver without support for
+     * the buffer.
+     *
+     * @param step
+     */
+    public void setStep(SolutionStep step) {
+        reset(step.getType());
+        this.step = step;
+    }
+
+    /**
+     * Records that <code>value</code> is placed in cell <code>index</code>.
+     *
+     * @param index
+     * @param value
+     */
+    public void addPlacement(int index, int value) {
+        setIndices[setAnz] = index;
+        setValues[setAnz++] = value;
+    }
+
+    /**
+     * Records that candidate <code>value</code> is deleted in cell <code>index</code>.
+     *
+     * @param index
+     * @param value
+     */
+    public void addDeletion(int index, int value) {
+        delIndices[delAnz] = index;
+        delValues[delAnz++] = value;
+    }
+
+    /**
+     * Applies placements and deletions to <code>sudoku</code>. Must not be called,
+     * if the buffer holds a {@link SolutionStep}.
+     *
+     * @param sudoku
+     */
+    void apply(Sudoku sudoku) {
+        for (int i = 0; i < setAnz; i++) {
+            sudoku.setCell(setIndices[i], setValues[i]);
+        }
+        for (int i = 0; i < delAnz; i++) {
+            sudoku.delCandidate(delIndices[i], delValues[i]);
+        }
+    }
+
+    /**
+     * @return the type
+     */
+    public SolutionType getType() {
+        return type;
+    }
+
+    /**
+     * @return the step, <code>null</code> if placements and deletions are stored in the buffer
+     */
+    public SolutionStep getStep() {
+        return step;
+    }
+
+    /**
+     * @return the number of placements
+     */
+    public int getSetAnz() {
+        return setAnz;
+    }
+
+    /**
+     * @return the number of deletions
+     */
+    public int getDelAnz() {
+        return delAnz;
+    }
+}
@@ -25,6 +25,7 @@ import java.io.BufferedWriter;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,6 +41,12 @@ public class SudokuSolver {
     private DifficultyLevel level = Options.getInstance().getDifficultyLevel(DifficultyType.EXTREME.ordinal());
     private DifficultyLevel maxLevel = Options.getInstance().getDifficultyLevel(DifficultyType.EXTREME.ordinal());
     private int score;
+    /** The hardest step found in the last run (highest level, then highest base score). */
+    private SolverSettings.Step hardestStep = null;
+    /** The type of the step in {@link #hardestStep} (can be a variant of the configured type). */
+    private SolutionType hardestType = null;
+    /** Reusable buffer for score-only mode (see {@link #rate(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, sudoku.solver.SolverSettings)}). */
+    private StepBuffer stepBuffer = null;
     private int[] anzSteps = new int[Options.getInstance().solverSteps.length];
     private int[] anzStepsProgress = new int[Options.getInstance().solverSteps.length];
     private long[] stepsNanoTime = new long[Options.getInstance().solverSteps.length];
@@ -200,9 +207,122 @@ public class SudokuSolver {
     // TODO: 2019-07-06
 //    public boolean solve(DifficultyLevel maxLevel, Sudoku tmpSudoku, boolean rejectTooLowScore, final SolverProgressDialog dlg, boolean singlesOnly, StepConfig[] stepConfigs,
     public boolean solve(DifficultyLevel maxLevel, Sudoku tmpSudoku, boolean rejectTooLowScore, boolean singlesOnly, StepConfig[] stepConfigs) {
+        return solve(maxLevel, tmpSudoku, rejectTooLowScore, singlesOnly, new SolverSettings(Options.getInstance(), stepConfigs));
+    }
+
+    /**
+     * Solves the sudoku with a fixed set of {@link SolverSettings} (see
+     * {@link #solve(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, boolean, sudoku.StepConfig[])}).
+     * The settings are used for the whole run, changes in {@link Options}
+     * don't affect it.
+     *
+     * @param maxLevel
+     * @param tmpSudoku
+     * @param rejectTooLowScore
+     * @param singlesOnly
+     * @param settings
+     * @return
+     */
+    public boolean solve(DifficultyLevel maxLevel, Sudoku tmpSudoku, boolean rejectTooLowScore, boolean singlesOnly, SolverSettings settings) {
+        return solve(maxLevel, tmpSudoku, rejectTooLowScore, singlesOnly, settings, null);
+    }
+
+    /**
+     * Solves the sudoku with a fixed set of {@link SolverSettings} and a limit
+     * for the effort. If the budget runs out (or is cancelled from another thread),
+     * the search is aborted: <code>false</code> is returned, {@link SolverBudget#isExceeded()}
+     * is set and {@link #getSteps()}, score and level hold the steps found so far.
+     *
+     * @param maxLevel
+     * @param tmpSudoku
+     * @param rejectTooLowScore
+     * @param singlesOnly
+     * @param settings
+     * @param budget <code>null</code> for no limit
+     * @return
+     */
+    public boolean solve(DifficultyLevel maxLevel, Sudoku tmpSudoku, boolean rejectTooLowScore, boolean singlesOnly,
+            SolverSettings settings, SolverBudget budget) {
         if (tmpSudoku != null) {
             setSudoku(tmpSudoku);
         }
+        getStepFinder().setSettings(settings);
+        startBudget(budget);
+        try {
+            return solve(maxLevel, rejectTooLowScore, singlesOnly, settings, null);
+        } finally {
+            getStepFinder().setBudget(null);
+            getStepFinder().setSettings(null);
+        }
+    }
+
+    /**
+     * Score-only mode: rates the sudoku like {@link #solve(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, boolean, sudoku.solver.SolverSettings)},
+     * but no {@link SolutionStep} is kept (see {@link StepBuffer}). Score, level,
+     * hardest step and step counters are the same, {@link #getSteps()} is empty afterwards.
+     *
+     * @param maxLevel
+     * @param tmpSudoku
+     * @param rejectTooLowScore
+     * @param settings
+     * @return
+     */
+    public boolean rate(DifficultyLevel maxLevel, Sudoku tmpSudoku, boolean rejectTooLowScore, SolverSettings settings) {
+        return rate(maxLevel, tmpSudoku, rejectTooLowScore, settings, null);
+    }
+
+    /**
+     * Score-only mode with a limit for the effort (see
+     * {@link #solve(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, boolean, sudoku.solver.SolverSettings, sudoku.solver.SolverBudget)}).
+     *
+     * @param maxLevel
+     * @param tmpSudoku
+     * @param rejectTooLowScore
+     * @param settings
+     * @param budget <code>null</code> for no limit
+     * @return
+     */
+    public boolean rate(DifficultyLevel maxLevel, Sudoku tmpSudoku, boolean rejectTooLowScore, SolverSettings settings,
+            SolverBudget budget) {
+        if (tmpSudoku != null) {
+            setSudoku(tmpSudoku);
+        }
+        if (stepBuffer == null) {
+            stepBuffer = new StepBuffer();
+        }
+        getStepFinder().setSettings(settings);
+        startBudget(budget);
+        try {
+            return solve(maxLevel, rejectTooLowScore, false, settings, stepBuffer);
+        } finally {
+            getStepFinder().setBudget(null);
+            getStepFinder().setSettings(null);
+        }
+    }
+
+    /**
+     * Starts <code>budget</code> and hands it to the {@link SudokuStepFinder}.
+     *
+     * @param budget
+     */
+    private void startBudget(SolverBudget budget) {
+        if (budget != null) {
+            budget.start();
+        }
+        getStepFinder().setBudget(budget);
+    }
+
+    /**
+     * The main loop of {@link #solve(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, boolean, sudoku.solver.SolverSettings)}.
+     *
+     * @param maxLevel
+     * @param rejectTooLowScore
+     * @param singlesOnly
+     * @param settings
+     * @param buffer If not <code>null</code>, the steps are recorded in the buffer and not kept (score-only mode)
+     * @return
+     */
+    private boolean solve(DifficultyLevel maxLevel, boolean rejectTooLowScore, boolean singlesOnly, SolverSettings settings, StepBuffer buffer) {
 //        System.out.println("        Solver started (" + maxLevel.getName() + "/" + 
 //                rejectTooLowScore + "/" + singlesOnly + "/" + gameMode.name() + ")!");
 
@@ -219,7 +339,9 @@ public class SudokuSolver {
 
         this.maxLevel = maxLevel;
         score = 0;
-        level = Options.getInstance().getDifficultyLevel(DifficultyType.EASY.ordinal());
+        level = settings.getDifficultyLevel(DifficultyType.EASY.ordinal());
+        hardestStep = null;
+        hardestType = null;
 
         //SudokuUtil.clearStepList(steps);
         SolutionStep step = null;
@@ -231,32 +353,54 @@ public class SudokuSolver {
         boolean acceptAnyway = false;
 //        System.out.println("Start solving (" + gameMode + ")!");
 
-        do {
-            // show progress if progress dialog is enabled
+        int[] singleSteps = getLeadingSingles(settings.getSteps(), singlesOnly);
+        try {
+            if (buffer != null) {
+                // score-only: the steps are executed but not kept
+                while (drainSingles(settings.getSteps(), singleSteps, acceptAnyway, null)
+                        && getHint(singlesOnly, settings.getSteps(), acceptAnyway, buffer)) {
+                    getStepFinder().doStep(buffer);
+                    if (buffer.getType() == SolutionType.GIVE_UP) {
+                        break;
+                    }
+                }
+            } else {
+                do {
+                    if (!drainSingles(settings.getSteps(), singleSteps, acceptAnyway, steps)) {
+                        break;
+                    }
+                    // show progress if progress dialog is enabled
 //            if (dlg != null) {
 //                dlg.setProgressState(sudoku.getUnsolvedCellsAnz(), sudoku.getUnsolvedCandidatesAnz());
 //            }
 
-            // jetzt eine Methode nach der anderen, aber immer nur einmal; wenn etwas gefunden wurde continue
-            step = getHint(singlesOnly, stepConfigs, acceptAnyway);
-            if (step != null) {
+                    // jetzt eine Methode nach der anderen, aber immer nur einmal; wenn etwas gefunden wurde continue
+                    step = getHint(singlesOnly, settings.getSteps(), acceptAnyway);
+                    if (step != null) {
 //                System.out.println("Step: " + step.toString(2));
-                //System.out.println(sudoku.getSudoku(ClipboardMode.LIBRARY, step));
-                if (GameMode.PLAYING != GameMode.PLAYING && step.getType().getStepConfig().isEnabledTraining()) {
+                        //System.out.println(sudoku.getSudoku(ClipboardMode.LIBRARY, step));
+                        if (GameMode.PLAYING != GameMode.PLAYING && step.getType().getStepConfig().isEnabledTraining()) {
 //                    System.out.println("        acceptAnyway = true!");
-                    acceptAnyway = true;
-                }
-                steps.add(step);
-                getStepFinder().doStep(step);
-                if (step.getType() == SolutionType.GIVE_UP) {
-                    step = null;
-                }
+                            acceptAnyway = true;
+                        }
+                        steps.add(step);
+                        getStepFinder().doStep(step);
+                        if (step.getType() == SolutionType.GIVE_UP) {
+                            step = null;
+                        }
+                    }
+                } while (step != null);
             }
-        } while (step != null);
+        } catch (SolverBudget.ExceededException ex) {
+            // budget has run out: keep the steps found so far
+            sudoku.setScore(score);
+            sudoku.setLevel(settings.getDifficultyLevel(DifficultyType.EXTREME.ordinal()));
+            return false;
+        }
         // wenn der Score größer als der MaxScore der aktuellen Stufe, dann wird das
         // Puzzle höhergestuft.
         while (score > level.getMaxScore()) {
-            level = Options.getInstance().getDifficultyLevel(level.getOrdinal() + 1);
+            level = settings.getDifficultyLevel(level.getOrdinal() + 1);
         }
         // Puzzle zu schwer -> ungültig
         if (level.getOrdinal() > maxLevel.getOrdinal() && acceptAnyway == false) {
@@ -267,7 +411,7 @@ public class SudokuSolver {
         // als der MaxScore einer geringeren Stufe
         if (rejectTooLowScore && level.getOrdinal() > DifficultyType.EASY.ordinal() && acceptAnyway == false) {
 
-            if (score < Options.getInstance().getDifficultyLevel(level.getOrdinal() - 1).getMaxScore()) {
+            if (score < settings.getDifficultyLevel(level.getOrdinal() - 1).getMaxScore()) {
 //                System.out.println("        rejected: score too low");
                 return false;
             }
@@ -278,7 +422,7 @@ public class SudokuSolver {
 //            System.out.println("        puzzle accepted!");
             return true;
         } else {
-            sudoku.setLevel(Options.getInstance().getDifficultyLevel(DifficultyType.EXTREME.ordinal()));
+            sudoku.setLevel(settings.getDifficultyLevel(DifficultyType.EXTREME.ordinal()));
 //            System.out.println("        rejected: puzzle not solved!");
             return false;
         }
@@ -307,8 +451,9 @@ public class SudokuSolver {
             // avoid exceptions
             delta = 1;
         }
-        boolean oldCheckTemplates = Options.getInstance().isCheckTemplates();
-        Options.getInstance().setCheckTemplates(false);
+        // only for this solver: the options are shared by all solvers
+        boolean oldCheckTemplates = stepFinder.isCheckTemplates();
+        stepFinder.setCheckTemplates(false);
         long nanos = System.nanoTime();
         Sudoku workingSudoku = tmpSudoku.clone();
         for (int i = 0; i < stepsTocheck.size(); i++) {
@@ -322,7 +467,7 @@ public class SudokuSolver {
 //            }
 
         }
-        Options.getInstance().setCheckTemplates(oldCheckTemplates);
+        stepFinder.setCheckTemplates(oldCheckTemplates);
         workingSudoku = null;
         nanos = System.nanoTime() - nanos;
 //        System.out.println("getProgressScore(): " + (nanos / 1000000) + "ms (" + steps.size() + ")");
@@ -350,6 +495,7 @@ public class SudokuSolver {
     public void getProgressScore(Sudoku tmpSudoku, SolutionStep orgStep) {
         Sudoku save = this.sudoku;
         setSudoku(tmpSudoku);
+        SolverSettings settings = getStepFinder().getSettings();
 //        System.out.println("getProgressScore start: " + tmpSudoku.getSudoku(ClipboardMode.LIBRARY));
 //        System.out.println("   Step = " + orgStep.toString(2));
 
@@ -374,7 +520,7 @@ public class SudokuSolver {
         SolutionStep step = null;
         do {
             // jetzt eine Methode nach der anderen, aber immer nur einmal; wenn etwas gefunden wurde continue
-            step = getHint(false, Options.getInstance().solverStepsProgress, false);
+            step = getHint(false, settings.getProgressSteps(), false);
             if (step != null) {
 //                System.out.println("   step = " + step.toString(2));
 //                System.out.println("       " + tmpSudoku.getSudoku(ClipboardMode.LIBRARY));
@@ -386,7 +532,7 @@ public class SudokuSolver {
                 } else {
                     direct = false;
                 }
-                progressScore += step.getType().getStepConfig().getBaseScore();
+                progressScore += settings.getBaseScore(step.getType());
                 //System.out.println("        " + step);
                 getStepFinder().doStep(step);
                 if (step.getType() == SolutionType.GIVE_UP) {
@@ -413,28 +559,40 @@ public class SudokuSolver {
      * @return
      */
     public SolutionStep getHint(Sudoku sudoku, boolean singlesOnly) {
-        Sudoku save = this.sudoku;
-        DifficultyLevel oldMaxLevel = maxLevel;
-        DifficultyLevel oldLevel = level;
-        maxLevel = Options.getInstance().getDifficultyLevel(DifficultyType.EXTREME.ordinal());
-        level = Options.getInstance().getDifficultyLevel(DifficultyType.EASY.ordinal());
-        setSudoku(sudoku);
-        SolutionStep step = getHint(singlesOnly);
-        maxLevel = oldMaxLevel;
-        level = oldLevel;
-        setSudoku(save);
-        return step;
+        return getHint(sudoku, singlesOnly, null);
     }
 
     /**
-     * Get the next logical step for the internal sudoku. If <code>singlesOnly</code>
-     * is set, only singles are tried.
+     * Same as {@link #getHint(sudoku.Sudoku, boolean)}, but with a limit for the
+     * effort: if the budget runs out, <code>null</code> is returned and
+     * {@link SolverBudget#isExceeded()} is set.
      *
+     * @param sudoku
      * @param singlesOnly
+     * @param budget <code>null</code> for no limit
      * @return
      */
-    private SolutionStep getHint(boolean singlesOnly) {
-        return getHint(singlesOnly, Options.getInstance().solverSteps, false);
+    public SolutionStep getHint(Sudoku sudoku, boolean singlesOnly, SolverBudget budget) {
+        Sudoku save = this.sudoku;
+        DifficultyLevel oldMaxLevel = maxLevel;
+        DifficultyLevel oldLevel = level;
+        setSudoku(sudoku);
+        SolverSettings settings = getStepFinder().getSettings();
+        maxLevel = settings.getDifficultyLevel(DifficultyType.EXTREME.ordinal());
+        level = settings.getDifficultyLevel(DifficultyType.EASY.ordinal());
+        startBudget(budget);
+        SolutionStep step = null;
+        try {
+            step = getHint(singlesOnly, settings.getSteps(), false);
+        } catch (SolverBudget.ExceededException ex) {
+            // budget has run out: no hint
+        } finally {
+            getStepFinder().setBudget(null);
+            maxLevel = oldMaxLevel;
+            level = oldLevel;
+            setSudoku(save);
+        }
+        return step;
     }
 
     /**
@@ -451,7 +609,7 @@ public class SudokuSolver {
      * @param acceptAnyway
      * @return
      */
-    private SolutionStep getHint(boolean singlesOnly, StepConfig[] solverSteps,
+    private SolutionStep getHint(boolean singlesOnly, SolverSettings.Step[] solverSteps,
                                  boolean acceptAnyway) {
         if (sudoku.isSolved()) {
             return null;
@@ -460,15 +618,9 @@ public class SudokuSolver {
         //System.out.println("  sudoku: " + getStepFinder().getSudoku().getSudoku(ClipboardMode.VALUES_ONLY));
 
         for (int i = 0; i < solverSteps.length; i++) {
-            if (solverSteps == Options.getInstance().solverStepsProgress) {
-                if (solverSteps[i].isEnabledProgress() == false) {
-                    continue;
-                }
-            } else {
-                if (solverSteps[i].isEnabled() == false) {
-                    // diesen Schritt nicht ausführen
-                    continue;
-                }
+            if (solverSteps[i].isEnabled() == false) {
+                // diesen Schritt nicht ausführen
+                continue;
             }
             SolutionType type = solverSteps[i].getType();
             if (singlesOnly &&
@@ -476,33 +628,175 @@ public class SudokuSolver {
                             type != SolutionType.FULL_HOUSE)) {
                 continue;
             }
-            Logger.getLogger(getClass().getName()).log(Level.FINER, "trying {0}: ", SolutionStep.getStepName(type));
+            Logger logger = Logger.getLogger(getClass().getName());
+            boolean finer = logger.isLoggable(Level.FINER);
+            if (finer) {
+                logger.log(Level.FINER, "trying {0}: ", SolutionStep.getStepName(type));
+            }
             long nanos = System.nanoTime();
             hint = getStepFinder().getStep(type);
             nanos = System.nanoTime() - nanos;
-            Logger.getLogger(getClass().getName()).log(Level.FINER, "{0}ms ({1})", new Object[]{nanos / 1000, hint != null ? hint.toString(2) : "-"});
+            if (finer) {
+                logger.log(Level.FINER, "{0}ms ({1})", new Object[]{nanos / 1000, hint != null ? hint.toString(2) : "-"});
+            }
 //            if (nanos > 20000) {
 //                Logger.getLogger(getClass().getName()).log(Level.FINE, "trying {0}: {1}ms", new Object[]{SolutionStep.getStepName(type), nanos});
 //            }
             anzStepsProgress[i]++;
             stepsNanoTime[i] += nanos;
             if (hint != null) {
-                anzSteps[i]++;
-                score += solverSteps[i].getBaseScore();
-                if (Options.getInstance().getDifficultyLevels()[solverSteps[i].getLevel()].getOrdinal() > level.getOrdinal()) {
-                    level = Options.getInstance().getDifficultyLevels()[solverSteps[i].getLevel()];
+                return stepFound(i, solverSteps[i], hint.getType(), acceptAnyway) ? hint : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the indices of all singles at the start of the search order:
+     * only disabled steps may stand between them (and, if <code>singlesOnly</code>
+     * is set, all other steps).
+     *
+     * @param solverSteps
+     * @param singlesOnly
+     * @return
+     */
+    private int[] getLeadingSingles(SolverSettings.Step[] solverSteps, boolean singlesOnly) {
+        int[] tmp = new int[3];
+        int anz = 0;
+        for (int i = 0; i < solverSteps.length && anz < tmp.length; i++) {
+            if (!solverSteps[i].isEnabled()) {
+                continue;
+            }
+            SolutionType type = solverSteps[i].getType();
+            if (type == SolutionType.FULL_HOUSE || type == SolutionType.NAKED_SINGLE || type == SolutionType.HIDDEN_SINGLE) {
+                tmp[anz++] = i;
+            } else if (!singlesOnly) {
+                break;
+            }
+        }
+        return Arrays.copyOf(tmp, anz);
+    }
+
+    /**
+     * Sets all singles, that the per-step search ({@link #getHint(boolean, sudoku.solver.SolverSettings.Step[], boolean)})
+     * would find next, in one loop: the singles in <code>singleSteps</code> are tried in
+     * search order until none is left. Score, level and all counters are updated exactly
+     * as in the per-step search; steps are only created, if <code>stepList</code> is
+     * not <code>null</code>.<br>
+     * The attempts of the last round, in which no single was found, are not counted:
+     * the following call to <code>getHint()</code> does them again.
+     *
+     * @param solverSteps
+     * @param singleSteps Indices of the singles at the start of <code>solverSteps</code>
+     *        (see {@link #getLeadingSingles(sudoku.solver.SolverSettings.Step[], boolean)})
+     * @param acceptAnyway
+     * @param stepList If not <code>null</code>, a step is added for every single
+     * @return <code>false</code>, if the puzzle became too hard
+     */
+    private boolean drainSingles(SolverSettings.Step[] solverSteps, int[] singleSteps, boolean acceptAnyway,
+                                 List<SolutionStep> stepList) {
+        SudokuStepFinder finder = getStepFinder();
+        boolean changed = false;
+        boolean ok = true;
+        outer:
+        while (!sudoku.isSolved()) {
+            long nanos = System.nanoTime();
+            for (int k = 0; k < singleSteps.length; k++) {
+                int i = singleSteps[k];
+                SolutionType type = solverSteps[i].getType();
+                int single = finder.findSingle(type);
+                if (single == -1) {
+                    continue;
                 }
-                // Wenn das Puzzle zu schwer ist, gleich abbrechen
-                if (!acceptAnyway) {
-                    if (level.getOrdinal() > maxLevel.getOrdinal() || score >= maxLevel.getMaxScore()) {
-                        // zu schwer!
-                        return null;
-                    }
+                // count the unsuccessful attempts of this round too
+                for (int j = 0; j <= k; j++) {
+                    anzStepsProgress[singleSteps[j]]++;
+                }
+                stepsNanoTime[i] += System.nanoTime() - nanos;
+                if (!stepFound(i, solverSteps[i], type, acceptAnyway)) {
+                    ok = false;
+                    break outer;
+                }
+                if (stepList != null) {
+                    stepList.add(SimpleSolver.createSingleStep(type, single));
                 }
-                return hint;
+                sudoku.setCell(single >> 4, single & 0xf);
+                changed = true;
+                continue outer;
             }
+            break;
         }
-        return null;
+        if (changed) {
+            finder.setSudokuDirty();
+        }
+        return ok;
+    }
+
+    /**
+     * Same as {@link #getHint(boolean, sudoku.solver.SolverSettings.Step[], boolean)},
+     * but the step is recorded in <code>buffer</code> (score-only mode).
+     *
+     * @param singlesOnly
+     * @param solverSteps
+     * @param acceptAnyway
+     * @param buffer
+     * @return <code>true</code>, if a step was found and the puzzle is not too hard
+     */
+    private boolean getHint(boolean singlesOnly, SolverSettings.Step[] solverSteps,
+                            boolean acceptAnyway, StepBuffer buffer) {
+        if (sudoku.isSolved()) {
+            return false;
+        }
+        for (int i = 0; i < solverSteps.length; i++) {
+            if (solverSteps[i].isEnabled() == false) {
+                continue;
+            }
+            SolutionType type = solverSteps[i].getType();
+            if (singlesOnly &&
+                    (type != SolutionType.HIDDEN_SINGLE && type != SolutionType.NAKED_SINGLE &&
+                            type != SolutionType.FULL_HOUSE)) {
+                continue;
+            }
+            long nanos = System.nanoTime();
+            boolean found = getStepFinder().getStep(type, buffer);
+            nanos = System.nanoTime() - nanos;
+            anzStepsProgress[i]++;
+            stepsNanoTime[i] += nanos;
+            if (found) {
+                return stepFound(i, solverSteps[i], buffer.getType(), acceptAnyway);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates counters, score and level for a step that has been found.
+     *
+     * @param i Index of the step in the search order
+     * @param solverStep
+     * @param type The actual type of the step found
+     * @param acceptAnyway
+     * @return <code>false</code>, if the puzzle is now too hard
+     */
+    private boolean stepFound(int i, SolverSettings.Step solverStep, SolutionType type, boolean acceptAnyway) {
+        anzSteps[i]++;
+        score += solverStep.getBaseScore();
+        if (solverStep.getLevel().getOrdinal() > level.getOrdinal()) {
+            level = solverStep.getLevel();
+        }
+        if (hardestStep == null || solverStep.getLevel().getOrdinal() > hardestStep.getLevel().getOrdinal()
+                || (solverStep.getLevel().getOrdinal() == hardestStep.getLevel().getOrdinal() && solverStep.getBaseScore() > hardestStep.getBaseScore())) {
+            hardestStep = solverStep;
+            hardestType = type;
+        }
+        // Wenn das Puzzle zu schwer ist, gleich abbrechen
+        if (!acceptAnyway) {
+            if (level.getOrdinal() > maxLevel.getOrdinal() || score >= maxLevel.getMaxScore()) {
+                // zu schwer!
+                return false;
+            }
+        }
+        return true;
     }
 
     public void doStep(Sudoku sudoku, SolutionStep step) {
@@ -570,6 +864,18 @@ public class SudokuSolver {
         return level;
     }
 
+    /**
+     * Gets the type of the hardest step of the last
+     * {@link #solve(sudoku.DifficultyLevel, sudoku.Sudoku, boolean, boolean, sudoku.solver.SolverSettings) solve()}:
+     * the step with the highest level, if there are more than one the one with the
+     * highest base score.
+     *
+     * @return
+     */
+    public SolutionType getHardestType() {
+        return hardestType;
+    }
+
     public SolutionCategory getCategory(SolutionType type) {
         for (StepConfig configStep : Options.getInstance().solverSteps) {
             if (type == configStep.getType()) {
@@ -722,4 +1028,115 @@ public class SudokuSolver {
     public SudokuStepFinder getStepFinder() {
         return stepFinder;
     }
+
+    /**
+     * Rates a puzzle and returns score, level and all steps as one string
+     * (used by {@link #main(java.lang.String[])}).
+     *
+     * @param solver
+     * @param puzzle
+     * @return
+     */
+    private static String rate(SudokuSolver solver, String puzzle) {
+        Sudoku sudoku = new Sudoku();
+        sudoku.setSudoku(puzzle);
+        solver.solve(Options.getInstance().getDifficultyLevel(DifficultyType.EXTREME.ordinal()), sudoku, false, false);
+        StringBuilder result = new StringBuilder();
+        result.append(solver.getScore()).append(" ").append(solver.getLevel().getName());
+        for (SolutionStep step : solver.getSteps()) {
+            result.append("\n  ").append(step.toString(2));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Stress test for concurrent use: a corpus is rated sequentially, then
+     * several threads (one solver per thread) rate the same corpus
+     * concurrently. All results must be identical to the sequential run.<br>
+     * Optional arguments: number of threads, number of rounds per thread.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        final String[] puzzles = {
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79",
+            "..9748...7.........2.1.9.....7...24..64.1.59..98...3.....8.3.2.........6...2759..",
+            "4...3.......6..8..........1....5..9..8....6...7.2........1.27..5.3....4.9........",
+            "1.......2.9.4...5...6...7...5.9.3.......7.......85..4.7.....6...3...9.8...2.....1",
+            "98.7..6..5...8..4...3...2...1.5..........97.....3.........1..89..4.....7....2.5..",
+            "..3......4...8..36..8...1...4..6..73...9..........2..5..4.7..686........7..6..5..",
+        };
+        int threadAnz = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
+        // sequential run
+        long nanos = System.nanoTime();
+        final String[] expected = new String[puzzles.length];
+        SudokuSolver solver = new SudokuSolver();
+        for (int i = 0; i < puzzles.length; i++) {
+            expected[i] = rate(solver, puzzles[i]);
+        }
+        nanos = System.nanoTime() - nanos;
+        System.out.printf("sequential: %d puzzles in %.2fms%n", puzzles.length, nanos / 1e6);
+
+        // concurrent run: every thread starts with another puzzle
+        final String[][] results = new String[threadAnz][puzzles.length];
+        final Throwable[] errors = new Throwable[threadAnz];
+        Thread[] threads = new Thread[threadAnz];
+        for (int t = 0; t < threadAnz; t++) {
+            final int threadIndex = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        SudokuSolver threadSolver = new SudokuSolver();
+                        for (int r = 0; r < rounds; r++) {
+                            for (int i = 0; i < puzzles.length; i++) {
+                                int index = (i + threadIndex) % puzzles.length;
+                                String result = rate(threadSolver, puzzles[index]);
+                                if (results[threadIndex][index] == null || !result.equals(expected[index])) {
+                                    results[threadIndex][index] = result;
+                                }
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        errors[threadIndex] = ex;
+                    }
+                }
+            });
+        }
+        nanos = System.nanoTime();
+        for (int t = 0; t < threadAnz; t++) {
+            threads[t].start();
+        }
+        for (int t = 0; t < threadAnz; t++) {
+            try {
+                threads[t].join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        nanos = System.nanoTime() - nanos;
+        System.out.printf("concurrent: %d threads, %d puzzles each in %.2fms%n", threadAnz, rounds * puzzles.length, nanos / 1e6);
+
+        int failures = 0;
+        for (int t = 0; t < threadAnz; t++) {
+            if (errors[t] != null) {
+                failures++;
+                System.out.println("thread " + t + " failed:");
+                errors[t].printStackTrace(System.out);
+                continue;
+            }
+            for (int i = 0; i < puzzles.length; i++) {
+                if (!expected[i].equals(results[t][i])) {
+                    failures++;
+                    System.out.println("thread " + t + ", puzzle " + puzzles[i] + ":");
+                    System.out.println("expected: " + expected[i]);
+                    System.out.println("got: " + results[t][i]);
+                }
+            }
+        }
+        System.out.println(failures == 0 ? "OK" : failures + " mismatches");
+        System.exit(failures == 0 ? 0 : 1);
+    }
 }
@@ -22,9 +22,11 @@ package sudoku.solver;
 import sudoku.*;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This class has two purposes:
@@ -99,6 +101,11 @@ public class SudokuStepFinder {
      * An array for all specialized solvers. Makes finding steps easier.
      */
     private AbstractSolver[] solvers;
+    /**
+     * For every {@link SolutionType} (indexed by ordinal) the solvers, that handle it
+     * (see {@link #initTypeSolvers()}).
+     */
+    private AbstractSolver[][] typeSolvers;
     /**
      * The sudoku for which steps should be found.
      */
@@ -129,24 +136,30 @@ public class SudokuStepFinder {
      * If set to <code>true</code>, the StepFinder contains only one {@link SimpleSolver} instance.
      */
     private boolean simpleOnly = false;
-
-    // Data that is used by more than one specialized solver
     /**
-     * One set with all positions left for each candidate.
+     * If set to <code>false</code>, fish searches don't use templates, regardless
+     * of {@link Options#isCheckTemplates()} (used while progress scores are calculated).
      */
-    private SudokuSet[] candidates = new SudokuSet[10];
+    private boolean checkTemplates = true;
     /**
-     * Dirty flag for candidates.
+     * The settings for all specialized solvers. Set by {@link SudokuSolver} for
+     * every solve; if no snapshot has been set, one is taken from {@link Options}
+     * when needed and dropped again with the next {@link #setSudoku(sudoku.Sudoku)}.
      */
-    private boolean candidatesDirty = true;
+    private SolverSettings settings = null;
     /**
-     * One set with all set cells for each candidate.
+     * <code>true</code>, if {@link #settings} was set via {@link #setSettings(sudoku.solver.SolverSettings)}.
      */
-    private SudokuSet[] positions = new SudokuSet[10];
+    private boolean settingsFixed = false;
     /**
-     * Dirty flag for positions.
+     * Limits the effort of the current search, <code>null</code> for no limit
+     * (see {@link SolverBudget}).
      */
-    private boolean positionsDirty = true;
+    private SolverBudget budget = null;
+
+    // Data that is used by more than one specialized solver
+    // (the sets with all positions left and all set cells for each candidate
+    // are maintained by the sudoku itself, see Sudoku.getCandidateSets())
     /**
      * One set with all cells where a candidate is still possible
      */
@@ -168,9 +181,9 @@ public class SudokuStepFinder {
      */
     private SudokuSet[] delCandTemplates = new SudokuSet[10];
     /**
-     * The lists with all valid templates for each candidate.
+     * Holds all valid templates for each candidate and does the filtering.
      */
-    private List<List<SudokuSetBase>> candTemplates;
+    private TemplateFilter templateFilter;
     /**
      * Dirty flag for templates (without refinements).
      */
@@ -182,19 +195,16 @@ public class SudokuStepFinder {
     /**
      * Cache for ALS entries (only ALS with more than one cell).
      */
-    private List<Als> alsesOnlyLargerThanOne = null;
-    /**
-     * Step number for which {@link #alsesOnlyLargerThanOne} was computed.
-     */
-    private int alsesOnlyLargerThanOneStepNumber = -1;
+    private AlsCache alsesOnlyLargerThanOne = new AlsCache();
     /**
      * Cache for ALS entries (ALS with one cell allowed).
      */
-    private List<Als> alsesWithOne = null;
+    private AlsCache alsesWithOne = new AlsCache();
     /**
-     * Step number for which {@link #alsesWithOne} was computed.
+     * If set, every incremental update of an ALS or RC list is compared with a
+     * complete recalculation (see {@link #setCheckAlsIncremental(boolean) }).
      */
-    private int alsesWithOneStepNumber = -1;
+    private boolean checkAlsIncremental = false;
     /**
      * Cache for RC entries.
      */
@@ -227,6 +237,32 @@ public class SudokuStepFinder {
      * Collect RCs for forward search only
      */
     private boolean rcOnlyForward = true;
+    /**
+     * If the RCs are updated incrementally: for every ALS the index of the ALS in
+     * the last ALS list or <code>-1</code>, if the ALS has changed; <code>null</code>
+     * if all RCs have to be computed.
+     */
+    private int[] rcPreviousIndices = null;
+    /**
+     * For every ALS of the last ALS list the index in the current list or <code>-1</code>.
+     */
+    private int[] rcNewIndices = null;
+    /**
+     * RCs of the last ALS list.
+     */
+    private List<RestrictedCommon> rcPreviousRcs = null;
+    /**
+     * {@link #startIndices} for {@link #rcPreviousRcs}.
+     */
+    private int[] rcPreviousStarts = null;
+    /**
+     * {@link #endIndices} for {@link #rcPreviousRcs}.
+     */
+    private int[] rcPreviousEnds = null;
+    /**
+     * Bit set with the indices of all ALS, that were not taken from the last list.
+     */
+    private long[] rcChangedAlses = new long[0];
 
     // temporary varibles for calculating ALS and RC
     /**
@@ -237,6 +273,16 @@ public class SudokuStepFinder {
      * Temporary set for recursion: all numbers contained in {@link #indexSet}.
      */
     private short[] candSets = new short[10];
+    /**
+     * Cell sets of all ALS already found in the current call (duplicates
+     * are detected before the {@link Als} is created).
+     */
+    private LongPairHashSet alsKeys = new LongPairHashSet();
+    /**
+     * For every candidate all cells, where the candidate was deleted since an ALS list
+     * was computed (see {@link #getDeletedCandidates(sudoku.solver.SudokuStepFinder.AlsCache) }).
+     */
+    private SudokuSet[] deletedCandidates = new SudokuSet[10];
     /**
      * statistics: total time for all calls
      */
@@ -253,23 +299,21 @@ public class SudokuStepFinder {
      * statistics: number of ALS found more than once
      */
     private int doubleAls;
-
-    /**
-     * All candidates common to two ALS.
-     */
-    private short possibleRestrictedCommonsSet = 0;
     /**
-     * Holds all buddies of all candidate cells for one RC (including the candidate cells themselves).
+     * statistics: number of ALS taken from the last list
      */
-    private SudokuSet restrictedCommonBuddiesSet = new SudokuSet();
+    private int anzAlsReused;
+
     /**
-     * All cells containing a specific candidate in two ALS.
+     * For every candidate and every cell a bit set with the indices of all ALS,
+     * that contain the candidate in that cell: the set for candidate <code>cand</code>
+     * and cell <code>index</code> starts at <code>(cand * 81 + index) * rcIndexWords</code>.
      */
-    private SudokuSet restrictedCommonIndexSet = new SudokuSet();
+    private long[] rcIndex = new long[0];
     /**
-     * Contains the indices of all overlapping cells in two ALS.
+     * Number of longs in one ALS set in {@link #rcIndex}.
      */
-    private SudokuSet intersectionSet = new SudokuSet();
+    private int rcIndexWords;
     /**
      * statistics: total time for all calls
      */
@@ -299,6 +343,10 @@ public class SudokuStepFinder {
     public SudokuStepFinder(boolean simpleOnly) {
         this.simpleOnly = simpleOnly;
         initialized = false;
+        // needed by the ALS search, which doesnt call initialize()
+        for (int i = 0; i < deletedCandidates.length; i++) {
+            deletedCandidates[i] = new SudokuSet();
+        }
     }
 
     private void initialize() {
@@ -306,17 +354,14 @@ public class SudokuStepFinder {
             return;
         }
         // Create all Sets
-        for (int i = 0; i < candidates.length; i++) {
-            candidates[i] = new SudokuSet();
-            positions[i] = new SudokuSet();
+        for (int i = 0; i < candidatesAllowed.length; i++) {
             candidatesAllowed[i] = new SudokuSet();
         }
         // Create all templates
-        candTemplates = new ArrayList<List<SudokuSetBase>>(10);
+        templateFilter = new TemplateFilter(false);
         for (int i = 0; i < setValueTemplates.length; i++) {
             setValueTemplates[i] = new SudokuSet();
             delCandTemplates[i] = new SudokuSet();
-            candTemplates.add(i, new LinkedList<SudokuSetBase>());
         }
         // Create the solvers
         simpleSolver = new SimpleSolver(this);
@@ -343,9 +388,38 @@ public class SudokuStepFinder {
         } else {
             solvers = new AbstractSolver[]{simpleSolver};
         }
+        initTypeSolvers();
         initialized = true;
     }
 
+    /**
+     * Builds {@link #typeSolvers}: for every {@link SolutionType} all solvers,
+     * that handle it (see {@link AbstractSolver#getTypes()}), in the order of
+     * {@link #solvers}. Types, for which no solver is responsible, get
+     * all solvers (same behaviour as before, the type is unknown).
+     */
+    private void initTypeSolvers() {
+        SolutionType[] types = SolutionType.values();
+        typeSolvers = new AbstractSolver[types.length][];
+        List<AbstractSolver> tmpSolvers = new ArrayList<AbstractSolver>();
+        for (int i = 0; i < types.length; i++) {
+            tmpSolvers.clear();
+            for (AbstractSolver solver : solvers) {
+                for (SolutionType type : solver.getTypes()) {
+                    if (type == types[i]) {
+                        tmpSolvers.add(solver);
+                        break;
+                    }
+                }
+            }
+            if (tmpSolvers.isEmpty()) {
+                typeSolvers[i] = solvers;
+            } else {
+                typeSolvers[i] = tmpSolvers.toArray(new AbstractSolver[tmpSolvers.size()]);
+            }
+        }
+    }
+
     /**
      * Calls the {@link AbstractSolver#cleanUp() } method for every
      * specialized solver. This method is called from an extra
@@ -372,15 +446,132 @@ public class SudokuStepFinder {
      */
     public SolutionStep getStep(SolutionType type) {
         initialize();
-        SolutionStep result = null;
-        for (int i = 0; i < solvers.length; i++) {
-            if ((result = solvers[i].getStep(type)) != null) {
-                // step has been found!
-                stepNumber++;
-                return result;
+        long nanos = startTechnique(type);
+        try {
+            SolutionStep result = null;
+            AbstractSolver[] stepSolvers = typeSolvers[type.ordinal()];
+            for (int i = 0; i < stepSolvers.length; i++) {
+                if ((result = stepSolvers[i].getStep(type)) != null) {
+                    // step has been found!
+                    stepNumber++;
+                    return result;
+                }
             }
+            return result;
+        } finally {
+            endTechnique(type, nanos);
+        }
+    }
+
+    /**
+     * Finds the next Full House, Naked Single or Hidden Single without creating
+     * a step. The single is not set and {@link #stepNumber} is not changed; the
+     * caller has to call {@link #setSudokuDirty()} after setting one or more singles.
+     *
+     * @param type
+     * @return <code>index << 4 | value</code> or -1, if no single exists
+     */
+    public int findSingle(SolutionType type) {
+        initialize();
+        if (budget == null) {
+            return simpleSolver.findSingle(type);
+        }
+        long nanos = startTechnique(type);
+        try {
+            return simpleSolver.findSingle(type);
+        } finally {
+            endTechnique(type, nanos);
+        }
+    }
+
+    /**
+     * Tries to find a step of type <code>type</code> and records it in
+     * <code>buffer</code> (see {@link StepBuffer}).
+     *
+     * @param type
+     * @param buffer
+     * @return <code>true</code>, if a step was found
+     */
+    public boolean getStep(SolutionType type, StepBuffer buffer) {
+        initialize();
+        long nanos = startTechnique(type);
+        try {
+            AbstractSolver[] stepSolvers = typeSolvers[type.ordinal()];
+            for (int i = 0; i < stepSolvers.length; i++) {
+                if (stepSolvers[i].getStep(type, buffer)) {
+                    // step has been found!
+                    stepNumber++;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            endTechnique(type, nanos);
+        }
+    }
+
+    /**
+     * Tells the {@link #budget} that a technique is tried now (aborts the search,
+     * if the budget has run out).
+     *
+     * @param type
+     * @return The start time or 0, if no budget is set
+     */
+    private long startTechnique(SolutionType type) {
+        if (budget == null) {
+            return 0;
+        }
+        budget.startTechnique(type);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time spent in a technique in the {@link #budget}.
+     *
+     * @param type
+     * @param nanos The start time from {@link #startTechnique(sudoku.SolutionType)}
+     */
+    private void endTechnique(SolutionType type, long nanos) {
+        if (budget != null) {
+            budget.endTechnique(type, System.nanoTime() - nanos);
+        }
+    }
+
+    /**
+     * Counts one node of an expensive search (see {@link SolverBudget}). Aborts
+     * the search with a {@link SolverBudget.ExceededException}, if the budget has
+     * run out. Must only be called by the thread that started the search.
+     */
+    void checkBudget() {
+        if (budget != null) {
+            budget.check();
+        }
+    }
+
+    /**
+     * Checks only the deadline and the cancel flag of the {@link #budget} (no
+     * node is counted). Can be called by the worker threads of a parallel search,
+     * the {@link SolverBudget.ExceededException} is passed on to the thread that
+     * joins the workers.
+     */
+    void checkBudgetTime() {
+        if (budget != null) {
+            budget.checkTime();
+        }
+    }
+
+    /**
+     * Executes a step that has been recorded in <code>buffer</code>.
+     *
+     * @param buffer
+     */
+    public void doStep(StepBuffer buffer) {
+        if (buffer.getStep() != null) {
+            doStep(buffer.getStep());
+        } else {
+            buffer.apply(sudoku);
+            setSudokuDirty();
         }
-        return result;
     }
 
     /**
@@ -390,8 +581,9 @@ public class SudokuStepFinder {
      */
     public void doStep(SolutionStep step) {
         initialize();
-        for (int i = 0; i < solvers.length; i++) {
-            if (solvers[i].doStep(step)) {
+        AbstractSolver[] stepSolvers = typeSolvers[step.getType().ordinal()];
+        for (int i = 0; i < stepSolvers.length; i++) {
+            if (stepSolvers[i].doStep(step)) {
                 setSudokuDirty();
                 return;
             }
@@ -403,9 +595,7 @@ public class SudokuStepFinder {
      * The sudoku has been changed, all precalculated data is now invalid.
      */
     public void setSudokuDirty() {
-        candidatesDirty = true;
         candidatesAllowedDirty = true;
-        positionsDirty = true;
         templatesDirty = true;
         templatesListDirty = true;
         stepNumber++;
@@ -420,6 +610,10 @@ public class SudokuStepFinder {
         if (sudoku != null && this.sudoku != sudoku) {
             this.sudoku = sudoku;
         }
+        if (!settingsFixed) {
+            // pick up changes in the options
+            settings = null;
+        }
         // even if the reference is the same, the content could have been changed
         setSudokuDirty();
     }
@@ -485,6 +679,24 @@ public class SudokuStepFinder {
         return steps;
     }
 
+    /**
+     * Finds all Naked Singles for a given sudoku without creating steps
+     * (see {@link SimpleSolver#findAllNakedSingles(int[], int)}).
+     *
+     * @param newSudoku
+     * @param singles
+     * @param anz
+     * @return
+     */
+    public int findAllNakedSingles(Sudoku newSudoku, int[] singles, int anz) {
+        initialize();
+        Sudoku oldSudoku = getSudoku();
+        setSudoku(newSudoku);
+        anz = simpleSolver.findAllNakedSingles(singles, anz);
+        setSudoku(oldSudoku);
+        return anz;
+    }
+
     /**
      * Finds all Naked Subsets for a given sudoku.
      *
@@ -515,6 +727,24 @@ public class SudokuStepFinder {
         return steps;
     }
 
+    /**
+     * Finds all Hidden Singles for a given sudoku without creating steps
+     * (see {@link SimpleSolver#findAllHiddenSingles(int[], int)}).
+     *
+     * @param newSudoku
+     * @param singles
+     * @param anz
+     * @return
+     */
+    public int findAllHiddenSingles(Sudoku newSudoku, int[] singles, int anz) {
+        initialize();
+        Sudoku oldSudoku = getSudoku();
+        setSudoku(newSudoku);
+        anz = simpleSolver.findAllHiddenSingles(singles, anz);
+        setSudoku(oldSudoku);
+        return anz;
+    }
+
     /**
      * Find all hidden Subsets.
      *
@@ -891,64 +1121,23 @@ public class SudokuStepFinder {
     /******************************************************************************************************************/
 
     /**
-     * Returns the {@link #candidates}. Recalculates them if they are dirty.
+     * Returns the sets with all positions left for each candidate. The sets
+     * are maintained incrementally by the sudoku and must not be changed.
      *
      * @return
      */
     public SudokuSet[] getCandidates() {
-        if (candidatesDirty) {
-            initCandidates();
-        }
-        return candidates;
+        return sudoku.getCandidateSets();
     }
 
     /**
-     * Returns the {@link #positions}. Recalculates them if they are dirty.
+     * Returns the sets with all set cells for each candidate. The sets
+     * are maintained incrementally by the sudoku and must not be changed.
      *
      * @return
      */
     public SudokuSet[] getPositions() {
-        if (positionsDirty) {
-            initPositions();
-        }
-        return positions;
-    }
-
-    /**
-     * Create the sets that contain all cells, in which a specific candidate is still present.
-     */
-    private void initCandidates() {
-        if (candidatesDirty) {
-            for (int i = 1; i < candidates.length; i++) {
-                candidates[i].clear();
-            }
-            short[] cells = sudoku.getCells();
-            for (int i = 0; i < cells.length; i++) {
-                int[] cands = Sudoku.POSSIBLE_VALUES[cells[i]];
-                for (int j = 0; j < cands.length; j++) {
-                    candidates[cands[j]].add(i);
-                }
-            }
-            candidatesDirty = false;
-        }
-    }
-
-    /**
-     * Create the sets that contain all cells, in which a specific candidate is already set.
-     */
-    private void initPositions() {
-        if (positionsDirty) {
-            for (int i = 1; i < positions.length; i++) {
-                positions[i].clear();
-            }
-            int[] values = sudoku.getValues();
-            for (int i = 0; i < values.length; i++) {
-                if (values[i] != 0) {
-                    positions[values[i]].add(i);
-                }
-            }
-            positionsDirty = false;
-        }
+        return sudoku.getPositionSets();
     }
 
     /**
@@ -1052,6 +1241,9 @@ public class SudokuStepFinder {
      * All templates, that have a one at the result of an AND of all templates of another candidate, are forbidden
      * All templates, that dont have at least one non overlapping combination with at least one template
      * of another candidate, are forbidden.
+     * <p>
+     * The work is delegated to {@link TemplateFilter}, in parallel only if
+     * {@link SolverSettings#isTemplatesParallel()} is set.
      *
      * @param initLists
      */
@@ -1063,76 +1255,9 @@ public class SudokuStepFinder {
         templateAnz++;
         long nanos = System.nanoTime();
         if ((initLists && templatesListDirty) || (!initLists && templatesDirty)) {
-            SudokuSetBase[] allowedPositions = getCandidates();
-            SudokuSet[] setPositions = getPositions();
-            SudokuSetBase[] templates = Sudoku.templates;
-            SudokuSetBase[] forbiddenPositions = new SudokuSetBase[10]; // eine 1 an jeder Position, an der Wert nicht mehr sein darf
-
-//        SudokuSetBase setMask = new SudokuSetBase();
-//        SudokuSetBase delMask = new SudokuSetBase();
-//        SudokuSetBase temp = new SudokuSetBase();
-            for (int i = 1; i <= 9; i++) {
-                setValueTemplates[i].setAll();
-                delCandTemplates[i].clear();
-                candTemplates.get(i).clear();
-
-                // eine 1 an jeder verbotenen Position ~(positions | allowedPositions)
-                forbiddenPositions[i] = new SudokuSetBase();
-                forbiddenPositions[i].set(setPositions[i]);
-                forbiddenPositions[i].or(allowedPositions[i]);
-                forbiddenPositions[i].not();
-            }
-            for (int i = 0; i < templates.length; i++) {
-                for (int j = 1; j <= 9; j++) {
-                    if (!setPositions[j].andEquals(templates[i])) {
-                        // Template hat keine 1 an einer bereits gesetzten Position
-                        continue;
-                    }
-                    if (!forbiddenPositions[j].andEmpty(templates[i])) {
-                        // Template hat eine 1 an einer verbotenen Position
-                        continue;
-                    }
-                    // Template ist für Kandidaten erlaubt!
-                    setValueTemplates[j].and(templates[i]);
-                    delCandTemplates[j].or(templates[i]);
-                    if (initLists) {
-                        candTemplates.get(j).add(templates[i]);
-                    }
-                }
-            }
-
-            // verfeinern
-            if (initLists) {
-                int removals = 0;
-                do {
-                    removals = 0;
-                    for (int j = 1; j <= 9; j++) {
-                        setValueTemplates[j].setAll();
-                        delCandTemplates[j].clear();
-                        ListIterator<SudokuSetBase> it = candTemplates.get(j).listIterator();
-                        while (it.hasNext()) {
-                            SudokuSetBase template = it.next();
-                            boolean removed = false;
-                            for (int k = 1; k <= 9; k++) {
-                                if (k != j && !template.andEmpty(setValueTemplates[k])) {
-                                    it.remove();
-                                    removed = true;
-                                    removals++;
-                                    break;
-                                }
-                            }
-                            if (!removed) {
-                                setValueTemplates[j].and(template);
-                                delCandTemplates[j].or(template);
-                            }
-                        }
-                    }
-                } while (removals > 0);
-            }
-
-            for (int i = 1; i <= 9; i++) {
-                delCandTemplates[i].not();
-            }
+            templateFilter.setParallel(getSettings().isTemplatesParallel() && ForkJoinPool.getCommonPoolParallelism() > 1);
+            templateFilter.initTemplates(getCandidates(), getPositions(), initLists,
+                    setValueTemplates, delCandTemplates);
             templatesDirty = false;
             if (initLists) {
                 templatesListDirty = false;
@@ -1147,6 +1272,61 @@ public class SudokuStepFinder {
     public int getStepNumber() {
         return stepNumber;
     }
+
+    /**
+     * Gets the settings for the current search. If no settings have been set,
+     * a snapshot of the current {@link Options} is taken.
+     *
+     * @return
+     */
+    public SolverSettings getSettings() {
+        if (settings == null) {
+            settings = new SolverSettings(Options.getInstance());
+        }
+        return settings;
+    }
+
+    /**
+     * Sets the settings for all subsequent searches. <code>null</code> reverts
+     * to snapshots of {@link Options}.
+     *
+     * @param settings
+     */
+    public void setSettings(SolverSettings settings) {
+        this.settings = settings;
+        settingsFixed = settings != null;
+    }
+
+    /**
+     * @return the budget, <code>null</code> if none is set
+     */
+    public SolverBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Sets the budget for all subsequent searches (<code>null</code> for no limit).
+     * The budget is started by {@link SudokuSolver}.
+     *
+     * @param budget
+     */
+    public void setBudget(SolverBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * @return the checkTemplates
+     */
+    public boolean isCheckTemplates() {
+        return checkTemplates;
+    }
+
+    /**
+     * @param checkTemplates the checkTemplates to set
+     */
+    public void setCheckTemplates(boolean checkTemplates) {
+        this.checkTemplates = checkTemplates;
+    }
     /******************************************************************************************************************/
     /* END TEMPLATES                                                                                                  */
     /******************************************************************************************************************/
@@ -1176,56 +1356,185 @@ public class SudokuStepFinder {
      * @return
      */
     public List<Als> getAlses(boolean onlyLargerThanOne) {
-        if (onlyLargerThanOne) {
-            if (alsesOnlyLargerThanOneStepNumber == stepNumber) {
-                return alsesOnlyLargerThanOne;
-            } else {
-                alsesOnlyLargerThanOne = doGetAlses(onlyLargerThanOne);
-                alsesOnlyLargerThanOneStepNumber = stepNumber;
-                return alsesOnlyLargerThanOne;
+        AlsCache cache = onlyLargerThanOne ? alsesOnlyLargerThanOne : alsesWithOne;
+        if (cache.stepNumber != stepNumber) {
+            doGetAlses(cache, onlyLargerThanOne);
+            cache.stepNumber = stepNumber;
+        }
+        return cache.alses;
+    }
+
+    /**
+     * Does some statistics and starts the recursive search for every house.<br><br>
+     *
+     * If candidates were only deleted (or cells set) since the last list in <code>cache</code>
+     * was computed, all ALS, that are not affected by the deletions, are taken from the last
+     * list (see {@link #isAlsUnchanged(sudoku.solver.Als, short) }): this saves
+     * {@link Als#computeFields(sudoku.solver.SudokuStepFinder) } and allows RCs between
+     * those ALS to be reused ({@link #getRestrictedCommons(java.util.List, boolean) }).
+     * The list itself is always the same as with a complete recalculation.
+     *
+     * @param cache
+     * @param onlyLargerThanOne
+     */
+    private void doGetAlses(AlsCache cache, boolean onlyLargerThanOne) {
+        long actNanos = System.nanoTime();
+
+        boolean incremental = getSettings().isAlsIncremental() && cache.alses != null && getDeletedCandidates(cache);
+        List<Als> alses = collectAlses(onlyLargerThanOne);
+
+        // compute fields or take the ALS from the last list
+        int[] previousIndices = new int[alses.size()];
+        for (int i = 0; i < alses.size(); i++) {
+            Als als = alses.get(i);
+            int index = -1;
+            if (incremental) {
+                index = cache.keys.indexOf(als.indices.getMask1(), als.indices.getMask2());
+                if (index >= 0 && !isAlsUnchanged(cache.alses.get(index), als.candidates)) {
+                    index = -1;
+                }
             }
-        } else {
-            if (alsesWithOneStepNumber == stepNumber) {
-                return alsesWithOne;
+            if (index >= 0) {
+                alses.set(i, cache.alses.get(index));
+                anzAlsReused++;
             } else {
-                alsesWithOne = doGetAlses(onlyLargerThanOne);
-                alsesWithOneStepNumber = stepNumber;
-                return alsesWithOne;
+                als.computeFields(this);
             }
+            previousIndices[i] = index;
+        }
+
+        // store the new list; alsKeys holds the cell sets in the order of the list
+        cache.previous = incremental ? cache.alses : null;
+        cache.previousIndices = incremental ? previousIndices : null;
+        cache.alses = alses;
+        LongPairHashSet tmpKeys = cache.keys;
+        cache.keys = alsKeys;
+        alsKeys = tmpKeys;
+        for (int i = 0; i < Sudoku.LENGTH; i++) {
+            cache.cells[i] = sudoku.getCell(i);
+            cache.values[i] = sudoku.getValue(i);
+        }
+
+        alsNanos += (System.nanoTime() - actNanos);
+        anzAlsCalls++;
+
+        if (incremental && checkAlsIncremental) {
+            checkAlses(alses, onlyLargerThanOne);
         }
     }
 
     /**
-     * Does some statistics and starts the recursive search for every house.
+     * Searches all ALS in all houses, the fields of the ALS are not computed.
+     * The cell sets of the ALS are stored in {@link #alsKeys} (in the same order).
      *
      * @param onlyLargerThanOne
      * @return
      */
-    private List<Als> doGetAlses(boolean onlyLargerThanOne) {
-        long actNanos = System.nanoTime();
-
+    private List<Als> collectAlses(boolean onlyLargerThanOne) {
         // this is the list we will be working with
         List<Als> alses = new ArrayList<Als>(300);
-        alses.clear();
+        alsKeys.clear();
 
-        // recursion is started once for every cell in every house
+        // recursion is started once for every house: the first call tries all
+        // combinations of cells, later starts would only find the same ALS again
         for (int i = 0; i < Sudoku.ALL_UNITS.length; i++) {
-            for (int j = 0; j < Sudoku.ALL_UNITS[i].length; j++) {
-                indexSet.clear();
-                candSets[0] = 0;
-                checkAlsRecursive(0, j, Sudoku.ALL_UNITS[i], alses, onlyLargerThanOne);
+            indexSet.clear();
+            candSets[0] = 0;
+            checkAlsRecursive(0, 0, Sudoku.ALL_UNITS[i], alses, onlyLargerThanOne);
+        }
+        return alses;
+    }
+
+    /**
+     * Collects all candidates, that were deleted since the last list in <code>cache</code>
+     * was computed, in {@link #deletedCandidates}.
+     *
+     * @param cache
+     * @return <code>false</code>, if candidates were added or cells were reset
+     * (the list cannot be updated)
+     */
+    private boolean getDeletedCandidates(AlsCache cache) {
+        for (int i = 1; i < deletedCandidates.length; i++) {
+            deletedCandidates[i].clear();
+        }
+        for (int i = 0; i < Sudoku.LENGTH; i++) {
+            short cell = sudoku.getCell(i);
+            if ((cell & ~cache.cells[i]) != 0 || (cache.values[i] != 0 && sudoku.getValue(i) != cache.values[i])) {
+                return false;
+            }
+            int[] deleted = Sudoku.POSSIBLE_VALUES[cache.cells[i] & ~cell];
+            for (int j = 0; j < deleted.length; j++) {
+                deletedCandidates[deleted[j]].add(i);
             }
         }
+        return true;
+    }
 
-        // compute fields
-        for (Als als : alses) {
-            als.computeFields(this);
+    /**
+     * Checks, if an ALS from the last list can be used unchanged: the fields of an ALS
+     * for candidate <code>cand</code> depend only on the cells of the ALS and on its
+     * buddies with candidate <code>cand</code> ({@link Als#buddiesPerCandidat}).
+     * If no <code>cand</code> has been deleted from those cells, nothing has changed.
+     *
+     * @param als
+     * @param candidates The candidates of the ALS in the current sudoku
+     * @return
+     */
+    private boolean isAlsUnchanged(Als als, short candidates) {
+        if (als.candidates != candidates) {
+            return false;
+        }
+        int[] cands = Sudoku.POSSIBLE_VALUES[candidates];
+        for (int i = 0; i < cands.length; i++) {
+            SudokuSet deleted = deletedCandidates[cands[i]];
+            if (!deleted.andEmpty(als.indices) || !deleted.andEmpty(als.buddiesPerCandidat[cands[i]])) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        alsNanos += (System.nanoTime() - actNanos);
-        anzAlsCalls++;
+    /**
+     * Compares an incrementally computed ALS list with a complete recalculation
+     * (see {@link #setCheckAlsIncremental(boolean) }).
+     *
+     * @param alses
+     * @param onlyLargerThanOne
+     * @throws IllegalStateException if the lists differ
+     */
+    private void checkAlses(List<Als> alses, boolean onlyLargerThanOne) {
+        List<Als> check = collectAlses(onlyLargerThanOne);
+        if (check.size() != alses.size()) {
+            throw new IllegalStateException("ALS list: " + alses.size() + " ALS instead of " + check.size());
+        }
+        for (int i = 0; i < check.size(); i++) {
+            Als als1 = alses.get(i);
+            Als als2 = check.get(i);
+            als2.computeFields(this);
+            boolean equal = als1.indices.equals(als2.indices) && als1.candidates == als2.candidates
+                    && als1.buddies.equals(als2.buddies);
+            for (int cand = 1; equal && cand <= 9; cand++) {
+                if ((als2.candidates & Sudoku.MASKS[cand]) != 0) {
+                    equal = als1.indicesPerCandidat[cand].equals(als2.indicesPerCandidat[cand])
+                            && als1.buddiesPerCandidat[cand].equals(als2.buddiesPerCandidat[cand])
+                            && als1.buddiesAlsPerCandidat[cand].equals(als2.buddiesAlsPerCandidat[cand]);
+                }
+            }
+            if (!equal) {
+                throw new IllegalStateException("ALS list: " + als1 + " instead of " + als2 + " at index " + i);
+            }
+        }
+    }
 
-        return alses;
+    /**
+     * If set, every incrementally updated ALS or RC list is compared with
+     * a complete recalculation; if they differ, an {@link IllegalStateException}
+     * is thrown. Slows down the search considerably, meant for testing only.
+     *
+     * @param checkAlsIncremental
+     */
+    public void setCheckAlsIncremental(boolean checkAlsIncremental) {
+        this.checkAlsIncremental = checkAlsIncremental;
     }
 
     /**
@@ -1259,9 +1568,8 @@ public class SudokuStepFinder {
                 if (!onlyLargerThanOne || indexSet.size() > 1) {
                     // found one -> save it if it doesnt exist already
                     anzAls++;
-                    Als newAls = new Als(indexSet, candSets[anzahl]);
-                    if (!alses.contains(newAls)) {
-                        alses.add(newAls);
+                    if (alsKeys.add(indexSet.getMask1(), indexSet.getMask2())) {
+                        alses.add(new Als(indexSet, candSets[anzahl]));
                     } else {
                         doubleAls++;
                     }
@@ -1276,6 +1584,41 @@ public class SudokuStepFinder {
         }
     }
 
+    /**
+     * An ALS list together with the data needed to update it incrementally.
+     */
+    private static class AlsCache {
+
+        /**
+         * The current list.
+         */
+        private List<Als> alses = null;
+        /**
+         * Step number for which {@link #alses} was computed.
+         */
+        private int stepNumber = -1;
+        /**
+         * Cell sets of all ALS in {@link #alses} (in the same order).
+         */
+        private LongPairHashSet keys = new LongPairHashSet();
+        /**
+         * Candidates of all cells, when {@link #alses} was computed.
+         */
+        private short[] cells = new short[Sudoku.LENGTH];
+        /**
+         * Values of all cells, when {@link #alses} was computed.
+         */
+        private int[] values = new int[Sudoku.LENGTH];
+        /**
+         * The list {@link #alses} was updated from or <code>null</code>, if it was computed completely.
+         */
+        private List<Als> previous = null;
+        /**
+         * For every ALS in {@link #alses} the index in {@link #previous} or <code>-1</code>.
+         */
+        private int[] previousIndices = null;
+    }
+
     /**
      * Do some statistics.
      *
@@ -1286,7 +1629,8 @@ public class SudokuStepFinder {
                 (alsNanos / 1000) + "us, average: " + (alsNanos / anzAlsCalls / 1000) + "us\r\n" +
                 "    anz: " + anzAls + "/" + (anzAls / anzAlsCalls) +
                 ", double: " + doubleAls + "/" + (doubleAls / anzAlsCalls) +
-                " res: " + (anzAls - doubleAls) + "/" + ((anzAls - doubleAls) / anzAlsCalls);
+                " res: " + (anzAls - doubleAls) + "/" + ((anzAls - doubleAls) / anzAlsCalls) + "\r\n" +
+                "    " + doubleAls + " ALS not created, " + anzAlsReused + " ALS reused";
     }
 
     /**
@@ -1300,7 +1644,15 @@ public class SudokuStepFinder {
     public List<RestrictedCommon> getRestrictedCommons(List<Als> alses, boolean allowOverlap) {
         if (lastRcStepNumber != stepNumber || lastRcAllowOverlap != allowOverlap ||
                 lastRcAlsList != alses || lastRcOnlyForward != rcOnlyForward) {
-            // recompute
+            // recompute: if the ALS list was updated from the list the current RCs
+            // belong to, RCs between unchanged ALS can be reused
+            rcPreviousIndices = null;
+            AlsCache cache = alses == alsesOnlyLargerThanOne.alses ? alsesOnlyLargerThanOne :
+                (alses == alsesWithOne.alses ? alsesWithOne : null);
+            if (cache != null && cache.previous != null && cache.previous == lastRcAlsList &&
+                    lastRcAllowOverlap == allowOverlap && lastRcOnlyForward == rcOnlyForward) {
+                initRcIncremental(cache);
+            }
             if (startIndices == null || startIndices.length < alses.size()) {
                 startIndices = new int[(int) (alses.size() * 1.5)];
                 endIndices = new int[(int) (alses.size() * 1.5)];
@@ -1311,10 +1663,78 @@ public class SudokuStepFinder {
             lastRcAllowOverlap = allowOverlap;
             lastRcOnlyForward = rcOnlyForward;
             lastRcAlsList = alses;
+            if (rcPreviousIndices != null && checkAlsIncremental) {
+                checkRcIncremental(alses, allowOverlap);
+            }
+            rcPreviousIndices = null;
+            rcPreviousRcs = null;
         }
         return restrictedCommons;
     }
 
+    /**
+     * Prepares the incremental RC search: the old RCs and their indices are saved
+     * and the mapping between the old and the new ALS list is set up.
+     *
+     * @param cache
+     */
+    private void initRcIncremental(AlsCache cache) {
+        int oldSize = cache.previous.size();
+        int newSize = cache.alses.size();
+        rcPreviousRcs = restrictedCommons;
+        rcPreviousStarts = Arrays.copyOf(startIndices, oldSize);
+        rcPreviousEnds = Arrays.copyOf(endIndices, oldSize);
+        rcPreviousIndices = cache.previousIndices;
+        rcNewIndices = new int[oldSize];
+        Arrays.fill(rcNewIndices, -1);
+        int words = (newSize + 63) >>> 6;
+        if (rcChangedAlses.length < words) {
+            rcChangedAlses = new long[words];
+        } else {
+            Arrays.fill(rcChangedAlses, 0);
+        }
+        for (int i = 0; i < newSize; i++) {
+            if (rcPreviousIndices[i] >= 0) {
+                rcNewIndices[rcPreviousIndices[i]] = i;
+            } else {
+                rcChangedAlses[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Compares an incrementally computed RC list with a complete recalculation
+     * (see {@link #setCheckAlsIncremental(boolean) }).
+     *
+     * @param alses
+     * @param allowOverlap
+     * @throws IllegalStateException if the lists differ
+     */
+    private void checkRcIncremental(List<Als> alses, boolean allowOverlap) {
+        List<RestrictedCommon> rcs = restrictedCommons;
+        int[] starts = Arrays.copyOf(startIndices, alses.size());
+        int[] ends = Arrays.copyOf(endIndices, alses.size());
+        rcPreviousIndices = null;
+        List<RestrictedCommon> check = doGetRestrictedCommons(alses, allowOverlap);
+        if (check.size() != rcs.size()) {
+            throw new IllegalStateException("RC list: " + rcs.size() + " RCs instead of " + check.size());
+        }
+        for (int i = 0; i < check.size(); i++) {
+            RestrictedCommon rc1 = rcs.get(i);
+            RestrictedCommon rc2 = check.get(i);
+            if (rc1.getAls1() != rc2.getAls1() || rc1.getAls2() != rc2.getAls2() ||
+                    rc1.getCand1() != rc2.getCand1() || rc1.getCand2() != rc2.getCand2()) {
+                throw new IllegalStateException("RC list: " + rc1 + " instead of " + rc2 + " at index " + i);
+            }
+        }
+        for (int i = 0; i < alses.size(); i++) {
+            if (starts[i] != startIndices[i] || ends[i] != endIndices[i]) {
+                throw new IllegalStateException("RC list: wrong indices for ALS " + i);
+            }
+        }
+        restrictedCommons = rcs;
+    }
+
     /**
      * Getter for {@link #startIndices}.
      *
@@ -1364,7 +1784,13 @@ public class SudokuStepFinder {
      * index are collected. For ALS-XZ und ALS-XY-Wing this is irrelevant. For ALS-Chains
      * it greatly improves performance, but not all chains are found. This is the default
      * when solving puzzles, {@link #rcOnlyForward} <code>false</code> is the default for
-     * search for all steps.
+     * search for all steps.<br><br>
+     * <p>
+     * Only pairs of ALS, that can have an RC at all, are checked (see {@link #buildRcIndex(java.util.List) }).
+     * If {@link #rcPreviousIndices} is set, RCs between two ALS, that were taken unchanged
+     * from the last ALS list, are copied from {@link #rcPreviousRcs}.
+     * If {@link SolverSettings#isAlsRcParallel()} is set, the ALS are split over
+     * {@link ForkJoinPool#commonPool()}; the result is the same.
      *
      * @param withOverlap If <code>false</code> overlapping ALS are not allowed
      */
@@ -1374,78 +1800,301 @@ public class SudokuStepFinder {
         actNanos = System.nanoTime();
         // store the calculation mode
         lastRcOnlyForward = rcOnlyForward;
-        // delete all RCs from the last run
-        List<RestrictedCommon> rcs = new ArrayList<RestrictedCommon>(2000);
-        // Try all combinations of alses
+        buildRcIndex(alses);
+        List<RestrictedCommon> rcs = null;
+        if (getSettings().isAlsRcParallel() && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            // every task handles a range of ALS, the results are concatenated in order
+            int parts = ForkJoinPool.getCommonPoolParallelism() * 4;
+            RcTask[] tasks = new RcTask[parts];
+            for (int i = 0; i < parts; i++) {
+                tasks[i] = new RcTask(alses, withOverlap, alses.size() * i / parts, alses.size() * (i + 1) / parts);
+            }
+            ForkJoinTask.invokeAll(tasks);
+            int anz = 0;
+            for (int i = 0; i < parts; i++) {
+                anz += tasks[i].rcs.size();
+            }
+            rcs = new ArrayList<RestrictedCommon>(anz);
+            for (int i = 0; i < parts; i++) {
+                int offset = rcs.size();
+                for (int j = tasks[i].from; j < tasks[i].to; j++) {
+                    startIndices[j] += offset;
+                    endIndices[j] += offset;
+                }
+                rcs.addAll(tasks[i].rcs);
+            }
+        } else {
+            RcTask task = new RcTask(alses, withOverlap, 0, alses.size());
+            task.compute();
+            rcs = task.rcs;
+        }
+        anzRcs += rcs.size();
+        actNanos = System.nanoTime() - actNanos;
+        rcNanos += actNanos;
+        return rcs;
+    }
+
+    /**
+     * Fills {@link #rcIndex}: two ALS can only have an RC <code>cand</code>, if all cells
+     * of the second ALS containing <code>cand</code> are buddies of the first ALS
+     * (see {@link Als#buddiesAlsPerCandidat}). So only ALS, that are set in {@link #rcIndex}
+     * for one of those buddies, have to be checked.
+     *
+     * @param alses
+     */
+    private void buildRcIndex(List<Als> alses) {
+        rcIndexWords = (alses.size() + 63) >>> 6;
+        int size = 10 * Sudoku.LENGTH * rcIndexWords;
+        if (rcIndex.length < size) {
+            rcIndex = new long[size];
+        } else {
+            Arrays.fill(rcIndex, 0, size, 0);
+        }
         for (int i = 0; i < alses.size(); i++) {
+            Als als = alses.get(i);
+            int[] cands = Sudoku.POSSIBLE_VALUES[als.candidates];
+            for (int k = 0; k < cands.length; k++) {
+                int cand = cands[k];
+                long mask1 = als.indicesPerCandidat[cand].getMask1();
+                long mask2 = als.indicesPerCandidat[cand].getMask2();
+                while (mask1 != 0) {
+                    int index = Long.numberOfTrailingZeros(mask1);
+                    mask1 &= mask1 - 1;
+                    rcIndex[(cand * Sudoku.LENGTH + index) * rcIndexWords + (i >>> 6)] |= 1L << i;
+                }
+                while (mask2 != 0) {
+                    int index = 64 + Long.numberOfTrailingZeros(mask2);
+                    mask2 &= mask2 - 1;
+                    rcIndex[(cand * Sudoku.LENGTH + index) * rcIndexWords + (i >>> 6)] |= 1L << i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches the RCs for a range of ALS (see {@link #doGetRestrictedCommons(java.util.List, boolean) }).
+     * The indices into {@link #rcs} are written to {@link #startIndices} and {@link #endIndices}.
+     * Every task has its own temporary sets, so the tasks can be run in parallel.
+     */
+    private class RcTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        /**
+         * All ALS.
+         */
+        private final List<Als> alses;
+        /**
+         * If <code>false</code> overlapping ALS are not allowed.
+         */
+        private final boolean withOverlap;
+        /**
+         * Index of the first ALS.
+         */
+        private final int from;
+        /**
+         * Index of the last ALS + 1.
+         */
+        private final int to;
+        /**
+         * All RCs found by this task.
+         */
+        private final List<RestrictedCommon> rcs;
+        /**
+         * All ALS, that could have an RC with the current ALS.
+         */
+        private final long[] possibleAlses = new long[rcIndexWords];
+        /**
+         * All candidates common to two ALS.
+         */
+        private short possibleRestrictedCommonsSet = 0;
+        /**
+         * Holds all buddies of all candidate cells for one RC (including the candidate cells themselves).
+         */
+        private SudokuSet restrictedCommonBuddiesSet = new SudokuSet();
+        /**
+         * All cells containing a specific candidate in two ALS.
+         */
+        private SudokuSet restrictedCommonIndexSet = new SudokuSet();
+        /**
+         * Contains the indices of all overlapping cells in two ALS.
+         */
+        private SudokuSet intersectionSet = new SudokuSet();
+
+        RcTask(List<Als> alses, boolean withOverlap, int from, int to) {
+            this.alses = alses;
+            this.withOverlap = withOverlap;
+            this.from = from;
+            this.to = to;
+            rcs = new ArrayList<RestrictedCommon>(to - from == alses.size() ? 2000 : 100);
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = from; i < to; i++) {
+                startIndices[i] = rcs.size();
+                getRestrictedCommons(i);
+                endIndices[i] = rcs.size();
+            }
+        }
+
+        /**
+         * Finds all RCs between <code>alses[i]</code> and the other ALS. Only ALS, that
+         * have at least one candidate in a buddy of <code>alses[i]</code> (see {@link #rcIndex}),
+         * are checked, in the order of their indices.
+         *
+         * @param i
+         */
+        private void getRestrictedCommons(int i) {
             Als als1 = alses.get(i);
-            startIndices[i] = rcs.size();
             //if (DEBUG) System.out.println("als1: " + SolutionStep.getAls(als1));
+            Arrays.fill(possibleAlses, 0);
+            int[] cands = Sudoku.POSSIBLE_VALUES[als1.candidates];
+            for (int k = 0; k < cands.length; k++) {
+                int cand = cands[k];
+                long mask1 = als1.buddiesAlsPerCandidat[cand].getMask1();
+                long mask2 = als1.buddiesAlsPerCandidat[cand].getMask2();
+                while (mask1 != 0) {
+                    int index = Long.numberOfTrailingZeros(mask1);
+                    mask1 &= mask1 - 1;
+                    addPossibleAlses((cand * Sudoku.LENGTH + index) * rcIndexWords);
+                }
+                while (mask2 != 0) {
+                    int index = 64 + Long.numberOfTrailingZeros(mask2);
+                    mask2 &= mask2 - 1;
+                    addPossibleAlses((cand * Sudoku.LENGTH + index) * rcIndexWords);
+                }
+            }
             int start = 0;
             if (rcOnlyForward) {
                 start = i + 1;
             }
-            for (int j = start; j < alses.size(); j++) {
-                if (i == j) {
-                    continue;
+            // for an unchanged ALS only the changed ALS have to be checked, all other
+            // RCs are copied from the last list (both lists are sorted by j)
+            int previous = rcPreviousIndices != null ? rcPreviousIndices[i] : -1;
+            int next = 0;
+            int end = 0;
+            if (previous >= 0) {
+                for (int w = 0; w < rcIndexWords; w++) {
+                    possibleAlses[w] &= rcChangedAlses[w];
                 }
-                Als als2 = alses.get(j);
-                // check whether the ALS overlap (intersectionSet is needed later on anyway)
-                intersectionSet.set(als1.indices);
-                intersectionSet.and(als2.indices);
-                if (!withOverlap && !intersectionSet.isEmpty()) {
-                    // overlap is not allowed!
-                    continue;
-                }
-                //if (DEBUG) System.out.println("als2: " + SolutionStep.getAls(als2));
-                // restricted common: all buddies + the positions of the candidates themselves ANDed
-                // check whether als1 and als2 have common candidates
-                possibleRestrictedCommonsSet = als1.candidates;
-                possibleRestrictedCommonsSet &= als2.candidates;
-                // possibleRestrictedCommons now contains all candidates common to both ALS
-                if (possibleRestrictedCommonsSet == 0) {
-                    // nothing to do!
-                    continue;
+                next = rcPreviousStarts[previous];
+                end = rcPreviousEnds[previous];
+            }
+            for (int w = start >>> 6; w < rcIndexWords; w++) {
+                long mask = possibleAlses[w];
+                if (w == start >>> 6) {
+                    mask &= -1L << start;
                 }
-                // number of RC candidates found for this ALS combination
-                int rcAnz = 0;
-                RestrictedCommon newRC = null;
-                int[] prcs = Sudoku.POSSIBLE_VALUES[possibleRestrictedCommonsSet];
-                for (int k = 0; k < prcs.length; k++) {
-                    int cand = prcs[k];
-                    // Get all positions of cand in both ALS
-                    restrictedCommonIndexSet.set(als1.indicesPerCandidat[cand]);
-                    restrictedCommonIndexSet.or(als2.indicesPerCandidat[cand]);
-                    // non of these positions may be in the overlapping area of the two ALS
-                    if (!restrictedCommonIndexSet.andEmpty(intersectionSet)) {
-                        // at least on occurence of cand is in overlap -> forbidden
+                while (mask != 0) {
+                    int j = (w << 6) + Long.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                    if (i == j) {
                         continue;
                     }
-                    // now check if all those candidates see each other
-                    restrictedCommonBuddiesSet.setAnd(als1.buddiesAlsPerCandidat[cand],
-                            als2.buddiesAlsPerCandidat[cand]);
-                    // we now know all common buddies, all common candidates must be in that set
-                    if (restrictedCommonIndexSet.andEquals(restrictedCommonBuddiesSet)) {
-                        // found -> cand is RC
-                        if (rcAnz == 0) {
-                            newRC = new RestrictedCommon(i, j, cand);
-                            rcs.add(newRC);
-                            anzRcs++;
-                        } else {
-                            newRC.setCand2(cand);
-                        }
-                        rcAnz++;
-                    }
+                    next = copyRestrictedCommons(i, next, end, j);
+                    checkRestrictedCommons(i, als1, j, alses.get(j));
                 }
-                if (rcAnz > 0) {
-                    //if (DEBUG) System.out.println(newRC + ": " + rcAnz + " RCs for ALS " + SolutionStep.getAls(als1) + "/" + SolutionStep.getAls(als2));
+            }
+            copyRestrictedCommons(i, next, end, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Copies the RCs <code>rcPreviousRcs[next]</code> to <code>rcPreviousRcs[end - 1]</code>
+         * to {@link #rcs}, as long as the new index of the second ALS is smaller than <code>limit</code>.
+         * RCs with ALS, that have changed, are dropped.
+         *
+         * @param i
+         * @param next
+         * @param end
+         * @param limit
+         * @return Index of the first RC not copied
+         */
+        private int copyRestrictedCommons(int i, int next, int end, int limit) {
+            while (next < end) {
+                RestrictedCommon rc = rcPreviousRcs.get(next);
+                int j = rcNewIndices[rc.getAls2()];
+                if (j >= limit) {
+                    break;
+                }
+                if (j >= 0) {
+                    rcs.add(new RestrictedCommon(i, j, rc.getCand1(), rc.getCand2()));
                 }
+                next++;
+            }
+            return next;
+        }
+
+        /**
+         * Adds the ALS at <code>offset</code> in {@link #rcIndex} to {@link #possibleAlses}.
+         *
+         * @param offset
+         */
+        private void addPossibleAlses(int offset) {
+            for (int w = 0; w < rcIndexWords; w++) {
+                possibleAlses[w] |= rcIndex[offset + w];
+            }
+        }
+
+        /**
+         * Checks two ALS for RCs, a new {@link RestrictedCommon} is added to
+         * {@link #rcs}.
+         *
+         * @param i
+         * @param als1
+         * @param j
+         * @param als2
+         */
+        private void checkRestrictedCommons(int i, Als als1, int j, Als als2) {
+            // check whether the ALS overlap (intersectionSet is needed later on anyway)
+            intersectionSet.set(als1.indices);
+            intersectionSet.and(als2.indices);
+            if (!withOverlap && !intersectionSet.isEmpty()) {
+                // overlap is not allowed!
+                return;
+            }
+            //if (DEBUG) System.out.println("als2: " + SolutionStep.getAls(als2));
+            // restricted common: all buddies + the positions of the candidates themselves ANDed
+            // check whether als1 and als2 have common candidates
+            possibleRestrictedCommonsSet = als1.candidates;
+            possibleRestrictedCommonsSet &= als2.candidates;
+            // possibleRestrictedCommons now contains all candidates common to both ALS
+            if (possibleRestrictedCommonsSet == 0) {
+                // nothing to do!
+                return;
+            }
+            // number of RC candidates found for this ALS combination
+            int rcAnz = 0;
+            RestrictedCommon newRC = null;
+            int[] prcs = Sudoku.POSSIBLE_VALUES[possibleRestrictedCommonsSet];
+            for (int k = 0; k < prcs.length; k++) {
+                int cand = prcs[k];
+                // Get all positions of cand in both ALS
+                restrictedCommonIndexSet.set(als1.indicesPerCandidat[cand]);
+                restrictedCommonIndexSet.or(als2.indicesPerCandidat[cand]);
+                // non of these positions may be in the overlapping area of the two ALS
+                if (!restrictedCommonIndexSet.andEmpty(intersectionSet)) {
+                    // at least on occurence of cand is in overlap -> forbidden
+                    continue;
+                }
+                // now check if all those candidates see each other
+                restrictedCommonBuddiesSet.setAnd(als1.buddiesAlsPerCandidat[cand],
+                        als2.buddiesAlsPerCandidat[cand]);
+                // we now know all common buddies, all common candidates must be in that set
+                if (restrictedCommonIndexSet.andEquals(restrictedCommonBuddiesSet)) {
+                    // found -> cand is RC
+                    if (rcAnz == 0) {
+                        newRC = new RestrictedCommon(i, j, cand);
+                        rcs.add(newRC);
+                    } else {
+                        newRC.setCand2(cand);
+                    }
+                    rcAnz++;
+                }
+            }
+            if (rcAnz > 0) {
+                //if (DEBUG) System.out.println(newRC + ": " + rcAnz + " RCs for ALS " + SolutionStep.getAls(als1) + "/" + SolutionStep.getAls(als2));
             }
-            endIndices[i] = rcs.size();
         }
-        actNanos = System.nanoTime() - actNanos;
-        rcNanos += actNanos;
-        return rcs;
     }
 
     /**
@@ -1472,4 +2121,42 @@ public class SudokuStepFinder {
 //        fishSolver.printStatistics();
 //        chainSolver.printStatistics();
     }
+
+    /**
+     * Benchmark for the complete {@link SudokuSolver#getHint(sudoku.Sudoku, boolean)}
+     * cycle: every puzzle is solved step by step, for every step all enabled
+     * techniques are tried in order (as in the solve loop).
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        String[] puzzles = {
+            "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79",
+            "..9748...7.........2.1.9.....7...24..64.1.59..98...3.....8.3.2.........6...2759..",
+        };
+        SudokuSolver solver = SudokuSolverFactory.getDefaultSolverInstance();
+        int rounds = 1000;
+        int hints = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            hints = 0;
+            long nanos = System.nanoTime();
+            for (String puzzle : puzzles) {
+                Sudoku sudoku = new Sudoku();
+                sudoku.setSudoku(puzzle);
+                SolutionStep step;
+                while ((step = solver.getHint(sudoku, false)) != null) {
+                    solver.doStep(sudoku, step);
+                    hints++;
+                }
+            }
+            nanos = System.nanoTime() - nanos;
+            // the first rounds are warm up
+            if (i >= rounds / 10 && nanos < best) {
+                best = nanos;
+            }
+        }
+        System.out.printf("getHint(): %d hints, best round %.2fms, %.2fus per hint%n", hints, best / 1e6, best / 1e3 / hints);
+        System.exit(0);
+    }
 }
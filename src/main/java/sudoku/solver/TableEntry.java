@@ -20,11 +20,9 @@
 package sudoku.solver;
 
 import sudoku.Chain;
-import sudoku.Options;
 import sudoku.SudokuSet;
 
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -96,22 +94,43 @@ public class TableEntry {
     private static final long EXTENDED_TABLE = 0x8000000000000000L;
 //    private static final long RAW_ENTRY      = 0x1fffffffffffffffL;
 
+    /** Initial size of {@link #entries} and {@link #retIndices}. */
+    private static final int INITIAL_CAPACITY = 64;
+
     /** Index into {@link #entries} and {@link #retIndices}. */
     int index = 0;
-    /** The actual table, holding all resulting links. Synchronized with {@link #retIndices}. */
-    int[] entries = new int[Options.getInstance().getMaxTableEntryLength()];
+    /** Maximum number of entries (the arrays grow up to that size). */
+    private final int maxLength;
+    /** The actual table, holding all resulting links. Synchronized with {@link #retIndices}.
+     * All elements from {@link #index} on are always 0. */
+    int[] entries;
     /** Contains up to 5 reverse indices plus the distance of the entry to the root assumption. Synchronized with {@link #entries}. */
-    long[] retIndices = new long[Options.getInstance().getMaxTableEntryLength()];
+    long[] retIndices;
+    /** {@link #entries} as it was, when {@link #freeze()} was called. */
+    int[] frozenEntries;
+    /** {@link #retIndices} as it was, when {@link #freeze()} was called. */
+    long[] frozenRetIndices;
+    /** {@link #index} as it was, when {@link #freeze()} was called. */
+    int frozenIndex = 0;
     /** Array of sets holding all cells for every candidate that can be set as a result of the assumption. */
     SudokuSet[] onSets = new SudokuSet[10];
     /** Array of sets holding all cells for every candidate that can be deleted as a result of the assumption. */
     SudokuSet[] offSets = new SudokuSet[10];
     /** Reverse lookup cache: hold the index in {@link #entries} for every entry. Used when constructing the chain from the result
      * and when expanding tables. */
-    SortedMap<Integer,Integer> indices = new TreeMap<Integer,Integer>();
+    IntIntHashMap indices = new IntIntHashMap();
 
-    /** Creates a new instance. */
-    TableEntry() {
+    /**
+     * Creates a new instance.
+     *
+     * @param maxLength Maximum number of entries (see {@link SolverSettings#getMaxTableEntryLength()})
+     */
+    TableEntry(int maxLength) {
+        this.maxLength = maxLength;
+        entries = new int[Math.min(INITIAL_CAPACITY, maxLength)];
+        retIndices = new long[entries.length];
+        frozenEntries = entries;
+        frozenRetIndices = retIndices;
         for (int i = 0; i < onSets.length; i++) {
             onSets[i] = new SudokuSet();
             offSets[i] = new SudokuSet();
@@ -119,21 +138,25 @@ public class TableEntry {
     }
 
     /**
-     * Clears the whole table.
+     * Clears the whole table. Only the used part of the arrays is cleared,
+     * their size is kept for the next step.
      */
     void reset() {
+        for (int i = 0; i < index; i++) {
+            entries[i] = 0;
+            retIndices[i] = 0;
+        }
         index = 0;
         entries[0] = 0;
         retIndices[0] = 0;
+        frozenEntries = entries;
+        frozenRetIndices = retIndices;
+        frozenIndex = 0;
         indices.clear();
         for (int i = 0; i < onSets.length; i++) {
             onSets[i].clear();
             offSets[i].clear();
         }
-        for (int i = 0; i < entries.length; i++) {
-            entries[i] = 0;
-            retIndices[i] = 0;
-        }
     }
 
     /**
@@ -226,7 +249,7 @@ public class TableEntry {
      */
     void addEntry(int cellIndex1, int cellIndex2, int cellIndex3, int nodeType, int cand, boolean set, int ri1,
             int ri2, int ri3, int ri4, int ri5, int penalty) {
-        if (index >= entries.length) {
+        if (index >= maxLength) {
             // already full, some possible outcomes will be missed...
             Logger.getLogger(getClass().getName()).log(Level.WARNING, "addEntry(): TableEntry is already full!");
             return;
@@ -240,6 +263,9 @@ public class TableEntry {
             }
         }
         // construct the entry and store it
+        if (index == entries.length) {
+            grow();
+        }
         int entry = Chain.makeSEntry(cellIndex1, cellIndex2, cellIndex3, cand, set, nodeType);
         entries[index] = entry;
         retIndices[index] = makeSRetIndex(ri1, ri2, ri3, ri4, ri5);
@@ -249,8 +275,8 @@ public class TableEntry {
         // are expanding or not, we just try to avoid exceptions
         // NOTE: for initial entries the code works correctly; for expanded entries
         //       the distance is overridden immediately by the expansion code.
-        if (ri1 < retIndices.length) {
-            setDistance(index, getDistance(ri1) + 1);
+        if (ri1 < maxLength) {
+            setDistance(index, (ri1 < index ? getDistance(ri1) : 0) + 1);
         }
 
         // chains end only in normal links (in this implementation)
@@ -271,6 +297,30 @@ public class TableEntry {
         index++;
     }
 
+    /**
+     * Remembers the current contents of the table. Used when the tables are
+     * expanded: only entries, that were not expanded themselves, are copied from
+     * one table into another, and those entries are never changed during the expansion.
+     * Since {@link #grow()} replaces the arrays, other threads that expand
+     * their own tables concurrently have to read the entries from the
+     * remembered arrays.
+     */
+    void freeze() {
+        frozenEntries = entries;
+        frozenRetIndices = retIndices;
+        frozenIndex = index;
+    }
+
+    /**
+     * Doubles the size of {@link #entries} and {@link #retIndices} (up to
+     * {@link #maxLength}).
+     */
+    private void grow() {
+        int newLength = Math.min(entries.length * 2, maxLength);
+        entries = Arrays.copyOf(entries, newLength);
+        retIndices = Arrays.copyOf(retIndices, newLength);
+    }
+
     /**
      * Returns the entry with index <code>index</code>.
      * @param index
@@ -292,15 +342,7 @@ public class TableEntry {
      * @return
      */
     int getEntryIndex(int cellIndex, boolean set, int cand) {
-        ///*K*/ returns null???
-        Integer ret = indices.get(Chain.makeSEntry(cellIndex, cand, set));
-        if (ret == null) {
-            //Logger.getLogger(getClass().getName()).log(Level.SEVERE, "entry not found: " + cellIndex + ", " + cand + ", " + set);
-            return 0;
-        } else {
-            return ret.intValue();
-        }
-//        return indices.get(Chain.makeSEntry(cellIndex, cand, set));
+        return indices.get(Chain.makeSEntry(cellIndex, cand, set), 0);
     }
 
     /**
@@ -310,11 +352,12 @@ public class TableEntry {
      * @return
      */
     int getEntryIndex(int entry) {
-        Integer tmp = indices.get(entry);
-        if (tmp == null) {
+        int tmp = indices.get(entry, -1);
+        if (tmp == -1) {
             Logger.getLogger(getClass().getName()).log(Level.SEVERE, "tmp == null: {0}", entry);
+            return 0;
         }
-        return indices.get(entry);
+        return tmp;
     }
 
     /**
@@ -322,7 +365,7 @@ public class TableEntry {
      * @return
      */
     boolean isFull() {
-        return index == entries.length;
+        return index == maxLength;
     }
 
     /**
@@ -503,7 +546,16 @@ public class TableEntry {
      * @return
      */
     public int getDistance(int index) {
-        return getSRetIndex(retIndices[index], 5) & 0x1ff;
+        return getSDistance(retIndices[index]);
+    }
+
+    /**
+     * Retrieves the distance from a reverse index entry.
+     * @param retIndex
+     * @return
+     */
+    public static int getSDistance(long retIndex) {
+        return getSRetIndex(retIndex, 5) & 0x1ff;
     }
     
     /**
@@ -521,7 +573,17 @@ public class TableEntry {
      * @return
      */
     public boolean isExpanded(int index) {
-        return (retIndices[index] & EXPANDED) != 0;
+        return isSExpanded(retIndices[index]);
+    }
+
+    /**
+     * Checks if the reverse index entry <code>retIndex</code> belongs
+     * to an expanded entry.
+     * @param retIndex
+     * @return
+     */
+    public static boolean isSExpanded(long retIndex) {
+        return (retIndex & EXPANDED) != 0;
     }
 
     /**
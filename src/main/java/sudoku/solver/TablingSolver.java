@@ -26,6 +26,8 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -93,7 +95,7 @@ public class TablingSolver extends AbstractSolver {
     /**
      * A special comparator for comparing chains and nets.
      */
-    private static TablingComparator tablingComparator = null;
+    private static final TablingComparator tablingComparator = new TablingComparator();
     /**
      * A list with steps found in the current run.
      */
@@ -172,25 +174,26 @@ public class TablingSolver extends AbstractSolver {
      */
     private TreeMap<Integer, Integer> chainAlses = new TreeMap<Integer, Integer>();
     private Sudoku savedSudoku;            // Sudoku im Ausgangszustand (für Erstellen der Tables)
-    private int[][] retIndices = new int[MAX_REC_DEPTH][5]; // indices ermitteln
-//    private int[][] retIndices1 = new int[MAX_REC_DEPTH][5]; // indices ermitteln
+    /**
+     * Scratch data for filling the tables; one for every part, if the tables
+     * are filled in parallel ({@link TableTask}).
+     */
+    private TableFiller[] fillers = null;
     private List<GroupNode> groupNodes = null;  // a list with all group nodes for a given sudoku
     private List<Als> alses = null; // a list with all available ALS for a given sudoku
 //    private SudokuSet alsBuddies = new SudokuSet(); // cells that can see all the cells of the als
     private SudokuSet[] alsEliminations = new SudokuSet[10]; // all cells with elminations for an als, sorted by candidate
-    private SudokuStepFinder simpleFinder;
-    private List<SolutionStep> singleSteps = new ArrayList<SolutionStep>();  // für Naked und Hidden Singles
-    private int[] chain = new int[Options.getInstance().getMaxTableEntryLength()]; // globale chain für buildChain()
+    private int[] chain = new int[finder.getSettings().getMaxTableEntryLength()]; // globale chain für buildChain()
     private int chainIndex = 0; // Index des nächsten Elements in chain[]
-    private int[][] mins = new int[200][Options.getInstance().getMaxTableEntryLength()]; // globale chains für networks
+    private int[][] mins = new int[200][finder.getSettings().getMaxTableEntryLength()]; // globale chains für networks
     private int[] minIndexes = new int[mins.length]; // Indexe der nächsten Elemente in mins[]
     private int actMin = 0;                          // derzeit aktuelles min
-    private int[] tmpChain = new int[Options.getInstance().getMaxTableEntryLength()]; // globale chain für addChain()
+    private int[] tmpChain = new int[finder.getSettings().getMaxTableEntryLength()]; // globale chain für addChain()
     private Chain[] tmpChains = new Chain[9];
     private int tmpChainsIndex = 0;
     private SudokuSet lassoSet = new SudokuSet();  // für addChain: enthält alle Zellen-Indices der Chain
     private List<TableEntry> extendedTable = null; // Tables for group nodes, ALS, AUR...
-    private SortedMap<Integer, Integer> extendedTableMap = null; // entry -> index in extendedTable
+    private IntIntHashMap extendedTableMap = null; // entry -> index in extendedTable
     private int extendedTableIndex = 0; // current index in extendedTable
     private boolean initialized = false;
     private long lastUsed = -1;
@@ -203,19 +206,14 @@ public class TablingSolver extends AbstractSolver {
     public TablingSolver(SudokuStepFinder finder) {
         super(finder);
 
-        simpleFinder = new SudokuStepFinder(true);
-
         for (int i = 0; i < tmpOnSets.length; i++) {
             tmpOnSets[i] = new SudokuSet();
             tmpOffSets[i] = new SudokuSet();
         }
         steps = new ArrayList<SolutionStep>();
-        if (tablingComparator == null) {
-            tablingComparator = new TablingComparator();
-        }
         for (int i = 0; i < tmpChains.length; i++) {
             tmpChains[i] = new Chain();
-            tmpChains[i].setChain(new int[Options.getInstance().getMaxTableEntryLength()]);
+            tmpChains[i].setChain(new int[finder.getSettings().getMaxTableEntryLength()]);
         }
 
         for (int i = 0; i < alsEliminations.length; i++) {
@@ -235,13 +233,14 @@ public class TablingSolver extends AbstractSolver {
         if (!initialized) {
             onTable = new TableEntry[810];
             offTable = new TableEntry[810];
+            int maxLength = finder.getSettings().getMaxTableEntryLength();
             for (int i = 0; i < onTable.length; i++) {
-                onTable[i] = new TableEntry();
-                offTable[i] = new TableEntry();
+                onTable[i] = new TableEntry(maxLength);
+                offTable[i] = new TableEntry(maxLength);
             }
 
             extendedTable = new ArrayList<TableEntry>();
-            extendedTableMap = new TreeMap<Integer, Integer>();
+            extendedTableMap = new IntIntHashMap();
             extendedTableIndex = 0;
 
             initialized = true;
@@ -280,6 +279,7 @@ public class TablingSolver extends AbstractSolver {
                 extendedTableMap = null;
             }
             extendedTableIndex = 0;
+            fillers = null;
 
             initialized = false;
         }
@@ -295,6 +295,18 @@ public class TablingSolver extends AbstractSolver {
         tmpChainsIndex = 0;
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.NICE_LOOP, SolutionType.CONTINUOUS_NICE_LOOP, SolutionType.DISCONTINUOUS_NICE_LOOP,
+            SolutionType.AIC, SolutionType.GROUPED_NICE_LOOP, SolutionType.GROUPED_CONTINUOUS_NICE_LOOP,
+            SolutionType.GROUPED_DISCONTINUOUS_NICE_LOOP, SolutionType.GROUPED_AIC,
+            SolutionType.FORCING_CHAIN, SolutionType.FORCING_CHAIN_CONTRADICTION,
+            SolutionType.FORCING_CHAIN_VERITY, SolutionType.FORCING_NET,
+            SolutionType.FORCING_NET_CONTRADICTION, SolutionType.FORCING_NET_VERITY
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -313,7 +325,7 @@ public class TablingSolver extends AbstractSolver {
             case GROUPED_DISCONTINUOUS_NICE_LOOP:
             case GROUPED_AIC:
                 withGroupNodes = true;
-                withAlsNodes = Options.getInstance().isAllowAlsInTablingChains();
+                withAlsNodes = finder.getSettings().isAllowAlsInTablingChains();
                 result = getNiceLoops();
                 break;
             case FORCING_CHAIN:
@@ -321,7 +333,7 @@ public class TablingSolver extends AbstractSolver {
             case FORCING_CHAIN_VERITY:
                 steps.clear();
                 withGroupNodes = true;
-                withAlsNodes = Options.getInstance().isAllowAlsInTablingChains();
+                withAlsNodes = finder.getSettings().isAllowAlsInTablingChains();
                 getForcingChains();
                 if (steps.size() > 0) {
                     Collections.sort(steps, tablingComparator);
@@ -333,7 +345,7 @@ public class TablingSolver extends AbstractSolver {
             case FORCING_NET_VERITY:
                 steps.clear();
                 withGroupNodes = true;
-                withAlsNodes = Options.getInstance().isAllowAlsInTablingChains();
+                withAlsNodes = finder.getSettings().isAllowAlsInTablingChains();
                 getForcingNets();
                 if (steps.size() > 0) {
                     Collections.sort(steps, tablingComparator);
@@ -418,7 +430,7 @@ public class TablingSolver extends AbstractSolver {
         long ticks = System.currentTimeMillis();
         steps = new ArrayList<SolutionStep>();
         withGroupNodes = true;
-        withAlsNodes = Options.getInstance().isAllowAlsInTablingChains();
+        withAlsNodes = finder.getSettings().isAllowAlsInTablingChains();
         onlyGroupedNiceLoops = true;
         doGetNiceLoops();
         onlyGroupedNiceLoops = false;
@@ -442,7 +454,7 @@ public class TablingSolver extends AbstractSolver {
         steps = new ArrayList<SolutionStep>();
         long millis1 = System.currentTimeMillis();
         withGroupNodes = true;
-        withAlsNodes = Options.getInstance().isAllowAlsInTablingChains();
+        withAlsNodes = finder.getSettings().isAllowAlsInTablingChains();
         getForcingChains();
         Collections.sort(steps, tablingComparator);
         millis1 = System.currentTimeMillis() - millis1;
@@ -467,7 +479,7 @@ public class TablingSolver extends AbstractSolver {
         long millis1 = System.currentTimeMillis();
         //withGroupNodes = true;
         withGroupNodes = true;
-        withAlsNodes = Options.getInstance().isAllowAlsInTablingChains();
+        withAlsNodes = finder.getSettings().isAllowAlsInTablingChains();
         getForcingNets();
         Collections.sort(steps, tablingComparator);
         millis1 = System.currentTimeMillis() - millis1;
@@ -496,7 +508,7 @@ public class TablingSolver extends AbstractSolver {
         // search for everything
         fillTables();
         fillTablesWithGroupNodes();
-        if (Options.getInstance().isAllowAlsInTablingChains()) {
+        if (finder.getSettings().isAllowAlsInTablingChains()) {
             fillTablesWithAls();
         }
         ticks = System.currentTimeMillis() - ticks;
@@ -509,8 +521,7 @@ public class TablingSolver extends AbstractSolver {
 
         // expand tables
         ticks = System.currentTimeMillis();
-        expandTables(onTable);
-        expandTables(offTable);
+        expandTables();
         ticks = System.currentTimeMillis() - ticks;
         if (DEBUG) {
             System.out.println("expandTables(): " + ticks + "ms");
@@ -523,7 +534,11 @@ public class TablingSolver extends AbstractSolver {
     /**
      * Search for Kraken Fish Type 1: if a chain starting and ending with a weak
      * link exists from every cell in fins to candidate in index, a KF Type 1
-     * exists.
+     * exists.<br><br>
+     *
+     * This method and {@link #checkKrakenTypeTwo(sudoku.SudokuSet, sudoku.SudokuSet, int, int)}
+     * only read the tables. They may be called by several threads at the same time,
+     * but only after {@link #initForKrakenSearch()} has returned.
      *
      * @param fins Set with all fins
      * @param index Index of destination cell
@@ -637,8 +652,7 @@ public class TablingSolver extends AbstractSolver {
 
         // expand the tables
         ticks = System.currentTimeMillis();
-        expandTables(onTable);
-        expandTables(offTable);
+        expandTables();
         ticks = System.currentTimeMillis() - ticks;
         if (DEBUG) {
             System.out.println("expandTables(): " + ticks + "ms");
@@ -683,8 +697,7 @@ public class TablingSolver extends AbstractSolver {
 
         // expand tables
         ticks = System.currentTimeMillis();
-        expandTables(onTable);
-        expandTables(offTable);
+        expandTables();
         ticks = System.currentTimeMillis() - ticks;
         if (DEBUG) {
             System.out.println("expandTables(): " + ticks + "ms");
@@ -723,12 +736,14 @@ public class TablingSolver extends AbstractSolver {
     private void checkForcingChains() {
         // all possible solutions using one chain only
         for (int i = 0; i < onTable.length; i++) {
+            finder.checkBudget();
             checkOneChain(onTable[i]);
             checkOneChain(offTable[i]);
         }
         // all possible solutions for two chains originating
         // from the same cell
         for (int i = 0; i < onTable.length; i++) {
+            finder.checkBudget();
             checkTwoChains(onTable[i], offTable[i]);
         }
         // all possible solutions for chains originating
@@ -756,6 +771,7 @@ public class TablingSolver extends AbstractSolver {
                 if (sudoku.getValue(i) != 0) {
                     continue;
                 }
+                finder.checkBudget();
                 // collect table entries for all candidates in the cell
                 entryList.clear();
                 int[] cands = sudoku.getAllCandidates(i);
@@ -775,6 +791,7 @@ public class TablingSolver extends AbstractSolver {
                     tmpSet.set(houseSets[i]);
                     tmpSet.and(finder.getCandidates()[j]);
                     if (!tmpSet.isEmpty()) {
+                        finder.checkBudget();
                         // get the table entries
                         entryList.clear();
                         for (int k = 0; k < tmpSet.size(); k++) {
@@ -1007,7 +1024,7 @@ public class TablingSolver extends AbstractSolver {
         adjustChains(globalStep);
 //        System.out.println("replaceorcopystep: " + globalStep.toString(2));
         String del = null;
-        if (Options.getInstance().isOnlyOneChainPerStep()) {
+        if (finder.getSettings().isOnlyOneChainPerStep()) {
             if (globalStep.getCandidatesToDelete().size() > 0) {
                 // candidates can be deleted
                 del = globalStep.getCandidateString();
@@ -1346,6 +1363,7 @@ public class TablingSolver extends AbstractSolver {
     private void checkNiceLoops(TableEntry[] tables) {
         // check all table entries
         for (int i = 0; i < tables.length; i++) {
+            finder.checkBudget();
             int startIndex = tables[i].getCellIndex(0);
             for (int j = 1; j < tables[i].index; j++) {
                 if (tables[i].getNodeType(j) == Chain.NORMAL_NODE
@@ -1370,6 +1388,7 @@ public class TablingSolver extends AbstractSolver {
      */
     private void checkAics(TableEntry[] tables) {
         for (int i = 0; i < tables.length; i++) {
+            finder.checkBudget();
             int startIndex = tables[i].getCellIndex(0);
             int startCandidate = tables[i].getCandidate(0);
             SudokuSetBase buddies = Sudoku.buddies[startIndex];
@@ -1793,6 +1812,7 @@ public class TablingSolver extends AbstractSolver {
         if (chainsOnly) {
             // collect only direct links -> should create only chains, not nets
             for (int i = 0; i < sudoku.getCells().length; i++) {
+                finder.checkBudget();
                 if (sudoku.getValue(i) != 0) {
                     // cell not empty -> ignore
                     continue;
@@ -1863,35 +1883,49 @@ public class TablingSolver extends AbstractSolver {
             // iterate through all cells and candidates: set and delete the
             // candidate and record all dependencies (look ahead more than one iteration).
             // one copy is enough, Sudoku.set() copies the contents of the sudoku
+            // every premise is executed on a copy of savedSudoku (see TableFiller)
             savedSudoku = sudoku.clone();
-            simpleFinder.setSudoku(savedSudoku);
-            for (int i = 0; i < savedSudoku.getCells().length; i++) {
-//            if (i != 52) {
-//                // debugging only
-//                continue;
-//            }
-                if (savedSudoku.getValue(i) != 0) {
-                    // cell is already set -> ignore it
-                    continue;
+            // the original candidates are needed by all fillers: make sure they are up to date
+            finder.getCandidates();
+            int parts = isParallel() ? ForkJoinPool.getCommonPoolParallelism() : 1;
+            if (fillers == null || fillers.length < parts) {
+                fillers = new TableFiller[parts];
+            }
+            for (int i = 0; i < parts; i++) {
+                if (fillers[i] == null) {
+                    fillers[i] = new TableFiller();
                 }
-                int[] cands = savedSudoku.getAllCandidates(i);
-                for (int j = 0; j < cands.length; j++) {
-                    // once for every candidate
-                    int cand = cands[j];
-                    // candidate is ON
-                    sudoku.set(savedSudoku);
-                    simpleFinder.setSudoku(sudoku);
-                    getTableEntry(onTable[i * 10 + cand], i, cand, true);
-                    // candidate is OFF
-                    sudoku.set(savedSudoku);
-                    simpleFinder.setSudoku(sudoku);
-                    getTableEntry(offTable[i * 10 + cand], i, cand, false);
+            }
+            if (parts == 1) {
+                for (int i = 0; i < savedSudoku.getCells().length; i++) {
+                    finder.checkBudget();
+                    fillers[0].fillTables(i);
+                }
+            } else {
+                TableTask[] tasks = new TableTask[parts];
+                for (int i = 0; i < parts; i++) {
+                    tasks[i] = new TableTask(i, parts, false);
+                }
+                runTasks(tasks);
+                // count the nodes like the serial search does
+                for (int i = 0; i < savedSudoku.getCells().length; i++) {
+                    finder.checkBudget();
                 }
             }
-            sudoku.set(savedSudoku);
         }
     }
 
+    /**
+     * Tables for forcing nets are filled and all tables are expanded in parallel,
+     * if this is allowed in the {@link SolverSettings} and {@link ForkJoinPool#commonPool()}
+     * has more than one thread.
+     *
+     * @return
+     */
+    private boolean isParallel() {
+        return finder.getSettings().isTablingParallel() && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
     /**
      * Fills {@link #extendedTable } with all group nodes. Group nodes are
      * always handled as chains - only direct implications are stored.<br><br>
@@ -2119,6 +2153,7 @@ public class TablingSolver extends AbstractSolver {
         alses = finder.getAlses(true);
         // handle them
         for (int i = 0; i < alses.size(); i++) {
+            finder.checkBudget();
             Als als = alses.get(i);
             if (als.indices.size() == 1) {
                 // alses with size one (= nodes with two candidates) are ignored
@@ -2201,7 +2236,7 @@ public class TablingSolver extends AbstractSolver {
                             // the same group node could be found more than once
                             int entry = Chain.makeSEntry(gAct.index1, gAct.index2, gAct.index3, j, true, Chain.GROUP_NODE);
                             // if we had had that node already, it's onTable contained the als
-                            TableEntry gTmp = extendedTable.get(extendedTableMap.get(entry));
+                            TableEntry gTmp = extendedTable.get(extendedTableMap.get(entry, -1));
                             if (gTmp.indices.containsKey(alsEntry)) {
                                 // already present -> ignore
                                 continue;
@@ -2326,8 +2361,9 @@ public class TablingSolver extends AbstractSolver {
      */
     private TableEntry getAlsTableEntry(int entryCellIndex, int alsIndex, int cand) {
         int entry = Chain.makeSEntry(entryCellIndex, alsIndex, cand, false, Chain.ALS_NODE);
-        if (extendedTableMap.containsKey(entry)) {
-            return extendedTable.get(extendedTableMap.get(entry));
+        int tableIndex = extendedTableMap.get(entry, -1);
+        if (tableIndex != -1) {
+            return extendedTable.get(tableIndex);
         }
         return null;
     }
@@ -2343,7 +2379,7 @@ public class TablingSolver extends AbstractSolver {
     private TableEntry getNextExtendedTableEntry(int tableIndex) {
         TableEntry entry = null;
         if (tableIndex >= extendedTable.size()) {
-            entry = new TableEntry();
+            entry = new TableEntry(finder.getSettings().getMaxTableEntryLength());
             extendedTable.add(entry);
         } else {
             entry = extendedTable.get(tableIndex);
@@ -2353,166 +2389,272 @@ public class TablingSolver extends AbstractSolver {
     }
 
     /**
-     * Collects all dependencies on one specific action (cell is set/candidate
-     * is deleted). To detect nets, the whole operation is repeated {@link Options#anzTableLookAhead}
-     * times.<br>
-     *
-     * All operations have to be done on a copy of the original sudoku. The
-     * candidates in the {@link #finder} are not updated (they are not used and
-     * after the operation the sudoku has not changed).
-     *
-     * If
-     * <code>set</code> is
-     * <code>true</code>, the cell is set and all newly created Hidden and Naked
-     * Singles are collected and executed. If it is
-     * <code>false</code>, it is eliminated. If that creates single(s), they are
-     * executed and handled as well.<br>
-     *
-     * If a cell is set, this is delegated to {@link #setCell(int, int, solver.TableEntry, boolean, boolean, int)
-     * }.
-     *
-     * @param entry The {@link TableEntry}
-     * @param cellIndex the index of the current cell
-     * @param cand The current candidate
-     * @param set
-     * <code>true</code> if the candidate is to be set, else
-     * <code>false</code>
-     */
-    private void getTableEntry(TableEntry entry, int cellIndex, int cand, boolean set) {
-        if (set) {
-            // set the cell and record all dependencies
-            setCell(cellIndex, cand, entry, false, false);
-        } else {
-            // eliminate the candidate and set the cell if necessary
-            sudoku.delCandidate(cellIndex, cand);
-            entry.addEntry(cellIndex, cand, false, 0);
-            if (sudoku.getAnzCandidates(cellIndex) == 1) {
-                int setCand = sudoku.getAllCandidates(cellIndex)[0];
-                // getRetIndices == false causes retIndex == 0
-                setCell(cellIndex, setCand, entry, false, true);
-            }
-        }
-        // now look ahead
-        for (int j = 0; j < Options.getInstance().getAnzTableLookAhead(); j++) {
-            singleSteps.clear();
-            List<SolutionStep> dummyList = simpleFinder.findAllNakedSingles(sudoku);
-            singleSteps.addAll(dummyList);
-            dummyList = simpleFinder.findAllHiddenSingles(sudoku);
-            singleSteps.addAll(dummyList);
-            for (int i = 0; i < singleSteps.size(); i++) {
-                SolutionStep step = singleSteps.get(i);
-                int index = step.getIndices().get(0);
-                setCell(index, step.getValues().get(0), entry, true,
-                        step.getType() == SolutionType.NAKED_SINGLE);
+     * All data needed to fill the tables for a forcing net search
+     * ({@link #fillTables()} with {@link #chainsOnly} not set). Every premise is
+     * executed on {@link #sudoku}, a copy of {@link #savedSudoku}. When the tables
+     * are filled in parallel, every worker has its own <code>TableFiller</code>.
+     */
+    private class TableFiller {
+        /** The sudoku on which all operations are done. */
+        private Sudoku sudoku = new Sudoku();
+        /** A step finder that only searches for singles. */
+        private SudokuStepFinder simpleFinder = new SudokuStepFinder(true);
+        /** Naked and Hidden Singles as <code>index << 4 | value</code> (up to three Naked
+         * Singles per cell in the queue, one Hidden Single per cell). */
+        private int[] singles = new int[Sudoku.LENGTH * 4];
+        /** For temporary checks. */
+        private SudokuSet tmpSet = new SudokuSet();
+        /** For temporary checks. */
+        private SudokuSet tmpSet1 = new SudokuSet();
+        /** Reverse indices for the current entry. */
+        private int[][] retIndices = new int[MAX_REC_DEPTH][5];
+
+        /**
+         * Fills the on and off tables for all candidates of cell <code>cellIndex</code>.
+         *
+         * @param cellIndex
+         */
+        private void fillTables(int cellIndex) {
+            if (savedSudoku.getValue(cellIndex) != 0) {
+                // cell is already set -> ignore it
+                return;
+            }
+            int[] cands = savedSudoku.getAllCandidates(cellIndex);
+            for (int j = 0; j < cands.length; j++) {
+                // once for every candidate
+                int cand = cands[j];
+                // candidate is ON
+                sudoku.set(savedSudoku);
+                simpleFinder.setSudoku(sudoku);
+                getTableEntry(onTable[cellIndex * 10 + cand], cellIndex, cand, true);
+                // candidate is OFF
+                sudoku.set(savedSudoku);
+                simpleFinder.setSudoku(sudoku);
+                getTableEntry(offTable[cellIndex * 10 + cand], cellIndex, cand, false);
             }
         }
-    }
 
-    /**
-     * Setting a value in a cell is surprisingly complicated: Not only must all
-     * consequences be found but the sources of all actions have to be recorded
-     * as well (from the ORIGINAL sudoku!).
-     *
-     * @param cellIndex
-     * @param cand
-     * @param entry
-     * @param getRetIndices
-     * @param nakedSingle
-     */
-    private void setCell(int cellIndex, int cand, TableEntry entry, boolean getRetIndices, boolean nakedSingle) {
-        // find all candidates that are eliminated by the set operation (dont forget
-        // the candidates in the cell itself). The reason for the elimination is the
-        // ON entry.
-        // finder.getCandidates() gets the original candidates (even in a net search)
-        tmpSet.set(finder.getCandidates()[cand]);
-        tmpSet.remove(cellIndex);
-        tmpSet.and(Sudoku.buddies[cellIndex]);
-        int[] cands = sudoku.getAllCandidates(cellIndex);
-        // get the house with the smallest number of original candidates (needed for ret indices,
-        // but must be done before the cell is set)
-        int entityType = Sudoku.LINE;
-        int entityNumberFree = sudoku.getFree()[Sudoku.CONSTRAINTS[cellIndex][0]][cand];
-        int dummy = sudoku.getFree()[Sudoku.CONSTRAINTS[cellIndex][1]][cand];
-        if (dummy < entityNumberFree) {
-            entityType = Sudoku.COL;
-            entityNumberFree = dummy;
-        }
-        dummy = sudoku.getFree()[Sudoku.CONSTRAINTS[cellIndex][2]][cand];
-        if (dummy < entityNumberFree) {
-            entityType = Sudoku.BLOCK;
-            entityNumberFree = dummy;
-        }
-        // now set the cell
-        sudoku.setCell(cellIndex, cand);
-        int retIndex = entry.index;
-        if (getRetIndices) {
-            // find the candidate(s) that are responsible for the ON operation
-            for (int i = 0; i < retIndices[0].length; i++) {
-                retIndices[0][i] = 0;
-            }
-            if (nakedSingle) {
-                // all other candidates in the cell
-                int[] cellCands = savedSudoku.getAllCandidates(cellIndex);
-                if (cellCands.length > retIndices[0].length + 1) {
-                    Logger.getLogger(getClass().getName()).log(Level.WARNING, "Too many candidates (setCell() - Naked Single");
-                }
-                int ri = 0;
-                for (int i = 0; i < cellCands.length && ri < retIndices[0].length; i++) {
-                    if (cellCands[i] == cand) {
-                        continue;
+        /**
+         * Collects all dependencies on one specific action (cell is set/candidate
+         * is deleted). To detect nets, the whole operation is repeated {@link Options#anzTableLookAhead}
+         * times.<br>
+         *
+         * All operations have to be done on a copy of the original sudoku. The
+         * candidates in the {@link #finder} are not updated (they are not used and
+         * after the operation the sudoku has not changed).
+         *
+         * If
+         * <code>set</code> is
+         * <code>true</code>, the cell is set and all newly created Hidden and Naked
+         * Singles are collected and executed. If it is
+         * <code>false</code>, it is eliminated. If that creates single(s), they are
+         * executed and handled as well.<br>
+         *
+         * If a cell is set, this is delegated to {@link #setCell(int, int, solver.TableEntry, boolean, boolean, int)
+         * }.
+         *
+         * @param entry The {@link TableEntry}
+         * @param cellIndex the index of the current cell
+         * @param cand The current candidate
+         * @param set
+         * <code>true</code> if the candidate is to be set, else
+         * <code>false</code>
+         */
+        private void getTableEntry(TableEntry entry, int cellIndex, int cand, boolean set) {
+            if (set) {
+                // set the cell and record all dependencies
+                setCell(cellIndex, cand, entry, false, false);
+            } else {
+                // eliminate the candidate and set the cell if necessary
+                sudoku.delCandidate(cellIndex, cand);
+                entry.addEntry(cellIndex, cand, false, 0);
+                if (sudoku.getAnzCandidates(cellIndex) == 1) {
+                    int setCand = sudoku.getAllCandidates(cellIndex)[0];
+                    // getRetIndices == false causes retIndex == 0
+                    setCell(cellIndex, setCand, entry, false, true);
+                }
+            }
+            // now look ahead
+            int lookAhead = finder.getSettings().getAnzTableLookAhead();
+            for (int j = 0; j < lookAhead; j++) {
+                // no steps are created: the singles are only executed
+                int nakedAnz = simpleFinder.findAllNakedSingles(sudoku, singles, 0);
+                int singleAnz = simpleFinder.findAllHiddenSingles(sudoku, singles, nakedAnz);
+                for (int i = 0; i < singleAnz; i++) {
+                    setCell(singles[i] >> 4, singles[i] & 0xf, entry, true, i < nakedAnz);
+                }
+            }
+        }
+
+        /**
+         * Setting a value in a cell is surprisingly complicated: Not only must all
+         * consequences be found but the sources of all actions have to be recorded
+         * as well (from the ORIGINAL sudoku!).
+         *
+         * @param cellIndex
+         * @param cand
+         * @param entry
+         * @param getRetIndices
+         * @param nakedSingle
+         */
+        private void setCell(int cellIndex, int cand, TableEntry entry, boolean getRetIndices, boolean nakedSingle) {
+            // find all candidates that are eliminated by the set operation (dont forget
+            // the candidates in the cell itself). The reason for the elimination is the
+            // ON entry.
+            // finder.getCandidates() gets the original candidates (even in a net search)
+            tmpSet.set(finder.getCandidates()[cand]);
+            tmpSet.remove(cellIndex);
+            tmpSet.and(Sudoku.buddies[cellIndex]);
+            int[] cands = sudoku.getAllCandidates(cellIndex);
+            // get the house with the smallest number of original candidates (needed for ret indices,
+            // but must be done before the cell is set)
+            int entityType = Sudoku.LINE;
+            int entityNumberFree = sudoku.getFree()[Sudoku.CONSTRAINTS[cellIndex][0]][cand];
+            int dummy = sudoku.getFree()[Sudoku.CONSTRAINTS[cellIndex][1]][cand];
+            if (dummy < entityNumberFree) {
+                entityType = Sudoku.COL;
+                entityNumberFree = dummy;
+            }
+            dummy = sudoku.getFree()[Sudoku.CONSTRAINTS[cellIndex][2]][cand];
+            if (dummy < entityNumberFree) {
+                entityType = Sudoku.BLOCK;
+                entityNumberFree = dummy;
+            }
+            // now set the cell
+            sudoku.setCell(cellIndex, cand);
+            int retIndex = entry.index;
+            if (getRetIndices) {
+                // find the candidate(s) that are responsible for the ON operation
+                for (int i = 0; i < retIndices[0].length; i++) {
+                    retIndices[0][i] = 0;
+                }
+                if (nakedSingle) {
+                    // all other candidates in the cell
+                    int[] cellCands = savedSudoku.getAllCandidates(cellIndex);
+                    if (cellCands.length > retIndices[0].length + 1) {
+                        Logger.getLogger(TablingSolver.class.getName()).log(Level.WARNING, "Too many candidates (setCell() - Naked Single");
+                    }
+                    int ri = 0;
+                    for (int i = 0; i < cellCands.length && ri < retIndices[0].length; i++) {
+                        if (cellCands[i] == cand) {
+                            continue;
+                        }
+                        retIndices[0][ri++] = entry.getEntryIndex(cellIndex, false, cellCands[i]);
+                    }
+                } else {
+                    // all other candidates in the house with the smallest number of original candidates
+                    if (entityType == Sudoku.LINE) {
+                        getRetIndicesForHouse(cellIndex, cand, Sudoku.LINE_TEMPLATES[Sudoku.getLine(cellIndex)], entry);
+                    } else if (entityType == Sudoku.COL) {
+                        getRetIndicesForHouse(cellIndex, cand, Sudoku.COL_TEMPLATES[Sudoku.getCol(cellIndex)], entry);
+                    } else {
+                        getRetIndicesForHouse(cellIndex, cand, Sudoku.BLOCK_TEMPLATES[Sudoku.getBlock(cellIndex)], entry);
                     }
-                    retIndices[0][ri++] = entry.getEntryIndex(cellIndex, false, cellCands[i]);
                 }
+                // ON entry for set operation including retIndices
+                entry.addEntry(cellIndex, cand, true, retIndices[0][0], retIndices[0][1], retIndices[0][2],
+                        retIndices[0][3], retIndices[0][4]);
             } else {
-                // all other candidates in the house with the smallest number of original candidates
-                if (entityType == Sudoku.LINE) {
-                    getRetIndicesForHouse(cellIndex, cand, Sudoku.LINE_TEMPLATES[Sudoku.getLine(cellIndex)], entry);
-                } else if (entityType == Sudoku.COL) {
-                    getRetIndicesForHouse(cellIndex, cand, Sudoku.COL_TEMPLATES[Sudoku.getCol(cellIndex)], entry);
-                } else {
-                    getRetIndicesForHouse(cellIndex, cand, Sudoku.BLOCK_TEMPLATES[Sudoku.getBlock(cellIndex)], entry);
+                // ON entry for set operation without retIndices
+                entry.addEntry(cellIndex, cand, true);
+            }
+            // OFF entries for all candidates that can see cellIndex
+            for (int i = 0; i < tmpSet.size(); i++) {
+                entry.addEntry(tmpSet.get(i), cand, false, retIndex);
+            }
+            // OFF entries for all other candidates in the cell
+            for (int i = 0; i < cands.length; i++) {
+                if (cands[i] != cand) {
+                    entry.addEntry(cellIndex, cands[i], false, retIndex);
                 }
             }
-            // ON entry for set operation including retIndices
-            entry.addEntry(cellIndex, cand, true, retIndices[0][0], retIndices[0][1], retIndices[0][2],
-                    retIndices[0][3], retIndices[0][4]);
-        } else {
-            // ON entry for set operation without retIndices
-            entry.addEntry(cellIndex, cand, true);
         }
-        // OFF entries for all candidates that can see cellIndex
-        for (int i = 0; i < tmpSet.size(); i++) {
-            entry.addEntry(tmpSet.get(i), cand, false, retIndex);
+
+        /**
+         * Collect the entries for all candidates in a given house. All those
+         * canddiates have to be eliminated before the cell can be set. Used by {@link #setCell(int, int, solver.TableEntry, boolean, boolean)
+         * }.
+         *
+         * @param cellIndex
+         * @param cand
+         * @param houseSet
+         * @param entry
+         */
+        private void getRetIndicesForHouse(int cellIndex, int cand, SudokuSet houseSet, TableEntry entry) {
+            // get all original candidates in the house (cell itself excluded)
+            tmpSet1.set(finder.getCandidates()[cand]);
+            tmpSet1.remove(cellIndex);
+            tmpSet1.and(houseSet);
+            if (tmpSet1.size() > retIndices[0].length + 1) {
+                Logger.getLogger(TablingSolver.class.getName()).log(Level.WARNING, "Too many candidates (setCell() - Hidden Single");
+            }
+            int ri = 0;
+            for (int i = 0; i < tmpSet1.size() && ri < retIndices[0].length; i++) {
+                retIndices[0][ri++] = entry.getEntryIndex(tmpSet1.get(i), false, cand);
+            }
+        }
+    }
+
+    /**
+     * Fills or expands the tables for one part of the cells/premises. Used
+     * if the tables are handled in parallel (see {@link #isParallel()}).
+     */
+    private class TableTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** The part handled by this task. */
+        private final int part;
+        /** The number of parts. */
+        private final int parts;
+        /** <code>true</code>: expand the tables, <code>false</code>: fill them. */
+        private final boolean expand;
+
+        TableTask(int part, int parts, boolean expand) {
+            this.part = part;
+            this.parts = parts;
+            this.expand = expand;
         }
-        // OFF entries for all other candidates in the cell
-        for (int i = 0; i < cands.length; i++) {
-            if (cands[i] != cand) {
-                entry.addEntry(cellIndex, cands[i], false, retIndex);
+
+        @Override
+        protected void compute() {
+            // the nodes are counted by the calling thread, the budget is only
+            // checked for the deadline and the cancel flag here
+            if (expand) {
+                // every part gets every parts'th premise of both tables
+                for (int i = part; i < onTable.length + offTable.length; i += parts) {
+                    finder.checkBudgetTime();
+                    if (i < onTable.length) {
+                        expandTable(onTable, i);
+                    } else {
+                        expandTable(offTable, i - onTable.length);
+                    }
+                }
+            } else {
+                TableFiller filler = fillers[part];
+                for (int i = part; i < Sudoku.LENGTH; i += parts) {
+                    finder.checkBudgetTime();
+                    filler.fillTables(i);
+                }
             }
         }
     }
 
     /**
-     * Collect the entries for all candidates in a given house. All those
-     * canddiates have to be eliminated before the cell can be set. Used by {@link #setCell(int, int, solver.TableEntry, boolean, boolean)
-     * }.
+     * Runs <code>tasks</code> in {@link ForkJoinPool#commonPool()} and waits for
+     * all of them, even if one of them fails (the tables must not be changed after
+     * the search has returned). The first exception (e.g. a
+     * {@link SolverBudget.ExceededException}) is then rethrown.
      *
-     * @param cellIndex
-     * @param cand
-     * @param houseSet
-     * @param entry
+     * @param tasks
      */
-    private void getRetIndicesForHouse(int cellIndex, int cand, SudokuSet houseSet, TableEntry entry) {
-        // get all original candidates in the house (cell itself excluded)
-        tmpSet1.set(finder.getCandidates()[cand]);
-        tmpSet1.remove(cellIndex);
-        tmpSet1.and(houseSet);
-        if (tmpSet1.size() > retIndices[0].length + 1) {
-            Logger.getLogger(getClass().getName()).log(Level.WARNING, "Too many candidates (setCell() - Hidden Single");
+    private void runTasks(TableTask[] tasks) {
+        for (TableTask task : tasks) {
+            task.fork();
         }
-        int ri = 0;
-        for (int i = 0; i < tmpSet1.size() && ri < retIndices[0].length; i++) {
-            retIndices[0][ri++] = entry.getEntryIndex(tmpSet1.get(i), false, cand);
+        for (TableTask task : tasks) {
+            task.quietlyJoin();
+        }
+        for (TableTask task : tasks) {
+            task.join();
         }
     }
 
@@ -2533,120 +2675,155 @@ public class TablingSolver extends AbstractSolver {
      *
      * Group node table entries are never expanded (since we dont start or end
      * with a group node, that wouldnt make any sense). They are however used as
-     * possible implications.
+     * possible implications.<br><br>
      *
-     * @param table
+     * Only entries that have not been expanded themselves are copied, so the
+     * result doesn't depend on the order in which the tables are expanded. If
+     * {@link #isParallel()} is set, the work is split over {@link ForkJoinPool#commonPool()}.
      */
-    private void expandTables(TableEntry[] table) {
-        // for every entry in tables do...
-        for (int i = 0; i < table.length; i++) {
-//            if (i != 521) {
-//                continue;
-//            }
-            if (table[i].index == 0) {
-                // cell is set -> no implications
-                continue;
+    private void expandTables() {
+        // all tables are read from their state before the expansion (see TableEntry.freeze())
+        for (int i = 0; i < onTable.length; i++) {
+            onTable[i].freeze();
+            offTable[i].freeze();
+        }
+        for (int i = 0; i < extendedTableIndex; i++) {
+            extendedTable.get(i).freeze();
+        }
+        if (isParallel()) {
+            int parts = ForkJoinPool.getCommonPoolParallelism() * 4;
+            TableTask[] tasks = new TableTask[parts];
+            for (int i = 0; i < parts; i++) {
+                tasks[i] = new TableTask(i, parts, true);
             }
-            // table that should be expanded
-            TableEntry dest = table[i];
+            runTasks(tasks);
+            // count the nodes like the serial search does
+            for (int i = 0; i < onTable.length + offTable.length; i++) {
+                finder.checkBudget();
+            }
+        } else {
+            for (int i = 0; i < onTable.length; i++) {
+                finder.checkBudget();
+                expandTable(onTable, i);
+            }
+            for (int i = 0; i < offTable.length; i++) {
+                finder.checkBudget();
+                expandTable(offTable, i);
+            }
+        }
+    }
 
-            boolean isFromOnTable = false;
-            boolean isFromExtendedTable = false;
-            // check every entry except the first (thats the premise)
-            for (int j = 1; j < dest.entries.length; j++) {
-                if (dest.entries[j] == 0) {
-                    // ok -> done
-                    break;
-                }
-                if (dest.isFull()) {
-                    // nothing left to do...
-                    Logger.getLogger(getClass().getName()).log(Level.WARNING, "TableEntry full!");
-                    break;
+    /**
+     * Expands one table (see {@link #expandTables()}). Entries from other tables
+     * are only read through {@link TableEntry#frozenEntries} and
+     * {@link TableEntry#frozenRetIndices}, so that tables can be expanded concurrently.
+     *
+     * @param table
+     * @param i
+     */
+    private void expandTable(TableEntry[] table, int i) {
+        if (table[i].index == 0) {
+            // cell is set -> no implications
+            return;
+        }
+        // table that should be expanded
+        TableEntry dest = table[i];
+
+        boolean isFromOnTable = false;
+        boolean isFromExtendedTable = false;
+        // check every entry except the first (thats the premise)
+        for (int j = 1; j < dest.index; j++) {
+            if (dest.isFull()) {
+                // nothing left to do...
+                Logger.getLogger(getClass().getName()).log(Level.WARNING, "TableEntry full!");
+                break;
+            }
+            // table for the current entry -> all entries in src have to be written into dest
+            TableEntry src = null;
+
+            // find the table, where the current implication is the premise
+            int srcTableIndex = dest.getCellIndex(j) * 10 + dest.getCandidate(j);
+            isFromExtendedTable = false;
+            isFromOnTable = false;
+            if (Chain.getSNodeType(dest.entries[j]) != Chain.NORMAL_NODE) {
+                srcTableIndex = extendedTableMap.get(dest.entries[j], -1);
+                if (srcTableIndex == -1) {
+                    Logger.getLogger(getClass().getName()).log(Level.WARNING, "Table for {0} not found!", printTableEntry(dest.entries[j]));
+                    continue;
                 }
-                // table for the current entry -> all entries in src have to be written into dest
-                TableEntry src = null;
-
-                // find the table, where the current implication is the premise
-                int srcTableIndex = dest.getCellIndex(j) * 10 + dest.getCandidate(j);
-                isFromExtendedTable = false;
-                isFromOnTable = false;
-                if (Chain.getSNodeType(dest.entries[j]) != Chain.NORMAL_NODE) {
-                    Integer tmpSI = extendedTableMap.get(dest.entries[j]);
-                    if (tmpSI == null) {
-                        Logger.getLogger(getClass().getName()).log(Level.WARNING, "Table for {0} not found!", printTableEntry(dest.entries[j]));
-                        continue;
-                    }
-                    srcTableIndex = tmpSI.intValue();
-                    src = extendedTable.get(srcTableIndex);
-                    isFromExtendedTable = true;
+                src = extendedTable.get(srcTableIndex);
+                isFromExtendedTable = true;
+            } else {
+                if (dest.isStrong(j)) {
+                    src = onTable[srcTableIndex];
                 } else {
-                    if (dest.isStrong(j)) {
-                        src = onTable[srcTableIndex];
-                    } else {
-                        src = offTable[srcTableIndex];
-                    }
-                    isFromOnTable = dest.isStrong(j);
-                }
-                if (src.index == 0) {
-                    // should not be possible
-                    StringBuilder tmpBuffer = new StringBuilder();
-                    tmpBuffer.append("TableEntry for ").append(dest.entries[j]).append(" not found!\r\n");
-                    tmpBuffer.append("i == ").append(i).append(", j == ").append(j).append(", dest.entries[j] == ").append(dest.entries[j]).append(": ");
-                    tmpBuffer.append(printTableEntry(dest.entries[j]));
-                    Logger.getLogger(getClass().getName()).log(Level.WARNING, tmpBuffer.toString());
+                    src = offTable[srcTableIndex];
+                }
+                isFromOnTable = dest.isStrong(j);
+            }
+            int[] srcEntries = src.frozenEntries;
+            long[] srcRetIndices = src.frozenRetIndices;
+            int srcAnz = src.frozenIndex;
+            if (srcAnz == 0) {
+                // should not be possible
+                StringBuilder tmpBuffer = new StringBuilder();
+                tmpBuffer.append("TableEntry for ").append(dest.entries[j]).append(" not found!\r\n");
+                tmpBuffer.append("i == ").append(i).append(", j == ").append(j).append(", dest.entries[j] == ").append(dest.entries[j]).append(": ");
+                tmpBuffer.append(printTableEntry(dest.entries[j]));
+                Logger.getLogger(getClass().getName()).log(Level.WARNING, tmpBuffer.toString());
+                continue;
+            }
+            // ok -> expand it
+            int srcBaseDistance = dest.getDistance(j);
+            // check all entries from src
+            for (int k = 1; k < srcAnz; k++) {
+                // we take only entries, that have not been expanded themselves
+                if (TableEntry.isSExpanded(srcRetIndices[k])) {
+                    // ignore it!
                     continue;
                 }
-                // ok -> expand it
-                int srcBaseDistance = dest.getDistance(j);
-                // check all entries from src
-                for (int k = 1; k < src.index; k++) {
-                    // we take only entries, that have not been expanded themselves
-                    if (src.isExpanded(k)) {
-                        // ignore it!
-                        continue;
-                    }
-                    int srcDistance = src.getDistance(k);
-                    if (dest.indices.containsKey(src.entries[k])) {
-                        // entry from src already exists in dest -> check path length
-                        int orgIndex = dest.getEntryIndex(src.entries[k]);
-                        // 20090213: prefer normal nodes to group nodes or als
+                int srcEntry = srcEntries[k];
+                int srcDistance = TableEntry.getSDistance(srcRetIndices[k]);
+                int orgIndex = dest.indices.get(srcEntry, -1);
+                if (orgIndex != -1) {
+                    // entry from src already exists in dest -> check path length
+                    // 20090213: prefer normal nodes to group nodes or als
 //                        if (dest.isExpanded(orgIndex) && dest.getDistance(orgIndex) > (srcBaseDistance + srcDistance)) {
-                        if (dest.isExpanded(orgIndex)
-                                && (dest.getDistance(orgIndex) > (srcBaseDistance + srcDistance)
-                                || dest.getDistance(orgIndex) == (srcBaseDistance + srcDistance)
-                                && dest.getNodeType(orgIndex) > src.getNodeType(k))) {
-                            // Alter Eintrag war länger oder komplizierter als neuer -> umschreiben
-                            // old entry had a longer path or was more complicated -> rewrite
-                            dest.retIndices[orgIndex] = TableEntry.makeSRetIndex(srcTableIndex, 0, 0, 0, 0);
-                            // expanded flag was lost -> set it again
-                            dest.setExpanded(orgIndex);
-                            if (isFromExtendedTable) {
-                                dest.setExtendedTable(orgIndex);
-                            } else if (isFromOnTable) {
-                                dest.setOnTable(orgIndex);
-                            }
-                            dest.setDistance(orgIndex, srcBaseDistance + srcDistance);
-                        }
-                    } else {
-                        // new entry
-                        int srcCellIndex = src.getCellIndex(k);
-                        int srcCand = src.getCandidate(k);
-                        boolean srcStrong = src.isStrong(k);
-                        if (Chain.getSNodeType(src.entries[k]) == Chain.NORMAL_NODE) {
-                            dest.addEntry(srcCellIndex, srcCand, srcStrong, srcTableIndex);
-                        } else {
-                            int tmp = src.entries[k];
-                            dest.addEntry(Chain.getSCellIndex(tmp), Chain.getSCellIndex2(tmp), Chain.getSCellIndex3(tmp),
-                                    Chain.getSNodeType(tmp), srcCand, srcStrong, srcTableIndex, 0, 0, 0, 0, 0);
-                        }
-                        dest.setExpanded(dest.index - 1);
+                    if (dest.isExpanded(orgIndex)
+                            && (dest.getDistance(orgIndex) > (srcBaseDistance + srcDistance)
+                            || dest.getDistance(orgIndex) == (srcBaseDistance + srcDistance)
+                            && dest.getNodeType(orgIndex) > Chain.getSNodeType(srcEntry))) {
+                        // Alter Eintrag war länger oder komplizierter als neuer -> umschreiben
+                        // old entry had a longer path or was more complicated -> rewrite
+                        dest.retIndices[orgIndex] = TableEntry.makeSRetIndex(srcTableIndex, 0, 0, 0, 0);
+                        // expanded flag was lost -> set it again
+                        dest.setExpanded(orgIndex);
                         if (isFromExtendedTable) {
-                            dest.setExtendedTable(dest.index - 1);
+                            dest.setExtendedTable(orgIndex);
                         } else if (isFromOnTable) {
-                            dest.setOnTable(dest.index - 1);
+                            dest.setOnTable(orgIndex);
                         }
-                        dest.setDistance(dest.index - 1, srcBaseDistance + srcDistance);
+                        dest.setDistance(orgIndex, srcBaseDistance + srcDistance);
+                    }
+                } else {
+                    // new entry
+                    int srcCellIndex = Chain.getSCellIndex(srcEntry);
+                    int srcCand = Chain.getSCandidate(srcEntry);
+                    boolean srcStrong = Chain.isSStrong(srcEntry);
+                    if (Chain.getSNodeType(srcEntry) == Chain.NORMAL_NODE) {
+                        dest.addEntry(srcCellIndex, srcCand, srcStrong, srcTableIndex);
+                    } else {
+                        int tmp = srcEntry;
+                        dest.addEntry(Chain.getSCellIndex(tmp), Chain.getSCellIndex2(tmp), Chain.getSCellIndex3(tmp),
+                                Chain.getSNodeType(tmp), srcCand, srcStrong, srcTableIndex, 0, 0, 0, 0, 0);
                     }
+                    dest.setExpanded(dest.index - 1);
+                    if (isFromExtendedTable) {
+                        dest.setExtendedTable(dest.index - 1);
+                    } else if (isFromOnTable) {
+                        dest.setOnTable(dest.index - 1);
+                    }
+                    dest.setDistance(dest.index - 1, srcBaseDistance + srcDistance);
                 }
             }
         }
@@ -2802,13 +2979,7 @@ public class TablingSolver extends AbstractSolver {
         // find the entry for the implication in the TableEntry
         chainIndex = 0;
         int chainEntry = Chain.makeSEntry(cellIndex, cand, set);
-        int index = -1;
-        for (int i = 0; i < entry.entries.length; i++) {
-            if (entry.entries[i] == chainEntry) {
-                index = i;
-                break;
-            }
-        }
+        int index = entry.indices.get(chainEntry, -1);
         if (index == -1) {
             Logger.getLogger(getClass().getName()).log(Level.WARNING, "No chain entry for {0}/{1}/{2}/{3}", new Object[]{cellIndex, SolutionStep.getCellPrint(cellIndex), cand, set});
             return;
@@ -3052,7 +3223,7 @@ public class TablingSolver extends AbstractSolver {
      * and lower candidates first</li> <li>chain length in all
      * chains</li></ul></li> </ol>
      */
-    class TablingComparator implements Comparator<SolutionStep> {
+    static class TablingComparator implements Comparator<SolutionStep> {
 
         /**
          * Compares two {@link SolutionStep SolutionSteps} obtained by tabling.
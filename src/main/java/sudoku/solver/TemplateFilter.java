@@ -0,0 +1,481 @@
+/*
+ * Copyright (C) 2008-12  Bernhard Hobiger
+ *
+ * This file is part of HoDoKu.
+ *
+ * HoDoKu is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * HoDoKu is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with HoDoKu. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package sudoku.solver;
+
+import sudoku.Sudoku;
+import sudoku.SudokuSet;
+import sudoku.SudokuSetBase;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Filters the templates in {@link Sudoku#TEMPLATES_M1}/{@link Sudoku#TEMPLATES_M2}
+ * for all candidates of a sudoku (see {@link SudokuStepFinder#getSetValueTemplates(boolean)}).<br>
+ * The valid templates of a candidate are not stored as objects but as indices into the
+ * global template arrays. The refinement pass compacts the index arrays in place: a template
+ * of candidate <code>j</code> is dropped, if it has a 1 at a position that is set in the AND
+ * of all templates of another candidate. In parallel mode all ANDs of a pass are taken before
+ * the pass starts, so the 9 candidates can be handled independently (the fixpoint is the same
+ * as with the sequential algorithm, since removing templates can only add removals).<br>
+ * If <code>parallel</code> is set ({@link SolverSettings#isTemplatesParallel()}),
+ * the 9 candidates are split over {@link ForkJoinPool#commonPool()}.<br><br>
+ *
+ * Every {@link SudokuStepFinder} has its own instance, the class is not thread safe.
+ *
+ * @author hobiwan
+ */
+public class TemplateFilter {
+    /** Initial size of the index arrays, they grow if necessary. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Use {@link ForkJoinPool#commonPool()}. */
+    private boolean parallel;
+    /** Positions already set per candidate. */
+    private final long[] setM1 = new long[10];
+    private final long[] setM2 = new long[10];
+    /** A 1 at every position where the candidate is no longer allowed. */
+    private final long[] forbiddenM1 = new long[10];
+    private final long[] forbiddenM2 = new long[10];
+    /** AND of all valid templates per candidate. */
+    private final long[] andM1 = new long[10];
+    private final long[] andM2 = new long[10];
+    /** OR of all valid templates per candidate. */
+    private final long[] orM1 = new long[10];
+    private final long[] orM2 = new long[10];
+    /** Refinement: OR of the ANDs of all other candidates. */
+    private final long[] blockedM1 = new long[10];
+    private final long[] blockedM2 = new long[10];
+    /** Indices of the valid templates per candidate (only if the lists are needed). */
+    private final int[][] indices = new int[10][];
+    /** Number of valid entries in {@link #indices}. */
+    private final int[] counts = new int[10];
+    /** Number of templates removed by the last refinement pass per candidate. */
+    private final int[] removals = new int[10];
+
+    /**
+     * One pass over the templates of one candidate.
+     */
+    private class DigitTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int cand;
+        private final boolean refine;
+        private final boolean initLists;
+
+        DigitTask(int cand, boolean refine, boolean initLists) {
+            this.cand = cand;
+            this.refine = refine;
+            this.initLists = initLists;
+        }
+
+        @Override
+        protected void compute() {
+            if (refine) {
+                refine(cand);
+            } else {
+                filter(cand, initLists);
+            }
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param parallel if <code>true</code>, the candidates are checked in parallel
+     */
+    public TemplateFilter(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return the parallel
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @param parallel if <code>true</code>, the candidates are checked in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Computes the templates for all candidates. The result is written
+     * to <code>setValueTemplates</code> (AND of all valid templates: the
+     * candidate can be set in all cells) and <code>delCandTemplates</code> (negated
+     * OR of all valid templates: the candidate can be deleted from all cells).
+     * If <code>initLists</code> is set, the templates are refined (see
+     * {@link SudokuStepFinder#getSetValueTemplates(boolean)}).
+     *
+     * @param allowedPositions All cells where a candidate is still possible
+     * @param setPositions All cells where a candidate is already set
+     * @param initLists
+     * @param setValueTemplates
+     * @param delCandTemplates
+     */
+    public void initTemplates(SudokuSetBase[] allowedPositions, SudokuSetBase[] setPositions,
+            boolean initLists, SudokuSetBase[] setValueTemplates, SudokuSetBase[] delCandTemplates) {
+        for (int i = 1; i <= 9; i++) {
+            // eine 1 an jeder verbotenen Position ~(positions | allowedPositions)
+            setM1[i] = setPositions[i].getMask1();
+            setM2[i] = setPositions[i].getMask2();
+            forbiddenM1[i] = ~(setM1[i] | allowedPositions[i].getMask1());
+            forbiddenM2[i] = ~(setM2[i] | allowedPositions[i].getMask2()) & SudokuSetBase.MAX_MASK2;
+        }
+        runTasks(false, initLists);
+
+        // verfeinern
+        if (initLists) {
+            int anz;
+            do {
+                runTasks(true, true);
+                anz = 0;
+                for (int j = 1; j <= 9; j++) {
+                    anz += removals[j];
+                }
+            } while (anz > 0);
+        }
+
+        for (int i = 1; i <= 9; i++) {
+            setValueTemplates[i].set(andM1[i], andM2[i]);
+            delCandTemplates[i].set(orM1[i], orM2[i]);
+            delCandTemplates[i].not();
+        }
+    }
+
+    /**
+     * Number of valid templates for <code>cand</code> after the last call to
+     * {@link #initTemplates(SudokuSetBase[], SudokuSetBase[], boolean, SudokuSetBase[], SudokuSetBase[])}
+     * with <code>initLists</code> set.
+     *
+     * @param cand
+     * @return
+     */
+    public int getTemplateCount(int cand) {
+        return counts[cand];
+    }
+
+    /**
+     * Runs one pass for all candidates. In a sequential refinement pass every
+     * candidate already sees the new ANDs of the candidates before it (fewer
+     * passes), in a parallel pass all candidates use the ANDs of the last pass.
+     *
+     * @param refine
+     * @param initLists
+     */
+    private void runTasks(boolean refine, boolean initLists) {
+        if (!parallel) {
+            for (int i = 1; i <= 9; i++) {
+                if (refine) {
+                    setBlocked(i);
+                    refine(i);
+                } else {
+                    filter(i, initLists);
+                }
+            }
+            return;
+        }
+        if (refine) {
+            for (int i = 1; i <= 9; i++) {
+                setBlocked(i);
+            }
+        }
+        DigitTask[] tasks = new DigitTask[9];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new DigitTask(i + 1, refine, initLists);
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /**
+     * Sets {@link #blockedM1}/{@link #blockedM2} for <code>cand</code>: the
+     * OR of the ANDs of all other candidates.
+     *
+     * @param cand
+     */
+    private void setBlocked(int cand) {
+        long b1 = 0;
+        long b2 = 0;
+        for (int k = 1; k <= 9; k++) {
+            if (k != cand) {
+                b1 |= andM1[k];
+                b2 |= andM2[k];
+            }
+        }
+        blockedM1[cand] = b1;
+        blockedM2[cand] = b2;
+    }
+
+    /**
+     * Checks all templates against the set and forbidden positions of
+     * <code>cand</code>.
+     *
+     * @param cand
+     * @param initLists
+     */
+    private void filter(int cand, boolean initLists) {
+        long[] templatesM1 = Sudoku.TEMPLATES_M1;
+        long[] templatesM2 = Sudoku.TEMPLATES_M2;
+        long s1 = setM1[cand];
+        long s2 = setM2[cand];
+        long f1 = forbiddenM1[cand];
+        long f2 = forbiddenM2[cand];
+        long a1 = SudokuSetBase.MAX_MASK1;
+        long a2 = SudokuSetBase.MAX_MASK2;
+        long o1 = 0;
+        long o2 = 0;
+        int[] idx = indices[cand];
+        if (initLists && idx == null) {
+            idx = indices[cand] = new int[INITIAL_CAPACITY];
+        }
+        int anz = 0;
+        for (int i = 0; i < templatesM1.length; i++) {
+            long m1 = templatesM1[i];
+            if ((m1 & s1) != s1 || (m1 & f1) != 0) {
+                continue;
+            }
+            long m2 = templatesM2[i];
+            if ((m2 & s2) != s2 || (m2 & f2) != 0) {
+                continue;
+            }
+            // Template ist für Kandidaten erlaubt!
+            a1 &= m1;
+            a2 &= m2;
+            o1 |= m1;
+            o2 |= m2;
+            if (initLists) {
+                if (anz == idx.length) {
+                    idx = indices[cand] = Arrays.copyOf(idx, idx.length * 2);
+                }
+                idx[anz] = i;
+            }
+            anz++;
+        }
+        andM1[cand] = a1;
+        andM2[cand] = a2;
+        orM1[cand] = o1;
+        orM2[cand] = o2;
+        counts[cand] = initLists ? anz : 0;
+    }
+
+    /**
+     * Removes all templates of <code>cand</code>, that have a 1 at a position
+     * that is set in {@link #blockedM1}/{@link #blockedM2}. The index array is
+     * compacted in place, AND and OR are recomputed.
+     *
+     * @param cand
+     */
+    private void refine(int cand) {
+        long[] templatesM1 = Sudoku.TEMPLATES_M1;
+        long[] templatesM2 = Sudoku.TEMPLATES_M2;
+        long b1 = blockedM1[cand];
+        long b2 = blockedM2[cand];
+        long a1 = SudokuSetBase.MAX_MASK1;
+        long a2 = SudokuSetBase.MAX_MASK2;
+        long o1 = 0;
+        long o2 = 0;
+        int[] idx = indices[cand];
+        int anz = counts[cand];
+        int newAnz = 0;
+        for (int i = 0; i < anz; i++) {
+            int index = idx[i];
+            long m1 = templatesM1[index];
+            long m2 = templatesM2[index];
+            if ((m1 & b1) != 0 || (m2 & b2) != 0) {
+                continue;
+            }
+            a1 &= m1;
+            a2 &= m2;
+            o1 |= m1;
+            o2 |= m2;
+            idx[newAnz++] = index;
+        }
+        andM1[cand] = a1;
+        andM2[cand] = a2;
+        orM1[cand] = o1;
+        orM2[cand] = o2;
+        counts[cand] = newAnz;
+        removals[cand] = anz - newAnz;
+    }
+
+    /**
+     * The former implementation from {@link SudokuStepFinder} (one {@link SudokuSetBase}
+     * per template in a {@link LinkedList}), only used as reference by {@link #main(java.lang.String[])}.
+     *
+     * @param allowedPositions
+     * @param setPositions
+     * @param initLists
+     * @param setValueTemplates
+     * @param delCandTemplates
+     */
+    private static void initTemplatesLinkedList(SudokuSetBase[] allowedPositions, SudokuSetBase[] setPositions,
+            boolean initLists, SudokuSetBase[] setValueTemplates, SudokuSetBase[] delCandTemplates) {
+        List<List<SudokuSetBase>> candTemplates = new java.util.ArrayList<List<SudokuSetBase>>(10);
+        SudokuSetBase[] forbiddenPositions = new SudokuSetBase[10];
+        for (int i = 0; i <= 9; i++) {
+            candTemplates.add(new LinkedList<SudokuSetBase>());
+            forbiddenPositions[i] = new SudokuSetBase();
+        }
+        for (int i = 1; i <= 9; i++) {
+            setValueTemplates[i].setAll();
+            delCandTemplates[i].clear();
+            forbiddenPositions[i].set(setPositions[i]);
+            forbiddenPositions[i].or(allowedPositions[i]);
+            forbiddenPositions[i].not();
+        }
+        SudokuSetBase template = new SudokuSetBase();
+        for (int i = 0; i < Sudoku.TEMPLATE_COUNT; i++) {
+            template.set(Sudoku.TEMPLATES_M1[i], Sudoku.TEMPLATES_M2[i]);
+            for (int j = 1; j <= 9; j++) {
+                if (!setPositions[j].andEquals(template)) {
+                    continue;
+                }
+                if (!forbiddenPositions[j].andEmpty(template)) {
+                    continue;
+                }
+                setValueTemplates[j].and(template);
+                delCandTemplates[j].or(template);
+                if (initLists) {
+                    candTemplates.get(j).add(new SudokuSetBase(template));
+                }
+            }
+        }
+        if (initLists) {
+            int removals = 0;
+            do {
+                removals = 0;
+                for (int j = 1; j <= 9; j++) {
+                    setValueTemplates[j].setAll();
+                    delCandTemplates[j].clear();
+                    ListIterator<SudokuSetBase> it = candTemplates.get(j).listIterator();
+                    while (it.hasNext()) {
+                        SudokuSetBase tmp = it.next();
+                        boolean removed = false;
+                        for (int k = 1; k <= 9; k++) {
+                            if (k != j && !tmp.andEmpty(setValueTemplates[k])) {
+                                it.remove();
+                                removed = true;
+                                removals++;
+                                break;
+                            }
+                        }
+                        if (!removed) {
+                            setValueTemplates[j].and(tmp);
+                            delCandTemplates[j].or(tmp);
+                        }
+                    }
+                }
+            } while (removals > 0);
+        }
+        for (int i = 1; i <= 9; i++) {
+            delCandTemplates[i].not();
+        }
+    }
+
+    /**
+     * Benchmark: compares the former implementation with the new one
+     * (sequential and parallel) and checks, that all results are equal.
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        String[] puzzles = {
+            "7.2.34.8.........2.8..51.74.......51..63.27..29.......14.76..2.8.........2.51.8.7",
+            "4...3.......6..8..........1....5..9..8....6...7.2........1.27..5.3....4.9........",
+            "..5.132673268..14917...2835..8..1.262.1.96758.6..283...12....83693184572..723.6..",
+            "1.......2.9.4...5...6...7...5.9.3.......7.......85..4.7.....6...3...9.8...2.....1",
+            "98.7..6..5...8..4...3...2...1.5..........97.....3.........1..89..4.....7....2.5..",
+        };
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        TemplateFilter sequential = new TemplateFilter(false);
+        TemplateFilter parallel = new TemplateFilter(true);
+        SudokuSetBase[] set1 = new SudokuSetBase[10];
+        SudokuSetBase[] del1 = new SudokuSetBase[10];
+        SudokuSetBase[] set2 = new SudokuSetBase[10];
+        SudokuSetBase[] del2 = new SudokuSetBase[10];
+        for (int i = 0; i <= 9; i++) {
+            set1[i] = new SudokuSetBase();
+            del1[i] = new SudokuSetBase();
+            set2[i] = new SudokuSetBase();
+            del2[i] = new SudokuSetBase();
+        }
+        System.out.println("common pool parallelism: " + ForkJoinPool.getCommonPoolParallelism());
+        for (int initLists = 0; initLists < 2; initLists++) {
+            boolean lists = initLists == 1;
+            long[] nanos = new long[3];
+            for (int round = 0; round < rounds; round++) {
+                for (String puzzle : puzzles) {
+                    Sudoku sudoku = new Sudoku();
+                    sudoku.setSudoku(puzzle);
+                    SudokuSet[] allowed = new SudokuSet[10];
+                    SudokuSet[] positions = new SudokuSet[10];
+                    for (int i = 0; i <= 9; i++) {
+                        allowed[i] = new SudokuSet();
+                        positions[i] = new SudokuSet();
+                    }
+                    for (int i = 0; i < Sudoku.LENGTH; i++) {
+                        if (sudoku.getValue(i) != 0) {
+                            positions[sudoku.getValue(i)].add(i);
+                        }
+                        for (int cand : Sudoku.POSSIBLE_VALUES[sudoku.getCell(i)]) {
+                            allowed[cand].add(i);
+                        }
+                    }
+
+                    long start = System.nanoTime();
+                    initTemplatesLinkedList(allowed, positions, lists, set1, del1);
+                    nanos[0] += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    sequential.initTemplates(allowed, positions, lists, set2, del2);
+                    nanos[1] += System.nanoTime() - start;
+                    check(puzzle, set1, del1, set2, del2);
+
+                    start = System.nanoTime();
+                    parallel.initTemplates(allowed, positions, lists, set2, del2);
+                    nanos[2] += System.nanoTime() - start;
+                    check(puzzle, set1, del1, set2, del2);
+                }
+            }
+            int anz = rounds * puzzles.length;
+            System.out.printf("initLists=%b: LinkedList %.2fms, sequential %.2fms, parallel %.2fms per call%n",
+                    lists, nanos[0] / 1e6 / anz, nanos[1] / 1e6 / anz, nanos[2] / 1e6 / anz);
+        }
+    }
+
+    /**
+     * Used by {@link #main(java.lang.String[])}.
+     */
+    private static void check(String puzzle, SudokuSetBase[] set1, SudokuSetBase[] del1,
+            SudokuSetBase[] set2, SudokuSetBase[] del2) {
+        for (int i = 1; i <= 9; i++) {
+            if (!set1[i].equals(set2[i]) || !del1[i].equals(del2[i])) {
+                System.out.println("Different templates for " + i + ": " + puzzle);
+            }
+        }
+    }
+}
@@ -57,6 +57,13 @@ public class TemplateSolver extends AbstractSolver {
         super(finder);
     }
     
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.TEMPLATE_SET, SolutionType.TEMPLATE_DEL
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -75,6 +75,16 @@ public class UniquenessSolver extends AbstractSolver {
         super(finder);
     }
 
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.UNIQUENESS_1, SolutionType.UNIQUENESS_2, SolutionType.UNIQUENESS_3,
+            SolutionType.UNIQUENESS_4, SolutionType.UNIQUENESS_5, SolutionType.UNIQUENESS_6,
+            SolutionType.HIDDEN_RECTANGLE, SolutionType.AVOIDABLE_RECTANGLE_1,
+            SolutionType.AVOIDABLE_RECTANGLE_2, SolutionType.BUG_PLUS_1
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;
@@ -351,7 +361,7 @@ public class UniquenessSolver extends AbstractSolver {
      */
     private SolutionStep findUniquenessForStartCell(int index11, boolean avoidable, 
             SolutionType type, boolean onlyOne) {
-        boolean allowMissing = Options.getInstance().isAllowUniquenessMissingCandidates();
+        boolean allowMissing = finder.getSettings().isAllowUniquenessMissingCandidates();
 //        System.out.println("index11 = " + index11 + ", cand1 = " + cand1 + ", cand2 = " + cand2);
         
         // find a second cell within the same block that contains the same two candidates
@@ -56,6 +56,13 @@ public class WingSolver extends AbstractSolver {
         super(finder);
     }
     
+    @Override
+    protected SolutionType[] getTypes() {
+        return new SolutionType[]{
+            SolutionType.XY_WING, SolutionType.XYZ_WING, SolutionType.W_WING
+        };
+    }
+
     @Override
     protected SolutionStep getStep(SolutionType type) {
         SolutionStep result = null;